@@ -0,0 +1,74 @@
+package org.motechproject.admin.web;
+
+import org.hamcrest.text.StringContains;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.motechproject.admin.web.controller.EventMetricsController;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.HistogramSnapshot;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.springframework.test.web.server.MockMvc;
+import org.springframework.test.web.server.request.MockMvcRequestBuilders;
+import org.springframework.test.web.server.setup.MockMvcBuilders;
+
+import java.util.Arrays;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.web.server.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.server.result.MockMvcResultMatchers.status;
+
+public class EventMetricsControllerTest {
+
+    MockMvc mockMvc;
+
+    @InjectMocks
+    EventMetricsController eventMetricsController = new EventMetricsController();
+
+    @Mock
+    EventMetricsService eventMetricsService;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(eventMetricsController).build();
+    }
+
+    @Test
+    public void shouldReturnSubjectMetrics() throws Exception {
+        given(eventMetricsService.getSubjectMetrics()).willReturn(Arrays.asList(
+                new SubjectMetrics("subject-1", 3, 2, 1, 0, histogram())));
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/events/metrics/subjects"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new StringContains("\"subject\":\"subject-1\"")))
+                .andExpect(content().string(new StringContains("\"publishedCount\":3")));
+    }
+
+    @Test
+    public void shouldReturnListenerMetrics() throws Exception {
+        given(eventMetricsService.getListenerMetrics()).willReturn(Arrays.asList(
+                new ListenerMetrics("listener-1", 4, histogram())));
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/events/metrics/listeners"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new StringContains("\"listenerIdentifier\":\"listener-1\"")))
+                .andExpect(content().string(new StringContains("\"failureCount\":4")));
+    }
+
+    @Test
+    public void shouldResetMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/events/metrics/reset"))
+                .andExpect(status().isOk());
+        verify(eventMetricsService).reset();
+    }
+
+    private HistogramSnapshot histogram() {
+        return new HistogramSnapshot(1, 5, 5, new long[] {10}, new long[] {1, 0});
+    }
+}
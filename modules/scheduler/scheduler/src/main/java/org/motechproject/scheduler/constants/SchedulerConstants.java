@@ -31,6 +31,10 @@ public final class SchedulerConstants {
     /* Scheduler tasks */
     public static final String PARSER_NAME = "SchedulerJobs";
 
+    /* Scheduler context */
+    public static final String APPLICATION_CONTEXT_KEY = "applicationContext";
+    public static final String EVENT_RELAY_KEY = "eventRelay";
+
     private SchedulerConstants() {
 
     }
@@ -0,0 +1,72 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.scheduler.exception.MotechSchedulerException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of an operation performed on many jobs at once, for example scheduling a whole collection of
+ * {@link SchedulableJob}s. A failure of one of the jobs does not stop the operation, instead it is recorded here
+ * together with the cause, while the remaining jobs are processed.
+ *
+ * @param <T> the type of objects the operation was performed on
+ */
+public class BulkOperationResult<T> {
+
+    private int successCount;
+    private Map<T, MotechSchedulerException> failures = new LinkedHashMap<>();
+
+    /**
+     * Records that the operation succeeded for the given number of objects.
+     *
+     * @param count  the number of objects
+     */
+    public void addSuccesses(int count) {
+        successCount += count;
+    }
+
+    /**
+     * Records that the operation failed for the given object.
+     *
+     * @param object  the object for which the operation failed
+     * @param cause  the reason of the failure
+     */
+    public void addFailure(T object, MotechSchedulerException cause) {
+        failures.put(object, cause);
+    }
+
+    /**
+     * Returns the number of objects for which the operation succeeded.
+     *
+     * @return the number of successes
+     */
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Returns the objects for which the operation failed, along with the reasons of the failures, in the order in
+     * which they were passed to the operation.
+     *
+     * @return the failed objects mapped to the causes of the failures
+     */
+    public Map<T, MotechSchedulerException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Checks whether the operation succeeded for all the objects.
+     *
+     * @return true if there were no failures, false otherwise
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkOperationResult{successCount=%d, failureCount=%d}", successCount, failures.size());
+    }
+}
@@ -1,5 +1,6 @@
 package org.motechproject.scheduler.factory;
 
+import org.motechproject.scheduler.constants.SchedulerConstants;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
 import org.quartz.Scheduler;
@@ -48,7 +49,7 @@ public class MotechSchedulerFactoryBean {
         schedulerFactoryBean = new SchedulerFactoryBean();
         schedulerFactoryBean.setQuartzProperties(schedulerProperties);
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
-        schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
+        schedulerFactoryBean.setApplicationContextSchedulerContextKey(SchedulerConstants.APPLICATION_CONTEXT_KEY);
         schedulerFactoryBean.setApplicationContext(applicationContext);
         try {
             schedulerFactoryBean.afterPropertiesSet();
@@ -0,0 +1,237 @@
+package org.motechproject.scheduler.quartz;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quartz thread pool which starts threads only when jobs are fired and stops them once they have been idle for
+ * the configured time, up to the configured maximum number of threads. This allows configuring a much larger maximum
+ * than with the Quartz <code>SimpleThreadPool</code>, which keeps all of its threads running at all times. The pool is
+ * configured in quartz.properties, using the <code>org.quartz.threadPool</code> prefix:
+ * <ul>
+ *     <li><code>threadCount</code> - the maximum number of threads</li>
+ *     <li><code>keepAliveSeconds</code> - the time after which idle threads are stopped</li>
+ *     <li><code>threadPriority</code> - the priority of the threads</li>
+ *     <li><code>makeThreadsDaemons</code> - whether the threads should be daemon threads</li>
+ * </ul>
+ */
+public class AutoSizingThreadPool implements ThreadPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutoSizingThreadPool.class);
+
+    private static final int DEFAULT_THREAD_COUNT = 20;
+    private static final long DEFAULT_KEEP_ALIVE_SECONDS = 60L;
+
+    private final Object lock = new Object();
+
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private long keepAliveSeconds = DEFAULT_KEEP_ALIVE_SECONDS;
+    private int threadPriority = Thread.NORM_PRIORITY;
+    private boolean makeThreadsDaemons;
+
+    private String instanceName = "MotechScheduler";
+    private String instanceId;
+
+    private ThreadPoolExecutor executor;
+    private int busyThreads;
+    private boolean shutdown;
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (threadCount <= 0) {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+            throw new SchedulerConfigException("Thread priority must be between 1 and 10");
+        }
+
+        // all threads are core threads timing out when idle, so a new thread is started for a job
+        // as long as there are less than threadCount of them
+        executor = new ThreadPoolExecutor(threadCount, threadCount, keepAliveSeconds, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("Initialized scheduler thread pool with at most {} threads", threadCount);
+    }
+
+    @Override
+    public boolean runInThread(final Runnable runnable) {
+        if (runnable == null) {
+            return false;
+        }
+
+        synchronized (lock) {
+            // the Quartz scheduler thread calls this only after blockForAvailableThreads reported a free thread
+            if (!awaitFreeThread()) {
+                return false;
+            }
+            busyThreads++;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } finally {
+                        releaseThread();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Unable to run job in the scheduler thread pool", e);
+            releaseThread();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        synchronized (lock) {
+            awaitFreeThread();
+            return Math.max(0, threadCount - busyThreads);
+        }
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the number of threads currently running jobs.
+     *
+     * @return the number of busy threads
+     */
+    public int getBusyThreadCount() {
+        synchronized (lock) {
+            return busyThreads;
+        }
+    }
+
+    /**
+     * Returns the number of threads currently started, busy or idle.
+     *
+     * @return the number of started threads
+     */
+    public int getCurrentPoolSize() {
+        return (executor == null) ? 0 : executor.getPoolSize();
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+
+        if (executor == null) {
+            return;
+        }
+
+        if (waitForJobsToComplete) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+        this.instanceId = schedInstId;
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.instanceName = schedName;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(long keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+
+    public void setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    public boolean isMakeThreadsDaemons() {
+        return makeThreadsDaemons;
+    }
+
+    public void setMakeThreadsDaemons(boolean makeThreadsDaemons) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    private void releaseThread() {
+        synchronized (lock) {
+            busyThreads--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a thread is free, must be called holding the lock.
+     *
+     * @return true if a thread is free, false if the pool was shut down or the waiting thread interrupted
+     */
+    private boolean awaitFreeThread() {
+        while (busyThreads >= threadCount && !shutdown) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !shutdown;
+    }
+
+    private class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, instanceName + "_Worker-" + threadNumber.incrementAndGet());
+            thread.setPriority(threadPriority);
+            thread.setDaemon(makeThreadsDaemons);
+            return thread;
+        }
+    }
+}
@@ -20,8 +20,8 @@ import java.util.Map;
  * Represents a MOTECH job scheduled with quartz. This class implements the {@code org.quartz.Job} interface -
  * its execute method will be called when a MOTECH job in quartz triggers. Since jobs in MOTECH are basically {@link org.motechproject.event.MotechEvent}s
  * getting published on a quartz schedule, upon execution this class retrieves the {@link org.motechproject.event.listener.EventRelay}
- * from the application context and uses it to immediately publish the event scheduled with this job. For every execution
- * a new copy of the event is constructed.
+ * and uses it to immediately publish the event scheduled with this job. The relay is looked up in the application context
+ * once and then cached in the scheduler context. For every execution a new copy of the event is constructed.
  */
 public class MotechScheduledJob implements Job {
 
@@ -36,7 +36,7 @@ public class MotechScheduledJob implements Job {
     @SuppressWarnings("unchecked")
     public void execute(JobExecutionContext jobExecutionContext) {
 
-        LOGGER.info("executing...");
+        LOGGER.debug("executing...");
 
         try {
             JobDetail jobDetail = jobExecutionContext.getJobDetail();
@@ -51,7 +51,7 @@ public class MotechScheduledJob implements Job {
 
             MotechEvent motechEvent = new MotechEvent(eventType, params);
 
-            LOGGER.info("Sending Motech Event Message: " + motechEvent);
+            LOGGER.debug("Sending Motech Event Message: {}", motechEvent);
 
             SchedulerContext schedulerContext;
             try {
@@ -61,11 +61,22 @@ public class MotechScheduledJob implements Job {
                 return;
             }
 
-            ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
-            EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
+            getEventRelay(schedulerContext).sendEventMessage(motechEvent);
         } catch (RuntimeException e) {
             LOGGER.error("Job execution failed.", e);
         }
     }
+
+    private EventRelay getEventRelay(SchedulerContext schedulerContext) {
+        // the scheduler context is a plain map shared by all the job threads
+        synchronized (schedulerContext) {
+            EventRelay eventRelay = (EventRelay) schedulerContext.get(SchedulerConstants.EVENT_RELAY_KEY);
+            if (eventRelay == null) {
+                ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get(SchedulerConstants.APPLICATION_CONTEXT_KEY);
+                eventRelay = applicationContext.getBean(EventRelay.class);
+                schedulerContext.put(SchedulerConstants.EVENT_RELAY_KEY, eventRelay);
+            }
+            return eventRelay;
+        }
+    }
 }
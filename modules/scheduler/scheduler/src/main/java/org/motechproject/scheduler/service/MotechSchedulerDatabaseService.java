@@ -5,6 +5,7 @@ import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
 import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.quartz.TriggerKey;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.List;
@@ -12,9 +13,8 @@ import java.util.List;
 /**
  *  Service provides methods used to get data from
  *  Scheduler. Also provides pagination to use with
- *  jqGrid.
+ *  jqGrid. Methods used by the UI require the permission to view scheduler jobs.
  */
-@PreAuthorize(SchedulerConstants.VIEW_SCHEDULER_JOBS)
 public interface MotechSchedulerDatabaseService {
 
     /**
@@ -26,6 +26,7 @@ public interface MotechSchedulerDatabaseService {
      * for given sorting and pagination option
      * @throws MotechSchedulerJobRetrievalException when the query fails.
      */
+    @PreAuthorize(SchedulerConstants.VIEW_SCHEDULER_JOBS)
     List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException;
 
     /**
@@ -35,6 +36,7 @@ public interface MotechSchedulerDatabaseService {
      * @return the detailed information about job
      * @throws MotechSchedulerJobRetrievalException when the query fails.
      */
+    @PreAuthorize(SchedulerConstants.VIEW_SCHEDULER_JOBS)
     JobDetailedInfo getScheduledJobDetailedInfo(JobBasicInfo jobBasicInfo) throws MotechSchedulerJobRetrievalException;
 
     /**
@@ -44,5 +46,17 @@ public interface MotechSchedulerDatabaseService {
      * @return number of all triggers which matches the filters built from grid settings.
      * @throws MotechSchedulerJobRetrievalException when the query fails.
      */
+    @PreAuthorize(SchedulerConstants.VIEW_SCHEDULER_JOBS)
     int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException;
+
+    /**
+     * Returns the keys of the triggers from the given group, with names starting with the given prefix.
+     * The names are filtered by the database, using the index on the trigger group and name.
+     *
+     * @param triggerGroup the group of the triggers
+     * @param triggerNamePrefix the prefix of the trigger names, not empty
+     * @return the keys of the matching triggers
+     * @throws MotechSchedulerJobRetrievalException when the query fails.
+     */
+    List<TriggerKey> getTriggerKeysWithPrefix(String triggerGroup, String triggerNamePrefix) throws MotechSchedulerJobRetrievalException;
 }
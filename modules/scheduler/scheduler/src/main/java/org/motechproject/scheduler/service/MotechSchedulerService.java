@@ -1,6 +1,7 @@
 package org.motechproject.scheduler.service;
 
 import org.joda.time.DateTime;
+import org.motechproject.scheduler.contract.BulkOperationResult;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobBasicInfo;
@@ -10,6 +11,7 @@ import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.contract.SchedulableJob;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,6 +49,18 @@ public interface MotechSchedulerService {
      */
     void scheduleJob(SchedulableJob job);
 
+    /**
+     * Schedules all the given schedulable jobs. The jobs are validated up front and then stored in chunks, each chunk
+     * in a single job store transaction, which makes this method much faster than scheduling the jobs one by one.
+     * If a job with the same job ID as one of the given jobs exists, it will be replaced. An invalid job, or a job
+     * that could not be stored, does not prevent the other jobs from being scheduled - it is reported in the returned
+     * result instead.
+     *
+     * @param jobs  the jobs to be scheduled, not null
+     * @return the result holding the number of scheduled jobs and the jobs that failed to be scheduled
+     */
+    BulkOperationResult<SchedulableJob> scheduleJobs(Collection<? extends SchedulableJob> jobs);
+
     /**
      * Schedules the given cron schedulable job. The Job ID by which the job will be referencing in the future should be provided
      * in an Instance of MotechEvent in SchedulableJob
@@ -149,6 +163,16 @@ public interface MotechSchedulerService {
      */
     void unscheduleJob(JobId job);
 
+    /**
+     * Unschedules all the jobs with the given IDs, in chunks, each chunk in a single job store transaction. IDs of jobs
+     * which are not scheduled are ignored. A job that could not be unscheduled does not prevent the other jobs from
+     * being unscheduled - it is reported in the returned result instead.
+     *
+     * @param jobIds  the IDs of jobs to be unscheduled, not null
+     * @return the result holding the number of processed job IDs and the IDs of jobs that failed to be unscheduled
+     */
+    BulkOperationResult<JobId> unscheduleJobs(Collection<? extends JobId> jobIds);
+
     /**
      * Returns last fire date of job with given ID.
      *
@@ -174,14 +198,14 @@ public interface MotechSchedulerService {
     void safeUnscheduleJob(String subject, String externalId);
 
     /**
-     * Unschedules all jobs with given prefix.
+     * Unschedules all jobs with names starting with the given prefix.
      *
      * @param jobIdPrefix the jobs prefix
      */
     void unscheduleAllJobs(String jobIdPrefix);
 
     /**
-     * Unschedules all jobs with given prefix. Logs all exceptions instead of throwing them.
+     * Unschedules all jobs with names starting with the given prefix. Logs all exceptions instead of throwing them.
      *
      * @param jobIdPrefix the jobs prefix
      */
@@ -231,7 +255,7 @@ public interface MotechSchedulerService {
     List<DateTime> getScheduledJobTimings(String subject, String externalJobId, DateTime startDate, DateTime endDate);
 
     /**
-     * Returns list of dates at which jobs will be triggered.
+     * Returns list of dates at which jobs with external IDs starting with the given prefix will be triggered.
      *
      * @param subject  the subject of job, not null
      * @param externalJobIdPrefix  the prefix of jobs
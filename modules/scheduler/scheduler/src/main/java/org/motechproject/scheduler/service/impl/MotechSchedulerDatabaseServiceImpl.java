@@ -15,9 +15,8 @@ import org.motechproject.scheduler.contract.RunOnceJobId;
 import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
-import org.quartz.CalendarIntervalTrigger;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.CronTrigger;
+import org.motechproject.scheduler.util.TriggerFireCountUtil;
+import org.quartz.DateBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
@@ -40,6 +39,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -74,6 +74,28 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final String JOB_DATA = "JOB_DATA";
     private static final String OR = " OR ";
     private static final String AND = " AND ";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
+    private static final String JOB_NAME = "JOB_NAME";
+    private static final String JOB_GROUP = "JOB_GROUP";
+    private static final String CRON_TRIGGERS = "CRON_TRIGGERS";
+    private static final String SIMPLE_TRIGGERS = "SIMPLE_TRIGGERS";
+    private static final String SIMPROP_TRIGGERS = "SIMPROP_TRIGGERS";
+    private static final String CRON_EXPRESSION = "CRON_EXPRESSION";
+    private static final String REPEAT_COUNT = "REPEAT_COUNT";
+    private static final String REPEAT_INTERVAL = "REPEAT_INTERVAL";
+    private static final String TIMES_TRIGGERED = "TIMES_TRIGGERED";
+    private static final String STR_PROP_1 = "STR_PROP_1";
+    private static final String INT_PROP_1 = "INT_PROP_1";
+    private static final String INT_PROP_2 = "INT_PROP_2";
+    private static final String TRIGGER_TYPE_SIMPLE = "SIMPLE";
+    private static final String TRIGGER_TYPE_CALENDAR_INTERVAL = "CAL_INT";
+    private static final String TRIGGERS_ALIAS = "A";
+    private static final String JOB_DETAILS_ALIAS = "B";
+    private static final String CRON_TRIGGERS_ALIAS = "C";
+    private static final String SIMPLE_TRIGGERS_ALIAS = "S";
+    private static final String SIMPROP_TRIGGERS_ALIAS = "P";
+    private static final char LIKE_ESCAPE = '!';
 
     @Autowired
     private Properties sqlProperties;
@@ -102,6 +124,29 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     }
 
 
+    @Override
+    public List<TriggerKey> getTriggerKeysWithPrefix(String triggerGroup, String triggerNamePrefix) throws MotechSchedulerJobRetrievalException {
+        String query = buildTriggerNamesWithPrefixSqlQuery();
+        LOGGER.debug("Executing {} for prefix {}", query, triggerNamePrefix);
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+                PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, scheduler.getSchedulerName());
+            stmt.setString(2, triggerGroup);
+            stmt.setString(3, escapeLikePattern(triggerNamePrefix) + "%");
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    triggerKeys.add(new TriggerKey(rs.getString(1), triggerGroup));
+                }
+            }
+            return triggerKeys;
+        } catch (SQLException | SchedulerException e) {
+            throw new MotechSchedulerJobRetrievalException("Retrieval of triggers with prefix " + triggerNamePrefix + " failed.", e);
+        }
+    }
+
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
         List<JobBasicInfo> jobBasicInfos = new LinkedList<>();
@@ -111,44 +156,11 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         String query = buildJobsBasicInfoSqlQuery(jobsSearchSettings);
         LOGGER.debug("Executing {}", query);
 
-        List<String> columnNames = new LinkedList<>();
-        columnNames.add(TRIGGER_NAME);
-        columnNames.add(TRIGGER_GROUP);
-        columnNames.add(JOB_DATA);
-        List<List<Object>> objects;
-
-        try {
-            objects = executeQuery(query, columnNames);
-
-            for (List<Object> row : objects) {
-                JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobGroup = jobKey.getGroup();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
-                }
-                String endDate = getEndDate(trigger, jobType);
-                boolean uiDefined = isUiDefined((byte[]) row.get(2));
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        jobGroup,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info,
-                        uiDefined
-                ));
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                jobBasicInfos.add(toJobBasicInfo(rs));
             }
 
             return jobBasicInfos;
@@ -193,26 +205,6 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
-        List<List<Object>> rows = new LinkedList<>();
-
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
-
-            while (rs.next()) {
-                List<Object> row = new LinkedList<>();
-                if (columns != null) {
-                    for (String name : columns) {
-                        row.add(rs.getObject(name));
-                    }
-                }
-                rows.add(row);
-            }
-        }
-        return rows;
-    }
-
     private int executeCountQuery(String query) throws SQLException {
         int rowConut = 0;
         try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
@@ -238,7 +230,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         if (StringUtils.isNotBlank(jobsSearchSettings.getTimeFrom())) {
             dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeFrom());
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" >= ").append(dateFrom.getMillis());
+            dateRangeSb.append(getTriggerColumn(START_TIME)).append(" >= ").append(dateFrom.getMillis());
             addAnd = true;
         }
 
@@ -246,7 +238,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeTo());
             checkAndAddElement(dateRangeSb, AND, addAnd);
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" <= ").append(dateTo.getMillis());
+            dateRangeSb.append(getTriggerColumn(START_TIME)).append(" <= ").append(dateTo.getMillis());
         }
         return dateRangeSb.toString();
     }
@@ -259,16 +251,16 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             for(String element : activityElements) {
                 checkAndAddElement(activitySb, OR, addOr);
                 if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(START_TIME)).append(" > ").append(DateTime.now().getMillis());
+                    activitySb.append(getTriggerColumn(START_TIME)).append(" > ").append(DateTime.now().getMillis());
                 } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" < ").append(DateTime.now().getMillis())
-                            .append(AND).append(getCorrectNameRepresentation(END_TIME)).append(" != 0");
+                    activitySb.append(getTriggerColumn(END_TIME)).append(" < ").append(DateTime.now().getMillis())
+                            .append(AND).append(getTriggerColumn(END_TIME)).append(" != 0");
                 } else {
-                    activitySb.append(" (").append(getCorrectNameRepresentation(START_TIME)).append(" <= ")
+                    activitySb.append(" (").append(getTriggerColumn(START_TIME)).append(" <= ")
                             .append(DateTime.now().getMillis()).append(" AND (")
-                            .append(getCorrectNameRepresentation(END_TIME)).append(" >= ")
+                            .append(getTriggerColumn(END_TIME)).append(" >= ")
                             .append(DateTime.now().getMillis()).append(OR)
-                            .append(getCorrectNameRepresentation(END_TIME)).append(" = 0))");
+                            .append(getTriggerColumn(END_TIME)).append(" = 0))");
                 }
                 addOr = true;
             }
@@ -282,7 +274,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         boolean addOr = false; if (statusElements.length < 4) {
             for(String element : statusElements) {
                 checkAndAddElement(statusSb, OR, addOr);
-                statusSb.append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
+                statusSb.append(getTriggerColumn(TRIGGER_STATE)).append(" = ");
                 if (Trigger.TriggerState.ERROR.toString().equals(element)) {
                     statusSb.append("\'").append(Trigger.TriggerState.ERROR.toString()).append("\'");
                 } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
@@ -291,9 +283,9 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
                     statusSb.append("\'").append(Trigger.TriggerState.PAUSED.toString()).append("\'");
                 } else {
                     statusSb.append("\'").append(Trigger.TriggerState.NORMAL.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
+                    statusSb.append(OR).append(getTriggerColumn(TRIGGER_STATE)).append(" = ");
                     statusSb.append("\'").append(Trigger.TriggerState.COMPLETE.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
+                    statusSb.append(OR).append(getTriggerColumn(TRIGGER_STATE)).append(" = ");
                     statusSb.append("\'").append(WAITING).append("\'");
                 }
                 addOr = true;
@@ -318,7 +310,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
         StringBuilder nameSb = new StringBuilder();
         if (isNotBlank(jobsSearchSettings.getName())) {
-            nameSb.append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ").append("\'%")
+            nameSb.append(getTriggerColumn(TRIGGER_NAME)).append(" LIKE ").append("\'%")
                     .append(jobsSearchSettings.getName()).append("%\'");
             filters.add(nameSb.toString());
         }
@@ -326,6 +318,32 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return filters;
     }
 
+    private String getTriggerColumn(String name) {
+        return TRIGGERS_ALIAS + "." + getCorrectNameRepresentation(name);
+    }
+
+    private String getColumn(String tableAlias, String name) {
+        return tableAlias + "." + getCorrectNameRepresentation(name);
+    }
+
+    private String getTable(String name) {
+        return getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + name);
+    }
+
+    /**
+     * Joins the table holding the properties of a given type of triggers with the triggers table. The join is made
+     * on the primary key of the joined table, so it costs one index lookup per returned trigger.
+     */
+    private String buildTriggerPropertiesJoin(String table, String alias) {
+        StringBuilder sb = new StringBuilder(" LEFT JOIN ").append(getTable(table)).append(" AS ").append(alias).append(" ON ");
+        String[] keyColumns = {SCHED_NAME, TRIGGER_NAME, TRIGGER_GROUP};
+        for (int i = 0; i < keyColumns.length; i++) {
+            checkAndAddElement(sb, AND, i > 0);
+            sb.append(getColumn(alias, keyColumns[i])).append(" = ").append(getTriggerColumn(keyColumns[i]));
+        }
+        return sb.toString();
+    }
+
     private String getCorrectNameRepresentation(String name) {
         return sqlProperties.get("org.quartz.dataSource.motechDS.driver").equals(Drivers.MYSQL_DRIVER) ? name : "\"" + name.toLowerCase() + "\"";
     }
@@ -350,18 +368,31 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
     private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
 
-        StringBuilder sb = new StringBuilder("SELECT A.TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
-                .append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS))
-                .append(" AS A JOIN ")
-                .append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + JOB_DETAILS))
-                .append(" AS B")
-                .append(" ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP")
+        StringBuilder sb = new StringBuilder("SELECT ");
+        String[] triggerColumns = {TRIGGER_NAME, TRIGGER_GROUP, TRIGGER_STATE, TRIGGER_TYPE, START_TIME, END_TIME, NEXT_FIRE_TIME};
+        for (String column : triggerColumns) {
+            sb.append(getTriggerColumn(column)).append(", ");
+        }
+        sb.append(getColumn(JOB_DETAILS_ALIAS, JOB_DATA)).append(", ")
+                .append(getColumn(CRON_TRIGGERS_ALIAS, CRON_EXPRESSION)).append(", ")
+                .append(getColumn(SIMPLE_TRIGGERS_ALIAS, REPEAT_COUNT)).append(", ")
+                .append(getColumn(SIMPLE_TRIGGERS_ALIAS, REPEAT_INTERVAL)).append(", ")
+                .append(getColumn(SIMPLE_TRIGGERS_ALIAS, TIMES_TRIGGERED)).append(", ")
+                .append(getColumn(SIMPROP_TRIGGERS_ALIAS, STR_PROP_1)).append(", ")
+                .append(getColumn(SIMPROP_TRIGGERS_ALIAS, INT_PROP_1)).append(", ")
+                .append(getColumn(SIMPROP_TRIGGERS_ALIAS, INT_PROP_2))
+                .append(" FROM ").append(getTable(TRIGGERS)).append(" AS ").append(TRIGGERS_ALIAS)
+                .append(" JOIN ").append(getTable(JOB_DETAILS)).append(" AS ").append(JOB_DETAILS_ALIAS)
+                .append(" ON ").append(getTriggerColumn(TRIGGER_NAME)).append(" = ").append(getColumn(JOB_DETAILS_ALIAS, JOB_NAME))
+                .append(AND).append(getTriggerColumn(TRIGGER_GROUP)).append(" = ").append(getColumn(JOB_DETAILS_ALIAS, JOB_GROUP))
+                .append(buildTriggerPropertiesJoin(CRON_TRIGGERS, CRON_TRIGGERS_ALIAS))
+                .append(buildTriggerPropertiesJoin(SIMPLE_TRIGGERS, SIMPLE_TRIGGERS_ALIAS))
+                .append(buildTriggerPropertiesJoin(SIMPROP_TRIGGERS, SIMPROP_TRIGGERS_ALIAS))
                 .append(buildWhereCondition(jobsSearchSettings));
 
         if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
             sb.append(" ORDER BY ")
-                    .append("A.")
-                    .append(getCorrectNameRepresentation(getSortColumn(jobsSearchSettings.getSortColumn())))
+                    .append(getTriggerColumn(getSortColumn(jobsSearchSettings.getSortColumn())))
                     .append(" ")
                     .append(jobsSearchSettings.getSortDirection().toUpperCase());
         }
@@ -375,11 +406,34 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
     private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) {
         StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ");
-        sb = sb.append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS));
+        sb = sb.append(getTable(TRIGGERS)).append(" AS ").append(TRIGGERS_ALIAS);
         sb = sb.append(buildWhereCondition(jobsSearchSettings));
         return sb.toString();
     }
 
+    private String buildTriggerNamesWithPrefixSqlQuery() {
+        return new StringBuilder("SELECT ")
+                .append(getCorrectNameRepresentation(TRIGGER_NAME))
+                .append(" FROM ")
+                .append(getTable(TRIGGERS))
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ?")
+                .append(AND).append(getCorrectNameRepresentation(TRIGGER_GROUP)).append(" = ?")
+                .append(AND).append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ? ESCAPE '")
+                .append(LIKE_ESCAPE).append("'")
+                .toString();
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
     private String getSortColumn(String column) {
         String sortColumn;
 
@@ -398,93 +452,140 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sortColumn;
     }
 
-    private String getJobInfo(Trigger trigger, String jobType) throws SchedulerException {
-        if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
-            Integer timesTriggered = 0;
-            String repeatMaxCount = "-";
+    private JobBasicInfo toJobBasicInfo(ResultSet rs) throws SQLException, SchedulerException, IOException, ClassNotFoundException {
+        String jobName = rs.getString(TRIGGER_NAME);
+        String jobGroup = rs.getString(TRIGGER_GROUP);
+        long startTime = rs.getLong(START_TIME);
+        long endTime = rs.getLong(END_TIME);
+        long nextFireTime = rs.getLong(NEXT_FIRE_TIME);
+        String jobType = getJobType(jobName);
+
+        String nextFireDate = "";
+        if (nextFireTime > 0) {
+            nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(nextFireTime);
+        }
 
-            if (trigger instanceof CalendarIntervalTrigger) {
-                CalendarIntervalTrigger calendarIntervalTrigger = (CalendarIntervalTrigger) trigger;
+        return new JobBasicInfo(
+                getJobActivity(startTime, endTime),
+                getJobStatus(rs.getString(TRIGGER_STATE)),
+                jobName,
+                jobGroup,
+                getStartDate(startTime),
+                nextFireDate,
+                getEndDate(startTime, endTime, jobType),
+                jobType,
+                getJobInfo(rs, jobType),
+                isUiDefined(rs.getBytes(JOB_DATA))
+        );
+    }
 
-                timesTriggered = calendarIntervalTrigger.getTimesTriggered();
-            } else if (trigger instanceof SimpleTrigger) {
-                SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
+    private String getJobInfo(ResultSet rs, String jobType) throws SQLException, SchedulerException {
+        if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
+            return getRepeatingJobInfo(rs);
+        } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
+            return rs.getString(CRON_EXPRESSION);
+        } else {
+            return "-";
+        }
+    }
 
-                timesTriggered = simpleTrigger.getTimesTriggered();
-            }
+    private String getRepeatingJobInfo(ResultSet rs) throws SQLException, SchedulerException {
+        String triggerType = rs.getString(TRIGGER_TYPE);
+        int timesTriggered = 0;
+        int repeatCount = SimpleTrigger.REPEAT_INDEFINITELY;
+        Long repeatInterval = null;
+
+        if (TRIGGER_TYPE_SIMPLE.equals(triggerType)) {
+            timesTriggered = rs.getInt(TIMES_TRIGGERED);
+            repeatCount = rs.getInt(REPEAT_COUNT);
+            repeatInterval = rs.getLong(REPEAT_INTERVAL);
+        } else if (TRIGGER_TYPE_CALENDAR_INTERVAL.equals(triggerType)) {
+            timesTriggered = rs.getInt(INT_PROP_2);
+            repeatInterval = TriggerFireCountUtil.getFixedIntervalMillis(
+                    DateBuilder.IntervalUnit.valueOf(rs.getString(STR_PROP_1)), rs.getInt(INT_PROP_1));
+        }
 
-            if (trigger.getEndTime() != null) {
-                repeatMaxCount = Integer.toString(TriggerUtils.computeFireTimesBetween(
-                        (OperableTrigger) trigger, null, trigger.getStartTime(), trigger.getEndTime()
-                ).size() + timesTriggered);
+        String repeatMaxCount = "-";
+        long endTime = rs.getLong(END_TIME);
+        if (endTime > 0) {
+            long remainingFires;
+            if (repeatInterval != null) {
+                remainingFires = TriggerFireCountUtil.countRemainingFires(rs.getLong(START_TIME), endTime,
+                        rs.getLong(NEXT_FIRE_TIME), repeatInterval, repeatCount);
+            } else {
+                remainingFires = countRemainingFires(new TriggerKey(rs.getString(TRIGGER_NAME), rs.getString(TRIGGER_GROUP)));
             }
+            repeatMaxCount = Long.toString(remainingFires + timesTriggered);
+        }
 
-            return String.format("%d/%s", timesTriggered, repeatMaxCount);
-        } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
-            CronScheduleBuilder cronScheduleBuilder = (CronScheduleBuilder) trigger.getScheduleBuilder();
-
-            CronTrigger cronTrigger = (CronTrigger) cronScheduleBuilder.build();
+        return String.format("%d/%s", timesTriggered, repeatMaxCount);
+    }
 
-            return cronTrigger.getCronExpression();
-        } else {
-            return "-";
+    /**
+     * Counts the remaining fire times of a trigger by enumerating them. Used only for triggers with intervals
+     * of varying length, for which the number of fire times can't be computed directly.
+     */
+    private long countRemainingFires(TriggerKey triggerKey) throws SchedulerException {
+        Trigger trigger = scheduler.getTrigger(triggerKey);
+        if (trigger == null || trigger.getNextFireTime() == null) {
+            return 0;
         }
+        return TriggerUtils.computeFireTimesBetween((OperableTrigger) trigger, null, trigger.getStartTime(),
+                trigger.getEndTime()).size();
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
-        if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
+    private String getJobType(String jobName) {
+        if (jobName.endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
-        } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
+        } else if (jobName.endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
             return JobBasicInfo.JOBTYPE_REPEATING;
-        } else if (jobKey.getName().endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
+        } else if (jobName.endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
             return JobBasicInfo.JOBTYPE_PERIOD;
         } else {
             return JobBasicInfo.JOBTYPE_CRON;
         }
     }
 
-    private String getStartDate(Trigger trigger) throws SchedulerException {
-        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getStartTime().getTime());
+    private String getStartDate(long startTime) {
+        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(startTime);
     }
 
-    private String getEndDate(Trigger trigger, String jobType) throws SchedulerException {
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-        String startDate = getStartDate(trigger);
+    private String getEndDate(long startTime, long endTime, String jobType) {
         String endDate;
 
-        if (!endDateTime.isAfterNow()) {
+        if (endTime <= 0 || !new DateTime(endTime).isAfterNow()) {
             if (jobType.equals(JobBasicInfo.JOBTYPE_RUNONCE)) {
-                endDate = startDate;
+                endDate = getStartDate(startTime);
             } else {
                 endDate = "-";
             }
         } else {
-            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endDateTime);
+            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endTime);
         }
 
         return endDate;
     }
 
-    private String getJobActivity(Trigger trigger) throws SchedulerException {
-        DateTime startDateTime = new DateTime(trigger.getStartTime());
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-
-        if (startDateTime.isAfterNow()) {
+    private String getJobActivity(long startTime, long endTime) {
+        if (new DateTime(startTime).isAfterNow()) {
             return JobBasicInfo.ACTIVITY_NOTSTARTED;
-        } else if (endDateTime.isBeforeNow()) {
+        } else if (endTime > 0 && new DateTime(endTime).isBeforeNow()) {
             return  JobBasicInfo.ACTIVITY_FINISHED;
         } else {
             return JobBasicInfo.ACTIVITY_ACTIVE;
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
-        if (currentTriggerState == Trigger.TriggerState.ERROR) {
+    /**
+     * Maps the state stored by the JDBC job store to a job status, the same way
+     * {@link Scheduler#getTriggerState(TriggerKey)} maps it to a trigger state.
+     */
+    private String getJobStatus(String triggerState) {
+        if (Trigger.TriggerState.ERROR.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_ERROR;
-        } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
+        } else if (Trigger.TriggerState.BLOCKED.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_BLOCKED;
-        } else if (currentTriggerState == Trigger.TriggerState.PAUSED) {
+        } else if (triggerState != null && triggerState.startsWith(Trigger.TriggerState.PAUSED.toString())) {
             return JobBasicInfo.STATUS_PAUSED;
         } else {
             return JobBasicInfo.STATUS_OK;
@@ -6,6 +6,7 @@ import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.scheduler.builder.SchedulableJobBuilder;
+import org.motechproject.scheduler.contract.BulkOperationResult;
 import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
@@ -19,8 +20,10 @@ import org.motechproject.scheduler.contract.RunOnceJobId;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechScheduledJob;
+import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.trigger.PeriodIntervalScheduleBuilder;
 import org.motechproject.config.SettingsFacade;
@@ -39,7 +42,6 @@ import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
 import org.quartz.impl.calendar.BaseCalendar;
-import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.triggers.CronTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 import org.slf4j.Logger;
@@ -49,9 +51,12 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -87,21 +92,26 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public static final String JOB_GROUP_NAME = "default";
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
+    private static final int BATCH_SIZE = 500;
     private static final String LOG_SUBJECT_EXTERNAL_ID = "subject: %s, externalId: %s";
 
     private SettingsFacade schedulerSettings;
 
     private Scheduler scheduler;
 
+    private MotechSchedulerDatabaseService schedulerDatabaseService;
+
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerServiceImpl.class);
 
     @Autowired
-    public MotechSchedulerServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean, SettingsFacade schedulerSettings) {
+    public MotechSchedulerServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean, SettingsFacade schedulerSettings,
+                                      MotechSchedulerDatabaseService schedulerDatabaseService) {
         this.schedulerSettings = schedulerSettings;
         this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        this.schedulerDatabaseService = schedulerDatabaseService;
         constructMisfirePoliciesMaps();
     }
 
@@ -135,6 +145,35 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         scheduleJob(job, false);
     }
 
+    @Override
+    public BulkOperationResult<SchedulableJob> scheduleJobs(Collection<? extends SchedulableJob> jobs) {
+        assertArgumentNotNull("SchedulableJobs", jobs);
+
+        BulkOperationResult<SchedulableJob> result = new BulkOperationResult<>();
+
+        List<JobSchedule> schedules = new ArrayList<>(jobs.size());
+        for (SchedulableJob job : jobs) {
+            try {
+                schedules.add(validateSchedule(buildJob(job)));
+            } catch (MotechSchedulerException e) {
+                result.addFailure(job, e);
+            } catch (RuntimeException e) {
+                result.addFailure(job, new MotechSchedulerException(format("Can not schedule the job: %s.\n%s",
+                        job, e.getMessage()), "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e));
+            }
+        }
+
+        for (int from = 0; from < schedules.size(); from += BATCH_SIZE) {
+            scheduleChunk(schedules.subList(from, Math.min(from + BATCH_SIZE, schedules.size())), result);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Scheduled {} of {} jobs", result.getSuccessCount(), jobs.size());
+        }
+
+        return result;
+    }
+
     @Override
     public void safeScheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
@@ -264,6 +303,28 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         unscheduleJob(job.value());
     }
 
+    @Override
+    public BulkOperationResult<JobId> unscheduleJobs(Collection<? extends JobId> jobIds) {
+        assertArgumentNotNull("JobIds", jobIds);
+
+        BulkOperationResult<JobId> result = new BulkOperationResult<>();
+
+        List<JobId> validJobIds = new ArrayList<>(jobIds.size());
+        for (JobId jobId : jobIds) {
+            if (jobId == null) {
+                result.addFailure(null, new MotechSchedulerException("Can not unschedule the job: null JobId"));
+            } else {
+                validJobIds.add(jobId);
+            }
+        }
+
+        for (int from = 0; from < validJobIds.size(); from += BATCH_SIZE) {
+            unscheduleChunk(validJobIds.subList(from, Math.min(from + BATCH_SIZE, validJobIds.size())), result);
+        }
+
+        return result;
+    }
+
     @Override
     public void unscheduleRepeatingJob(String subject, String externalId) {
         if (LOGGER.isDebugEnabled()) {
@@ -294,14 +355,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
-                }
-            }
-        } catch (SchedulerException e) {
+            unscheduleTriggers(getTriggerKeysWithPrefix(jobIdPrefix));
+        } catch (SchedulerException | MotechSchedulerJobRetrievalException e) {
             throw new MotechSchedulerException(String.format("Can not unschedule jobs given jobIdPrefix: %s %s",
                     jobIdPrefix, e.getMessage()), e);
         }
@@ -351,14 +406,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
-                }
-            }
-        } catch (SchedulerException e) {
+            unscheduleTriggers(getTriggerKeysWithPrefix(jobIdPrefix));
+        } catch (SchedulerException | MotechSchedulerJobRetrievalException e) {
             LOGGER.error("Unable to unschedule all jobs with jobIdPrefix {}", jobIdPrefix, e);
         }
     }
@@ -477,17 +526,17 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
+            List<TriggerKey> triggerKeys = StringUtils.isNotEmpty(externalJobIdPrefix) ?
+                    getTriggerKeysWithPrefix(jobId.value()) : new ArrayList<TriggerKey>();
             for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
-                    Trigger trigger = scheduler.getTrigger(triggerKey);
+                Trigger trigger = scheduler.getTrigger(triggerKey);
+                if (trigger != null) {
                     messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
                             (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
                 }
             }
 
-        } catch (SchedulerException e) {
+        } catch (SchedulerException | MotechSchedulerJobRetrievalException e) {
             throw new MotechSchedulerException(String.format(
                     "Can not get scheduled job timings given subject and externalJobIdPrefix for dates : %s %s %s %s %s",
                     subject, externalJobIdPrefix, startDate.toString(), endDate.toString(), e.getMessage()), e);
@@ -521,6 +570,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleCronJob(CronSchedulableJob job, boolean isDayOfWeek, boolean update) {
+        JobSchedule schedule = buildCronJob(job, isDayOfWeek);
+        unscheduleIfScheduled(schedule.trigger.getKey());
+        scheduleJob(schedule.jobDetail, schedule.trigger, update);
+    }
+
+    private JobSchedule buildCronJob(CronSchedulableJob job, boolean isDayOfWeek) {
         logObjectIfNotNull(job);
 
         validateCronSchedulableJob(job);
@@ -551,17 +606,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(DateUtil.toDate(job.getEndDate()))
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (job.isIgnorePastFiresAtStart() && (job.getStartDate() == null || job.getStartDate().isBefore(now))) {
@@ -580,10 +624,16 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                     .build();
         }
 
-        scheduleJob(jobDetail, trigger, update);
+        return new JobSchedule(job, jobDetail, trigger);
     }
 
     private void scheduleRepeatingJob(RepeatingSchedulableJob job, boolean update) {
+        JobSchedule schedule = buildRepeatingJob(job);
+        unscheduleIfScheduled(schedule.trigger.getKey());
+        scheduleJob(schedule.jobDetail, schedule.trigger, update);
+    }
+
+    private JobSchedule buildRepeatingJob(RepeatingSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRepeatingSchedulableJob(job);
@@ -610,15 +660,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDetail.getJobDataMap().put(IGNORE_PAST_FIRES_AT_START, job.isIgnorePastFiresAtStart());
         jobDetail.getJobDataMap().put(USE_ORIGINAL_FIRE_TIME_AFTER_MISFIRE, job.isUseOriginalFireTimeAfterMisfire());
 
-        try {
-            if (scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME)) != null) {
-                unscheduleJob(jobId);
-            }
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-
         ScheduleBuilder scheduleBuilder;
         if (!job.isUseOriginalFireTimeAfterMisfire()) {
             SimpleScheduleBuilder simpleSchedule = simpleSchedule()
@@ -640,10 +681,15 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(jobStartTime),
                 DateUtil.toDate(jobEndTime), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return new JobSchedule(job, jobDetail, trigger);
     }
 
     private void scheduleRepeatingPeriodJob(RepeatingPeriodSchedulableJob job, boolean update) {
+        JobSchedule schedule = buildRepeatingPeriodJob(job);
+        scheduleJob(schedule.jobDetail, schedule.trigger, update);
+    }
+
+    private JobSchedule buildRepeatingPeriodJob(RepeatingPeriodSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRepeatingPeriodSchedulableJob(job);
@@ -666,10 +712,15 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(job.getStartDate()),
                 DateUtil.toDate(job.getEndDate()), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return new JobSchedule(job, jobDetail, trigger);
     }
 
     private void scheduleRunOnceJob(RunOnceSchedulableJob job, boolean update) {
+        JobSchedule schedule = buildRunOnceJob(job);
+        scheduleJob(schedule.jobDetail, schedule.trigger, update);
+    }
+
+    private JobSchedule buildRunOnceJob(RunOnceSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRunOnceSchedulableJob(job);
@@ -696,10 +747,16 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(DateUtil.toDate(job.getStartDate()))
                 .build();
 
-        scheduleJob(jobDetail, trigger, update);
+        return new JobSchedule(job, jobDetail, trigger);
     }
 
     private void scheduleDayOfWeekJob(DayOfWeekSchedulableJob job, boolean update) {
+        JobSchedule schedule = buildDayOfWeekJob(job);
+        unscheduleIfScheduled(schedule.trigger.getKey());
+        scheduleJob(schedule.jobDetail, schedule.trigger, update);
+    }
+
+    private JobSchedule buildDayOfWeekJob(DayOfWeekSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateDayOfWeekSchedulableJob(job);
@@ -715,7 +772,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
                 job.getStartDate(), job.getEndDate(), job.isIgnorePastFiresAtStart(), job.isUiDefined());
 
-        scheduleCronJob(cronSchedulableJob, true, update);
+        JobSchedule schedule = buildCronJob(cronSchedulableJob, true);
+        return new JobSchedule(job, schedule.jobDetail, schedule.trigger);
     }
 
     private void scheduleJob(SchedulableJob job, boolean update) {
@@ -732,6 +790,21 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    private JobSchedule buildJob(SchedulableJob job) {
+        if (job instanceof CronSchedulableJob) {
+            return buildCronJob((CronSchedulableJob) job, false);
+        } else if (job instanceof DayOfWeekSchedulableJob) {
+            return buildDayOfWeekJob((DayOfWeekSchedulableJob) job);
+        } else if (job instanceof RepeatingSchedulableJob) {
+            return buildRepeatingJob((RepeatingSchedulableJob) job);
+        } else if (job instanceof RepeatingPeriodSchedulableJob) {
+            return buildRepeatingPeriodJob((RepeatingPeriodSchedulableJob) job);
+        } else if (job instanceof RunOnceSchedulableJob) {
+            return buildRunOnceJob((RunOnceSchedulableJob) job);
+        }
+        throw new MotechSchedulerException(format("Can not schedule the job: %s. Unsupported job type", job));
+    }
+
     private void scheduleJob(JobDetail jobDetail, Trigger trigger) {
         scheduleJob(jobDetail, trigger, false);
     }
@@ -751,6 +824,17 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    private void unscheduleIfScheduled(TriggerKey key) {
+        try {
+            if (scheduler.getTrigger(key) != null) {
+                unscheduleJob(key.getName());
+            }
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", key.getName(), e.getMessage()),
+                    "scheduler.error.cantRescheduleJob", Arrays.asList(key.getName(), e.getMessage()), e);
+        }
+    }
+
     private void unscheduleJob(String jobId) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(jobId);
@@ -898,12 +982,97 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDataMap.put(EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
+    private List<TriggerKey> getTriggerKeysWithPrefix(String jobIdPrefix) throws MotechSchedulerJobRetrievalException {
+        if (StringUtils.isEmpty(jobIdPrefix)) {
+            return new ArrayList<>();
+        }
+        return schedulerDatabaseService.getTriggerKeysWithPrefix(JOB_GROUP_NAME, jobIdPrefix);
+    }
+
+    /**
+     * Unschedules the jobs with the given trigger keys, removing a batch of them in each job store transaction.
+     */
+    private void unscheduleTriggers(List<TriggerKey> triggerKeys) throws SchedulerException {
+        for (int from = 0; from < triggerKeys.size(); from += BATCH_SIZE) {
+            List<TriggerKey> batch = triggerKeys.subList(from, Math.min(from + BATCH_SIZE, triggerKeys.size()));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unscheduling {} jobs", batch.size());
+            }
+            scheduler.unscheduleJobs(new ArrayList<>(batch));
+        }
+    }
+
+    /**
+     * Checks the trigger of the given schedule the same way the Quartz scheduler does when storing it, so that
+     * an invalid trigger is reported for its own job, instead of failing the whole chunk it would be stored with.
+     */
+    private JobSchedule validateSchedule(JobSchedule schedule) {
+        OperableTrigger trigger = (OperableTrigger) schedule.trigger;
+        try {
+            trigger.validate();
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Can not schedule the job: %s.\n%s", trigger.getKey(), e.getMessage()),
+                    "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
+        }
+        if (trigger.computeFirstFireTime(null) == null) {
+            throw new MotechSchedulerException(format("Can not schedule the job: %s. The trigger will never fire",
+                    trigger.getKey()), "scheduler.error.schedulerError", Arrays.asList("The trigger will never fire"));
+        }
+        return schedule;
+    }
+
+    /**
+     * Stores the given schedules in a single job store transaction. If that fails, the schedules are stored one by one,
+     * so that only the jobs which really can't be scheduled are reported as failures.
+     */
+    private void scheduleChunk(List<JobSchedule> chunk, BulkOperationResult<SchedulableJob> result) {
+        Map<JobDetail, Set<? extends Trigger>> triggersAndJobs = new LinkedHashMap<>();
+        for (JobSchedule schedule : chunk) {
+            // the last job with a given ID wins, as it would if the jobs were scheduled one after another
+            triggersAndJobs.remove(schedule.jobDetail);
+            triggersAndJobs.put(schedule.jobDetail, Collections.singleton(schedule.trigger));
+        }
+
+        try {
+            scheduler.scheduleJobs(triggersAndJobs, true);
+            result.addSuccesses(chunk.size());
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to schedule a chunk of {} jobs, scheduling them one by one", chunk.size(), e);
+            for (JobSchedule schedule : chunk) {
+                try {
+                    scheduleJob(schedule.jobDetail, schedule.trigger, true);
+                    result.addSuccesses(1);
+                } catch (MotechSchedulerException ex) {
+                    result.addFailure(schedule.job, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unschedules the jobs with the given IDs in a single job store transaction. If that fails, the jobs are
+     * unscheduled one by one, so that only the jobs which really can't be unscheduled are reported as failures.
+     */
+    private void unscheduleChunk(List<JobId> chunk, BulkOperationResult<JobId> result) {
+        List<TriggerKey> triggerKeys = new ArrayList<>(chunk.size());
+        for (JobId jobId : chunk) {
+            triggerKeys.add(triggerKey(jobId.value(), JOB_GROUP_NAME));
+        }
+
+        try {
+            scheduler.unscheduleJobs(triggerKeys);
+            result.addSuccesses(chunk.size());
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to unschedule a chunk of {} jobs, unscheduling them one by one", chunk.size(), e);
+            for (JobId jobId : chunk) {
+                try {
+                    unscheduleJob(jobId.value());
+                    result.addSuccesses(1);
+                } catch (MotechSchedulerException ex) {
+                    result.addFailure(jobId, ex);
+                }
+            }
         }
-        return names;
     }
 
     private void constructMisfirePoliciesMaps() {
@@ -920,4 +1089,19 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         simpleTriggerMisfirePolicies.put("reschedule_now_with_existing_count", SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_EXISTING_REPEAT_COUNT);
         simpleTriggerMisfirePolicies.put("reschedule_now_with_remaining_count", SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_REMAINING_REPEAT_COUNT);
     }
+
+    /**
+     * The Quartz job detail and trigger built for a schedulable job.
+     */
+    private static final class JobSchedule {
+        private final SchedulableJob job;
+        private final JobDetail jobDetail;
+        private final Trigger trigger;
+
+        private JobSchedule(SchedulableJob job, JobDetail jobDetail, Trigger trigger) {
+            this.job = job;
+            this.jobDetail = jobDetail;
+            this.trigger = trigger;
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package org.motechproject.scheduler.util;
+
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.SimpleTrigger;
+
+/**
+ * Utility class for counting the fire times of triggers firing at fixed intervals, without enumerating them.
+ * The fire times of such triggers lie on a grid anchored at the start time of the trigger, so their number
+ * can be computed directly from the trigger properties stored in the database.
+ */
+public final class TriggerFireCountUtil {
+
+    private static final long MILLIS_IN_SECOND = 1000L;
+    private static final long MILLIS_IN_MINUTE = 60 * MILLIS_IN_SECOND;
+    private static final long MILLIS_IN_HOUR = 60 * MILLIS_IN_MINUTE;
+
+    /**
+     * Returns the number of times a trigger firing every {@code repeatInterval} milliseconds, starting at
+     * {@code startTime}, will fire between its next fire time and its end time (both inclusive).
+     *
+     * @param startTime  the start time of the trigger, in milliseconds
+     * @param endTime  the end time of the trigger, in milliseconds
+     * @param nextFireTime  the next fire time of the trigger in milliseconds, 0 or less if it won't fire again
+     * @param repeatInterval  the interval between the fire times, in milliseconds
+     * @param repeatCount  the number of times the trigger repeats after its first fire, or
+     *                     {@link SimpleTrigger#REPEAT_INDEFINITELY} if it has no limit
+     * @return the number of remaining fire times
+     */
+    public static long countRemainingFires(long startTime, long endTime, long nextFireTime, long repeatInterval,
+                                           int repeatCount) {
+        if (nextFireTime <= 0 || nextFireTime > endTime) {
+            return 0;
+        }
+        if (repeatInterval <= 0) {
+            return 1;
+        }
+
+        long lastIndex = (endTime - startTime) / repeatInterval;
+        if (repeatCount != SimpleTrigger.REPEAT_INDEFINITELY) {
+            lastIndex = Math.min(lastIndex, repeatCount);
+        }
+        long nextIndex = Math.max(0, nextFireTime - startTime + repeatInterval - 1) / repeatInterval;
+
+        return Math.max(0, lastIndex - nextIndex + 1);
+    }
+
+    /**
+     * Returns the length in milliseconds of the interval of a calendar interval trigger, if that length is fixed.
+     * Intervals measured in days or longer units have no fixed length, because of daylight saving time changes
+     * and months of different lengths.
+     *
+     * @param unit  the unit of the interval
+     * @param repeatInterval  the number of units in the interval
+     * @return the length of the interval in milliseconds, null if it is not fixed
+     */
+    public static Long getFixedIntervalMillis(IntervalUnit unit, int repeatInterval) {
+        if (unit == IntervalUnit.MILLISECOND) {
+            return (long) repeatInterval;
+        } else if (unit == IntervalUnit.SECOND) {
+            return repeatInterval * MILLIS_IN_SECOND;
+        } else if (unit == IntervalUnit.MINUTE) {
+            return repeatInterval * MILLIS_IN_MINUTE;
+        } else if (unit == IntervalUnit.HOUR) {
+            return repeatInterval * MILLIS_IN_HOUR;
+        }
+        return null;
+    }
+
+    /**
+     * Utility class should not be initiated.
+     */
+    private TriggerFireCountUtil() {
+    }
+}
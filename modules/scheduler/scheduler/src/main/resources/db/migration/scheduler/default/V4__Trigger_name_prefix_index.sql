@@ -0,0 +1,2 @@
+-- index used for looking up triggers by name prefix (LIKE 'prefix%') --
+create index idx_qrtz_t_g_name_prefix on qrtz_triggers(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME varchar_pattern_ops);
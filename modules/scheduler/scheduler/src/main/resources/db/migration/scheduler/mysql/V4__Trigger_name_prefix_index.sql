@@ -0,0 +1,2 @@
+-- index used for looking up triggers by name prefix (LIKE 'prefix%') --
+CREATE INDEX IDX_QRTZ_T_G_NAME_PREFIX ON QRTZ_TRIGGERS(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME);
@@ -18,6 +18,7 @@ import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
+import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
@@ -31,6 +32,7 @@ import org.osgi.framework.BundleContext;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.TriggerKey;
 import org.quartz.impl.matchers.GroupMatcher;
 
 import javax.inject.Inject;
@@ -39,14 +41,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static ch.lambdaj.Lambda.extract;
 import static ch.lambdaj.Lambda.on;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static org.motechproject.commons.date.util.DateUtil.newDateTime;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
@@ -59,6 +64,8 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
 
     private static final int CURRENT_YEAR = DateTime.now().getYear();
     private static final String DEFAULT_GROUP = "default-group";
+    private static final String TRIGGER_GROUP = "default";
+    private static final String PREFIX_SUBJECT = "test_event_prefix";
 
     @Inject
     private BundleContext context;
@@ -455,6 +462,75 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldGetTriggerKeysStartingWithPrefix() throws MotechSchedulerJobRetrievalException {
+        addPrefixTestJobs();
+
+        assertEquals(asSet("test_event_prefix-a_1", "test_event_prefix-a%1", "test_event_prefix-a!1",
+                "test_event_prefix-aX1"), getTriggerNamesWithPrefix("test_event_prefix-"));
+        assertEquals(asSet("test_eventXprefix-a1"), getTriggerNamesWithPrefix("test_eventX"));
+        assertEquals(new HashSet<String>(), getTriggerNamesWithPrefix("test_event_none"));
+    }
+
+    @Test
+    public void shouldNotGetTriggerKeysContainingPrefixOnlyInTheMiddle() throws MotechSchedulerJobRetrievalException {
+        addPrefixTestJobs();
+
+        Set<String> names = getTriggerNamesWithPrefix("test_event_prefix");
+
+        assertEquals(4, names.size());
+        assertFalse(names.contains("test_event_middle-test_event_prefix-a1"));
+        assertFalse(names.contains("test_eventXprefix-a1"));
+    }
+
+    @Test
+    public void shouldTreatLikeWildcardsInPrefixLiterally() throws MotechSchedulerJobRetrievalException {
+        addPrefixTestJobs();
+
+        assertEquals(asSet("test_event_prefix-a_1"), getTriggerNamesWithPrefix("test_event_prefix-a_"));
+        assertEquals(asSet("test_event_prefix-a%1"), getTriggerNamesWithPrefix("test_event_prefix-a%"));
+        assertEquals(asSet("test_event_prefix-a!1"), getTriggerNamesWithPrefix("test_event_prefix-a!"));
+        assertEquals(new HashSet<String>(), getTriggerNamesWithPrefix("test_event_prefix-a!%"));
+    }
+
+    @Test
+    public void shouldUnscheduleAllJobsWithPrefix() throws MotechSchedulerJobRetrievalException {
+        addPrefixTestJobs();
+
+        schedulerService.unscheduleAllJobs("test_event_prefix-a_");
+
+        assertEquals(asSet("test_event_prefix-a%1", "test_event_prefix-a!1", "test_event_prefix-aX1"),
+                getTriggerNamesWithPrefix("test_event_prefix-"));
+
+        schedulerService.unscheduleAllJobs("test_event_prefix-");
+
+        assertEquals(new HashSet<String>(), getTriggerNamesWithPrefix("test_event_prefix-"));
+        assertEquals(asSet("test_eventXprefix-a1"), getTriggerNamesWithPrefix("test_eventX"));
+        assertEquals(asSet("test_event_middle-test_event_prefix-a1"), getTriggerNamesWithPrefix("test_event_middle"));
+    }
+
+    @Test
+    public void shouldGetScheduledJobTimingsWithPrefix() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 6, 7, 15, 10, 0, 0));
+
+            addPrefixTestJobs();
+
+            List<DateTime> eventTimes = schedulerService.getScheduledJobTimingsWithPrefix(PREFIX_SUBJECT, "a_",
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0),
+                    newDateTime(CURRENT_YEAR + 6, 7, 17, 12, 0, 0));
+
+            // only the times of test_event_prefix-a_1, the other jobs of the subject would match an unescaped pattern
+            assertEquals(asList(
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0),
+                    newDateTime(CURRENT_YEAR + 6, 7, 16, 12, 0, 0),
+                    newDateTime(CURRENT_YEAR + 6, 7, 17, 12, 0, 0)),
+                    eventTimes);
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     private void addTestJobs() {
         Map<String, Object> params = new HashMap<>();
         params.put(MotechSchedulerService.JOB_ID_KEY, "job_id1");
@@ -520,6 +596,35 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
 
     }
 
+    private void addPrefixTestJobs() {
+        // all the names start with test_event, so the jobs are removed after each test
+        scheduleCronJob(PREFIX_SUBJECT, "a_1");
+        scheduleCronJob(PREFIX_SUBJECT, "a%1");
+        scheduleCronJob(PREFIX_SUBJECT, "a!1");
+        scheduleCronJob(PREFIX_SUBJECT, "aX1");
+        scheduleCronJob("test_eventXprefix", "a1");
+        scheduleCronJob("test_event_middle", "test_event_prefix-a1");
+    }
+
+    private void scheduleCronJob(String subject, String jobId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent(subject, params), "0 0 12 * * ?"));
+    }
+
+    private Set<String> getTriggerNamesWithPrefix(String prefix) throws MotechSchedulerJobRetrievalException {
+        Set<String> names = new HashSet<>();
+        for (TriggerKey triggerKey : databaseService.getTriggerKeysWithPrefix(TRIGGER_GROUP, prefix)) {
+            names.add(triggerKey.getName());
+        }
+        return names;
+    }
+
+    private Set<String> asSet(String... names) {
+        return new HashSet<>(asList(names));
+    }
+
     private JobsSearchSettings getGridSettings(Integer page, Integer rows, String sortColumn, String direction) {
         JobsSearchSettings jobsSearchSettings = new JobsSearchSettings();
 
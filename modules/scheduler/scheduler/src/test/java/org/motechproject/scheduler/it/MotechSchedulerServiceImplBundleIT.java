@@ -14,13 +14,16 @@ import org.motechproject.commons.date.model.Time;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.scheduler.contract.BulkOperationResult;
 import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerService;
@@ -610,6 +613,48 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         assertNull(scheduler.getTrigger(triggerKey("test_event3-job_id", "default")));
     }
 
+    @Test
+    public void shouldScheduleJobsInBulkAndReportInvalidOnes() throws SchedulerException {
+        List<SchedulableJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id" + i);
+            jobs.add(new CronSchedulableJob(new MotechEvent("test_event", params), "0 0 12 * * ?"));
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, "invalid");
+        CronSchedulableJob invalidJob = new CronSchedulableJob(new MotechEvent("test_event", params), "invalid cron");
+        jobs.add(invalidJob);
+
+        BulkOperationResult<SchedulableJob> result = schedulerService.scheduleJobs(jobs);
+
+        assertEquals(1200, result.getSuccessCount());
+        assertEquals(1, result.getFailures().size());
+        assertTrue(result.getFailures().containsKey(invalidJob));
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-job_id0", "default")));
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-job_id1199", "default")));
+        assertNull(scheduler.getTrigger(triggerKey("test_event-invalid", "default")));
+    }
+
+    @Test
+    public void shouldUnscheduleJobsInBulk() throws SchedulerException {
+        List<JobId> jobIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id" + i);
+            schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", params), "0 0 12 * * ?"));
+            jobIds.add(new CronJobId("test_event", "job_id" + i));
+        }
+
+        BulkOperationResult<JobId> result = schedulerService.unscheduleJobs(jobIds);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getSuccessCount());
+        for (int i = 0; i < 3; i++) {
+            assertNull(scheduler.getTrigger(triggerKey("test_event-job_id" + i, "default")));
+        }
+    }
+
     @Test
     public void shouldPauseJobIfItIsUiDefined() throws Exception {
         Map<String, Object> params = new HashMap<>();
@@ -0,0 +1,179 @@
+package org.motechproject.scheduler.quartz;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class AutoSizingThreadPoolTest {
+
+    private static final int JOB_COUNT = 10;
+
+    private static CountDownLatch startedJobs;
+    private static CountDownLatch releaseJobs;
+
+    private AutoSizingThreadPool threadPool;
+
+    @After
+    public void tearDown() {
+        if (threadPool != null) {
+            threadPool.shutdown(false);
+        }
+    }
+
+    @Test
+    public void shouldStartThreadsOnlyWhenNeeded() throws Exception {
+        threadPool = new AutoSizingThreadPool();
+        threadPool.setThreadCount(5);
+        threadPool.initialize();
+
+        assertEquals(0, threadPool.getCurrentPoolSize());
+        assertEquals(5, threadPool.blockForAvailableThreads());
+
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(threadPool.runInThread(new BlockingRunnable(started, release)));
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, threadPool.getCurrentPoolSize());
+        assertEquals(2, threadPool.getBusyThreadCount());
+        assertEquals(3, threadPool.blockForAvailableThreads());
+
+        release.countDown();
+        waitUntilIdle();
+        assertEquals(5, threadPool.blockForAvailableThreads());
+    }
+
+    @Test
+    public void shouldBlockUntilThreadIsAvailable() throws Exception {
+        threadPool = new AutoSizingThreadPool();
+        threadPool.setThreadCount(1);
+        threadPool.initialize();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        threadPool.runInThread(new BlockingRunnable(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }
+        });
+        releaser.start();
+
+        assertEquals(1, threadPool.blockForAvailableThreads());
+        releaser.join();
+    }
+
+    @Test
+    public void shouldNotRunJobsAfterShutdown() throws Exception {
+        threadPool = new AutoSizingThreadPool();
+        threadPool.initialize();
+        threadPool.shutdown(true);
+
+        assertFalse(threadPool.runInThread(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+
+    @Test(expected = SchedulerConfigException.class)
+    public void shouldRejectInvalidThreadCount() throws Exception {
+        threadPool = new AutoSizingThreadPool();
+        threadPool.setThreadCount(0);
+        threadPool.initialize();
+    }
+
+    /**
+     * Fires a batch of due jobs which block until released, so they can only all start if the scheduler acquires
+     * them in a batch and the pool grows to run them at the same time.
+     */
+    @Test
+    public void shouldRunDueJobsOfBatchAtTheSameTime() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "AutoSizingThreadPoolTest");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.threadPool.class", AutoSizingThreadPool.class.getName());
+        properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(JOB_COUNT));
+        properties.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", String.valueOf(JOB_COUNT));
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "60000");
+
+        Scheduler scheduler = new StdSchedulerFactory(properties).getScheduler();
+        startedJobs = new CountDownLatch(JOB_COUNT);
+        releaseJobs = new CountDownLatch(1);
+        try {
+            Date fireTime = new Date();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                scheduler.scheduleJob(newJob(BlockingJob.class).withIdentity("job" + i).build(),
+                        newTrigger().withIdentity("trigger" + i).startAt(fireTime).build());
+            }
+
+            scheduler.start();
+
+            assertTrue(startedJobs.await(10, TimeUnit.SECONDS));
+            assertEquals(JOB_COUNT, scheduler.getCurrentlyExecutingJobs().size());
+        } finally {
+            releaseJobs.countDown();
+            scheduler.shutdown(true);
+        }
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        for (int i = 0; i < 100 && threadPool.getBusyThreadCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, threadPool.getBusyThreadCount());
+    }
+
+    public static class BlockingJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) {
+            new BlockingRunnable(startedJobs, releaseJobs).run();
+        }
+    }
+
+    private static class BlockingRunnable implements Runnable {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingRunnable(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.motechproject.scheduler.quartz;
+
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.simpl.SimpleThreadPool;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertTrue;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Compares the number of jobs fired per second with the previously shipped configuration (SimpleThreadPool with
+ * 3 threads, triggers acquired one by one) and with the auto-sizing pool. Like the other performance assessments, it
+ * depends on the speed of the machine and is not run with the regular tests.
+ */
+public class ThreadPoolPerformanceAssessment {
+
+    private static final int JOB_COUNT = 300;
+    private static final long JOB_DURATION_MILLIS = 10;
+
+    private static CountDownLatch firedJobs;
+
+    @Test
+    public void shouldFireJobsFasterThanFixedPool() throws Exception {
+        double simpleRate = fireJobs(SimpleThreadPool.class, 3, 1);
+        double autoSizingRate = fireJobs(AutoSizingThreadPool.class, 20, 20);
+
+        System.out.println(format("Fired jobs per second - SimpleThreadPool(3): %.1f, AutoSizingThreadPool(20): %.1f",
+                simpleRate, autoSizingRate));
+
+        assertTrue(autoSizingRate > simpleRate);
+    }
+
+    private double fireJobs(Class<?> threadPoolClass, int threadCount, int batchSize) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "LoadTest" + threadPoolClass.getSimpleName());
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty("org.quartz.threadPool.class", threadPoolClass.getName());
+        properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(threadCount));
+        properties.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", String.valueOf(batchSize));
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "60000");
+
+        Scheduler scheduler = new StdSchedulerFactory(properties).getScheduler();
+        try {
+            firedJobs = new CountDownLatch(JOB_COUNT);
+            Date fireTime = new Date();
+            for (int i = 0; i < JOB_COUNT; i++) {
+                scheduler.scheduleJob(newJob(SleepingJob.class).withIdentity("job" + i).build(),
+                        newTrigger().withIdentity("trigger" + i).startAt(fireTime).build());
+            }
+
+            long start = System.nanoTime();
+            scheduler.start();
+            assertTrue(firedJobs.await(60, TimeUnit.SECONDS));
+            long elapsed = System.nanoTime() - start;
+
+            return JOB_COUNT / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            scheduler.shutdown(true);
+        }
+    }
+
+    /**
+     * A job taking a fixed time, as sending the event to the broker would.
+     */
+    public static class SleepingJob implements Job {
+        @Override
+        public void execute(JobExecutionContext context) {
+            try {
+                Thread.sleep(JOB_DURATION_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            firedJobs.countDown();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.motechproject.scheduler.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.scheduler.constants.SchedulerConstants;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerContext;
+import org.springframework.context.ApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechScheduledJobTest {
+
+    private static final String SUBJECT = "org.motechproject.scheduler.test";
+
+    @Mock
+    private JobExecutionContext jobExecutionContext;
+
+    @Mock
+    private JobDetail jobDetail;
+
+    @Mock
+    private Scheduler scheduler;
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private EventRelay eventRelay;
+
+    private SchedulerContext schedulerContext = new SchedulerContext();
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        schedulerContext.put(SchedulerConstants.APPLICATION_CONTEXT_KEY, applicationContext);
+
+        when(jobExecutionContext.getJobDetail()).thenReturn(jobDetail);
+        when(jobExecutionContext.getScheduler()).thenReturn(scheduler);
+        when(scheduler.getContext()).thenReturn(schedulerContext);
+        when(jobDetail.getKey()).thenReturn(new JobKey(SUBJECT + "-job_id"));
+        when(applicationContext.getBean(EventRelay.class)).thenReturn(eventRelay);
+    }
+
+    @Test
+    public void shouldLookUpEventRelayOnce() {
+        when(jobDetail.getJobDataMap()).thenReturn(jobDataMap(), jobDataMap());
+
+        MotechScheduledJob job = new MotechScheduledJob();
+        job.execute(jobExecutionContext);
+        job.execute(jobExecutionContext);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay, times(2)).sendEventMessage(captor.capture());
+        verify(applicationContext).getBean(EventRelay.class);
+
+        assertEquals(SUBJECT, captor.getValue().getSubject());
+        assertEquals(SUBJECT + "-job_id", captor.getValue().getParameters().get(MotechSchedulerService.JOB_ID_KEY));
+        assertEquals(eventRelay, schedulerContext.get(SchedulerConstants.EVENT_RELAY_KEY));
+    }
+
+    private JobDataMap jobDataMap() {
+        JobDataMap jobDataMap = new JobDataMap();
+        jobDataMap.put(SchedulerConstants.EVENT_TYPE_KEY_NAME, SUBJECT);
+        return jobDataMap;
+    }
+}
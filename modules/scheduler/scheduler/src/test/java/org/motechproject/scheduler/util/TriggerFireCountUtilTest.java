@@ -0,0 +1,73 @@
+package org.motechproject.scheduler.util;
+
+import org.junit.Test;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.SimpleTrigger;
+import org.quartz.TriggerUtils;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class TriggerFireCountUtilTest {
+
+    private static final long START = 1420070400000L;
+    private static final long MINUTE = 60000L;
+
+    @Test
+    public void shouldCountSameFiresAsQuartzForSimpleTriggers() {
+        int[][] cases = {
+                // interval in minutes, repeat count, end time in minutes after start, fires already triggered
+                {5, SimpleTrigger.REPEAT_INDEFINITELY, 60, 0},
+                {5, SimpleTrigger.REPEAT_INDEFINITELY, 62, 3},
+                {7, 4, 100, 0},
+                {7, 4, 100, 2},
+                {7, 20, 30, 1},
+                {1, 999999, 1440, 17}
+        };
+
+        for (int[] c : cases) {
+            long interval = c[0] * MINUTE;
+            long end = START + c[2] * MINUTE;
+            OperableTrigger trigger = (OperableTrigger) newTrigger()
+                    .withSchedule(simpleSchedule().withIntervalInMilliseconds(interval).withRepeatCount(c[1]))
+                    .startAt(new Date(START))
+                    .endAt(new Date(end))
+                    .build();
+            trigger.computeFirstFireTime(null);
+            for (int i = 0; i < c[3]; i++) {
+                trigger.triggered(null);
+            }
+
+            long expected = TriggerUtils.computeFireTimesBetween(trigger, null, trigger.getStartTime(),
+                    trigger.getEndTime()).size();
+
+            assertEquals(expected, TriggerFireCountUtil.countRemainingFires(START, end,
+                    trigger.getNextFireTime().getTime(), interval, c[1]));
+        }
+    }
+
+    @Test
+    public void shouldReturnZeroIfTriggerWillNotFireAgain() {
+        assertEquals(0, TriggerFireCountUtil.countRemainingFires(START, START + MINUTE, 0, MINUTE, 5));
+        assertEquals(0, TriggerFireCountUtil.countRemainingFires(START, START + MINUTE, START + 2 * MINUTE, MINUTE, 5));
+    }
+
+    @Test
+    public void shouldCountSingleFireOfNonRepeatingTrigger() {
+        assertEquals(1, TriggerFireCountUtil.countRemainingFires(START, START + MINUTE, START, 0, 0));
+    }
+
+    @Test
+    public void shouldReturnIntervalLengthOnlyForFixedUnits() {
+        assertEquals(Long.valueOf(30000L), TriggerFireCountUtil.getFixedIntervalMillis(IntervalUnit.SECOND, 30));
+        assertEquals(Long.valueOf(2 * MINUTE), TriggerFireCountUtil.getFixedIntervalMillis(IntervalUnit.MINUTE, 2));
+        assertEquals(Long.valueOf(60 * MINUTE), TriggerFireCountUtil.getFixedIntervalMillis(IntervalUnit.HOUR, 1));
+        assertNull(TriggerFireCountUtil.getFixedIntervalMillis(IntervalUnit.DAY, 1));
+        assertNull(TriggerFireCountUtil.getFixedIntervalMillis(IntervalUnit.MONTH, 1));
+    }
+}
@@ -21,6 +21,11 @@ public final class EventSubjects {
     public static final String DATA_PROVIDER_SUBJECT = BASE_SUBJECT + "dataProvider.";
     public static final String DATA_PROVIDER_UPDATE_SUBJECT = DATA_PROVIDER_SUBJECT + "update";
 
+    public static final String TASK_CRUD_SUBJECT = "mds.crud.tasks.Task.";
+    public static final String TASK_CREATE_SUBJECT = TASK_CRUD_SUBJECT + "CREATE";
+    public static final String TASK_UPDATE_SUBJECT = TASK_CRUD_SUBJECT + "UPDATE";
+    public static final String TASK_DELETE_SUBJECT = TASK_CRUD_SUBJECT + "DELETE";
+
     public static final String SCHEDULE_REPEATING_JOB = "scheduleRepeatingJob";
     public static final String UNSCHEDULE_REPEATING_JOB = "unscheduleRepeatingJob";
 
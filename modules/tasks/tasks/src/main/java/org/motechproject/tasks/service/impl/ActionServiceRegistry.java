@@ -0,0 +1,202 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.exception.TaskHandlerException;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.motechproject.tasks.constants.TaskFailureCause.ACTION;
+
+/**
+ * Registry of the OSGi services used by task actions. Each service interface is followed by a {@link ServiceTracker},
+ * opened when an action of that interface is executed for the first time, so that retrieving the service does not
+ * query the service registry. The methods of the services are resolved once for each implementation class, method
+ * name and parameter types, and are kept as {@link MethodHandle}s. The resolved methods are dropped whenever a bundle
+ * is updated, unresolved or uninstalled, since its classes can no longer be used.
+ *
+ * @see TaskActionExecutor
+ */
+class ActionServiceRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionServiceRegistry.class);
+
+    private final ConcurrentMap<String, ServiceTracker> trackers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<HandleKey, MethodHandle> handles = new ConcurrentHashMap<>();
+
+    private final SynchronousBundleListener bundleListener = new SynchronousBundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            switch (event.getType()) {
+                case BundleEvent.UPDATED:
+                case BundleEvent.UNRESOLVED:
+                case BundleEvent.UNINSTALLED:
+                    handles.clear();
+                    break;
+                default:
+            }
+        }
+    };
+
+    private BundleContext bundleContext;
+
+    /**
+     * Returns the service registered under the given interface, or null if no such service is available.
+     *
+     * @param serviceInterface  the name of the service interface, not null
+     * @return the service, null if not available
+     */
+    public Object getService(String serviceInterface) {
+        if (bundleContext == null) {
+            return null;
+        }
+
+        ServiceTracker tracker = trackers.get(serviceInterface);
+
+        if (tracker == null) {
+            synchronized (this) {
+                tracker = trackers.get(serviceInterface);
+
+                if (tracker == null) {
+                    tracker = new ServiceTracker(bundleContext, serviceInterface, null);
+                    tracker.open();
+                    trackers.put(serviceInterface, tracker);
+                }
+            }
+        }
+
+        return tracker.getService();
+    }
+
+    /**
+     * Invokes the method with the given name and parameter types on the given service.
+     *
+     * @param service  the service, not null
+     * @param serviceInterface  the name of the service interface, used in error messages
+     * @param methodName  the name of the method
+     * @param classes  the types of the method parameters, not null
+     * @param objects  the values of the method parameters, not null
+     * @throws TaskHandlerException if the method does not exist or its invocation failed
+     */
+    public void invoke(Object service, String serviceInterface, String methodName, Class[] classes,
+                       Object[] objects) throws TaskHandlerException {
+        MethodHandle handle = getHandle(service.getClass(), serviceInterface, methodName, classes);
+
+        try {
+            handle.invokeExact(service, objects);
+        } catch (Throwable e) {
+            throw new TaskHandlerException(
+                    ACTION, "task.error.serviceMethodInvokeError", e, methodName, serviceInterface
+            );
+        }
+    }
+
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        close();
+
+        this.bundleContext = bundleContext;
+
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(bundleListener);
+        }
+    }
+
+    /**
+     * Closes all the service trackers and forgets all the resolved methods.
+     */
+    synchronized void close() {
+        if (bundleContext != null) {
+            try {
+                bundleContext.removeBundleListener(bundleListener);
+            } catch (IllegalStateException e) {
+                LOGGER.debug("Bundle context is no longer valid", e);
+            }
+        }
+
+        for (ServiceTracker tracker : trackers.values()) {
+            tracker.close();
+        }
+
+        trackers.clear();
+        handles.clear();
+    }
+
+    private MethodHandle getHandle(Class<?> serviceClass, String serviceInterface, String methodName,
+                                   Class[] classes) throws TaskHandlerException {
+        HandleKey key = new HandleKey(serviceClass, methodName, classes);
+        MethodHandle handle = handles.get(key);
+
+        if (handle == null) {
+            handle = resolve(serviceClass, serviceInterface, methodName, classes);
+            handles.putIfAbsent(key, handle);
+        }
+
+        return handle;
+    }
+
+    private MethodHandle resolve(Class<?> serviceClass, String serviceInterface, String methodName,
+                                 Class[] classes) throws TaskHandlerException {
+        try {
+            Method method = serviceClass.getMethod(methodName, classes);
+
+            // (Object service, Object[] parameters) -> void, so that it can be called with invokeExact
+            return MethodHandles.lookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(classes.length + 1).changeReturnType(void.class))
+                    .asSpreader(Object[].class, classes.length);
+        } catch (NoSuchMethodException e) {
+            throw new TaskHandlerException(
+                    ACTION, "task.error.notFoundMethodForService", e, methodName, serviceInterface
+            );
+        } catch (IllegalAccessException e) {
+            throw new TaskHandlerException(
+                    ACTION, "task.error.serviceMethodInvokeError", e, methodName, serviceInterface
+            );
+        }
+    }
+
+    /**
+     * Identifies a method by the class of the service, the name of the method and the types of its parameters.
+     */
+    private static final class HandleKey {
+
+        private final Class<?> serviceClass;
+        private final String methodName;
+        private final Class[] classes;
+
+        private HandleKey(Class<?> serviceClass, String methodName, Class[] classes) {
+            this.serviceClass = serviceClass;
+            this.methodName = methodName;
+            this.classes = classes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * serviceClass.hashCode() + methodName.hashCode()) + Arrays.hashCode(classes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof HandleKey)) {
+                return false;
+            }
+
+            HandleKey other = (HandleKey) obj;
+
+            return serviceClass == other.serviceClass && methodName.equals(other.methodName)
+                    && Arrays.equals(classes, other.classes);
+        }
+    }
+}
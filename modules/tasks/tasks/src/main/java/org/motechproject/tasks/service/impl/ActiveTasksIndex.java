@@ -0,0 +1,205 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.osgi.web.util.WebBundleUtil;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.motechproject.tasks.service.util.ChannelAvailabilityUtil;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_CREATE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_DELETE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_UPDATE_SUBJECT;
+
+/**
+ * In-memory index of the active tasks, keyed by the subject of their trigger. It allows the trigger handler to find
+ * the tasks that should be executed for an incoming event without querying the database. The index is built on the
+ * first read and then kept up to date with the MDS CRUD events for tasks and with the channel events, which change
+ * the availability of the channels used by the tasks.
+ */
+@Component
+public class ActiveTasksIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActiveTasksIndex.class);
+
+    private static final Comparator<Task> BY_ID = new Comparator<Task>() {
+        @Override
+        public int compare(Task first, Task second) {
+            return first.getId().compareTo(second.getId());
+        }
+    };
+
+    private final Map<String, List<Task>> tasksBySubject = new ConcurrentHashMap<>();
+    private final Map<Long, String> subjectsByTaskId = new HashMap<>();
+    private volatile boolean loaded;
+
+    private TasksDataService tasksDataService;
+    private BundleContext bundleContext;
+
+    /**
+     * Returns the enabled tasks with the given trigger subject, whose channels are all registered. The tasks are
+     * ordered by their ids.
+     *
+     * @param subject  the subject of the trigger
+     * @return  the list of tasks, never null
+     */
+    public List<Task> getActiveTasks(String subject) {
+        ensureLoaded();
+
+        List<Task> tasks = tasksBySubject.get(subject);
+        List<Task> result = new ArrayList<>();
+
+        if (tasks != null) {
+            for (Task task : tasks) {
+                if (task.hasRegisteredChannel()) {
+                    result.add(task);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reloads the task with the given id from the database and updates its entry in the index. The task is removed
+     * from the index if it no longer exists or is disabled.
+     *
+     * @param taskId  the id of the task
+     */
+    public synchronized void refresh(Long taskId) {
+        if (!loaded || taskId == null) {
+            // the task will be read when the index is built
+            return;
+        }
+
+        Task task = tasksDataService.findById(taskId);
+        remove(taskId);
+
+        if (isIndexed(task)) {
+            ChannelAvailabilityUtil.checkChannelAvailableInTask(task, getSymbolicNames());
+            add(task);
+        }
+
+        LOGGER.debug("Refreshed task with ID: {} in the active tasks index", taskId);
+    }
+
+    /**
+     * Recalculates whether the channels used by the indexed tasks are registered.
+     */
+    public synchronized void refreshChannelAvailability() {
+        if (!loaded) {
+            return;
+        }
+
+        Collection<String> symbolicNames = getSymbolicNames();
+        for (List<Task> tasks : tasksBySubject.values()) {
+            for (Task task : tasks) {
+                ChannelAvailabilityUtil.checkChannelAvailableInTask(task, symbolicNames);
+            }
+        }
+    }
+
+    @MotechListener(subjects = {TASK_CREATE_SUBJECT, TASK_UPDATE_SUBJECT, TASK_DELETE_SUBJECT})
+    public void handleTaskChange(MotechEvent event) {
+        refresh((Long) event.getParameters().get(OBJECT_ID));
+    }
+
+    @MotechListener(subjects = {CHANNEL_REGISTER_SUBJECT, CHANNEL_UPDATE_SUBJECT, CHANNEL_DEREGISTER_SUBJECT})
+    public void handleChannelChange(MotechEvent event) {
+        refreshChannelAvailability();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+
+        Collection<String> symbolicNames = getSymbolicNames();
+        for (Task task : tasksDataService.retrieveAll()) {
+            if (isIndexed(task)) {
+                ChannelAvailabilityUtil.checkChannelAvailableInTask(task, symbolicNames);
+                add(task);
+            }
+        }
+
+        loaded = true;
+        LOGGER.info("Built the active tasks index for {} tasks", subjectsByTaskId.size());
+    }
+
+    private boolean isIndexed(Task task) {
+        return task != null && task.isEnabled() && task.getTrigger() != null
+                && isNotBlank(task.getTrigger().getSubject());
+    }
+
+    private void add(Task task) {
+        String subject = task.getTrigger().getSubject();
+        List<Task> tasks = tasksBySubject.get(subject);
+        List<Task> updated = (tasks == null) ? new ArrayList<Task>() : new ArrayList<>(tasks);
+
+        updated.add(task);
+        Collections.sort(updated, BY_ID);
+
+        tasksBySubject.put(subject, Collections.unmodifiableList(updated));
+        subjectsByTaskId.put(task.getId(), subject);
+    }
+
+    private void remove(Long taskId) {
+        String subject = subjectsByTaskId.remove(taskId);
+        List<Task> tasks = (subject == null) ? null : tasksBySubject.get(subject);
+
+        if (tasks != null) {
+            List<Task> updated = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                if (!taskId.equals(task.getId())) {
+                    updated.add(task);
+                }
+            }
+
+            if (updated.isEmpty()) {
+                tasksBySubject.remove(subject);
+            } else {
+                tasksBySubject.put(subject, Collections.unmodifiableList(updated));
+            }
+        }
+    }
+
+    private Collection<String> getSymbolicNames() {
+        return new HashSet<>(WebBundleUtil.getSymbolicNames(bundleContext));
+    }
+
+    @Autowired
+    public void setTasksDataService(TasksDataService tasksDataService) {
+        this.tasksDataService = tasksDataService;
+    }
+
+    @Autowired
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+}
@@ -0,0 +1,78 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.api.DataProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Remembers the results of data source lookups done while handling a single trigger event. The tasks triggered by
+ * the event and executed in parallel share one cache, so a lookup with the same provider, object type, lookup name
+ * and lookup values is executed only once. Tasks executed one after another use a cache of their own, so that they
+ * see the changes made by the previous tasks. The looked up objects are shared by the tasks and should not be
+ * modified by them.
+ *
+ * @see TaskInitializer
+ */
+final class DataSourceLookupCache {
+
+    private final ConcurrentMap<List<Object>, FutureTask<Object>> results = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the result of the given lookup, executing it only if it was not executed before.
+     *
+     * @param provider  the data provider, not null
+     * @param type  the type of the looked up object
+     * @param lookupName  the name of the lookup
+     * @param lookupFields  the evaluated values of the lookup fields, not null, must not be modified later
+     * @return the result of the lookup
+     */
+    public Object lookup(final DataProvider provider, final String type, final String lookupName,
+                         final Map<String, String> lookupFields) {
+        List<Object> key = Arrays.<Object>asList(provider, type, lookupName, lookupFields);
+        FutureTask<Object> result = results.get(key);
+
+        if (result == null) {
+            FutureTask<Object> created = new FutureTask<>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return provider.lookup(type, lookupName, lookupFields);
+                }
+            });
+
+            result = results.putIfAbsent(key, created);
+
+            if (result == null) {
+                result = created;
+                created.run();
+            }
+        }
+
+        return getResult(result);
+    }
+
+    private Object getResult(FutureTask<Object> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a data source lookup", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -12,19 +12,18 @@ import org.motechproject.tasks.domain.mds.task.Task;
 import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
 import org.motechproject.tasks.exception.ActionNotFoundException;
 import org.motechproject.tasks.exception.TaskHandlerException;
+import org.motechproject.tasks.service.util.CompiledTemplate;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.motechproject.tasks.service.TaskService;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -44,12 +43,13 @@ import static org.motechproject.tasks.constants.TaskFailureCause.TRIGGER;
 public class TaskActionExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskActionExecutor.class);
 
+    private final ActionServiceRegistry serviceRegistry = new ActionServiceRegistry();
+
     private BundleContext bundleContext;
     private EventRelay eventRelay;
 
     private TaskService taskService;
     private TaskActivityService activityService;
-    private KeyEvaluator keyEvaluator;
 
     @Autowired
     public TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
@@ -69,9 +69,9 @@ public class TaskActionExecutor {
      */
     public void execute(Task task, TaskActionInformation actionInformation, TaskContext taskContext) throws TaskHandlerException {
         LOGGER.info("Executing task action: {} from task: {}", actionInformation.getName(), task.getName());
-        this.keyEvaluator = new KeyEvaluator(taskContext);
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         ActionEvent action = getActionEvent(actionInformation);
-        Map<String, Object> parameters = createParameters(actionInformation, action);
+        Map<String, Object> parameters = createParameters(actionInformation, action, keyEvaluator);
         LOGGER.debug("Parameters created: {} for task action: {}", parameters.toString(), action.getName());
 
         if (action.hasService() && bundleContext != null) {
@@ -104,8 +104,8 @@ public class TaskActionExecutor {
         return action;
     }
 
-    private Map<String, Object> createParameters(TaskActionInformation info,
-                                         ActionEvent action) throws TaskHandlerException {
+    private Map<String, Object> createParameters(TaskActionInformation info, ActionEvent action,
+                                                 KeyEvaluator keyEvaluator) throws TaskHandlerException {
         SortedSet<ActionParameter> actionParameters = action.getActionParameters();
         Map<String, Object> parameters = new HashMap<>(actionParameters.size());
 
@@ -123,10 +123,10 @@ public class TaskActionExecutor {
 
                 switch (actionParameter.getType()) {
                     case LIST:
-                        parameters.put(key, convertToList((List<String>) LIST.parse(template)));
+                        parameters.put(key, convertToList((List<String>) LIST.parse(template), keyEvaluator));
                         break;
                     case MAP:
-                        parameters.put(key, convertToMap(template));
+                        parameters.put(key, convertToMap(template, keyEvaluator));
                         break;
                     default:
                         try {
@@ -156,7 +156,7 @@ public class TaskActionExecutor {
         return parameters;
     }
 
-    private Map<Object, Object> convertToMap(String template) throws TaskHandlerException {
+    private Map<Object, Object> convertToMap(String template, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         String[] rows = template.split("(\\r)?\\n");
         Map<Object, Object> tempMap = new HashMap<>(rows.length);
 
@@ -168,8 +168,8 @@ public class TaskActionExecutor {
             switch (array.length) {
                 case 2:
                     array[1] = array[1].trim();
-                    mapKey = getValue(array[0]);
-                    mapValue = getValue(array[1]);
+                    mapKey = getValue(array[0], keyEvaluator);
+                    mapValue = getValue(array[1], keyEvaluator);
 
                     tempMap.put(
                         ParameterType.getType(mapKey.getClass()).parse(keyEvaluator.evaluateTemplateString(array[0])),
@@ -177,7 +177,7 @@ public class TaskActionExecutor {
                     );
                     break;
                 case 1:
-                    mapValue = getValue(array[0]);
+                    mapValue = getValue(array[0], keyEvaluator);
                     if (mapValue instanceof Multimap) {
                         tempMap.putAll(((Multimap) mapValue).asMap());
                     } else {
@@ -190,11 +190,11 @@ public class TaskActionExecutor {
         return tempMap;
     }
 
-    private List<Object> convertToList(List<String> templates) throws TaskHandlerException {
+    private List<Object> convertToList(List<String> templates, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         List<Object> tempList = new ArrayList<>();
 
         for (String template : templates) {
-            Object value = getValue(template.trim());
+            Object value = getValue(template.trim(), keyEvaluator);
 
             if (value instanceof Collection) {
                 tempList.addAll((Collection) value);
@@ -206,8 +206,8 @@ public class TaskActionExecutor {
         return tempList;
     }
 
-    private Object getValue(String row) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
+    private Object getValue(String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        List<KeyInformation> keys = CompiledTemplate.compile(row).getKeys();
 
         Object result;
         if (keys.isEmpty()) {
@@ -222,39 +222,31 @@ public class TaskActionExecutor {
 
     private boolean callActionServiceMethod(ActionEvent action, Map<String, Object> parameters)
             throws TaskHandlerException {
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+        Object service = serviceRegistry.getService(action.getServiceInterface());
+        boolean serviceAvailable = service != null;
 
         if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
-            String serviceMethod = action.getServiceMethod();
             MethodHandler methodHandler = new MethodHandler(action, parameters);
 
-            try {
-                Method method = service.getClass().getMethod(serviceMethod, methodHandler.getClasses());
-
-                try {
-                    method.invoke(service, methodHandler.getObjects());
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw new TaskHandlerException(
-                            ACTION, "task.error.serviceMethodInvokeError", e,
-                            serviceMethod, action.getServiceInterface()
-                    );
-                }
-            } catch (NoSuchMethodException e) {
-                throw new TaskHandlerException(
-                        ACTION, "task.error.notFoundMethodForService", e,
-                        serviceMethod, action.getServiceInterface()
-                );
-            }
+            serviceRegistry.invoke(
+                    service, action.getServiceInterface(), action.getServiceMethod(),
+                    methodHandler.getClasses(), methodHandler.getObjects()
+            );
         }
 
         return serviceAvailable;
     }
 
+    /**
+     * Closes the trackers of the services used by actions.
+     */
+    @PreDestroy
+    public void close() {
+        serviceRegistry.close();
+    }
+
     void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+        this.serviceRegistry.setBundleContext(bundleContext);
     }
 }
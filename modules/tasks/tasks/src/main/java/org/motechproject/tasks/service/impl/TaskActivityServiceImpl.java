@@ -1,5 +1,6 @@
 package org.motechproject.tasks.service.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
@@ -9,20 +10,60 @@ import org.motechproject.tasks.domain.mds.task.TaskActivityType;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records task activities through a write-behind buffer. Added activities are queued and written to the database in
+ * batches, each batch in a single transaction, either periodically or as soon as a full batch is waiting. If the buffer
+ * is full, the activity is written by the calling thread, so the buffer is bounded. All the queued activities are
+ * written before activities are read or deleted, and batches are written one at a time, so the reads always see the
+ * activities added before them, including the ones of a batch which was still being written by another thread.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
+
+    private static final int BUFFER_CAPACITY = 10000;
+    private static final int BATCH_SIZE = 100;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
+    private final BlockingQueue<TaskActivity> buffer = new LinkedBlockingQueue<>(BUFFER_CAPACITY);
+
+    // held from draining a batch until it is committed
+    private final Object flushLock = new Object();
+
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPending.set(false);
+            flush();
+        }
+    };
+
     private TaskActivitiesDataService taskActivitiesDataService;
+    private ScheduledExecutorService scheduler;
 
     @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
@@ -31,36 +72,38 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public void addError(Task task, TaskHandlerException e, Map<String, Object> parameters) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
+        add(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
                 TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e), parameters));
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
+        add(new TaskActivity("task.success.ok", task.getId(),
                 TaskActivityType.SUCCESS));
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
+        add(new TaskActivity("task.warning.taskDisabled", task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
+        add(new TaskActivity(key, field, task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
+        add(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
                 task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
     }
 
     @Override
     public void deleteActivitiesForTask(Long taskId) {
+        flush();
+
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
@@ -68,26 +111,131 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public TaskActivity getTaskActivityById(Long activityId) {
+        flush();
+
         return taskActivitiesDataService.findById(activityId);
     }
 
     @Override
     public List<TaskActivity> getLatestActivities() {
+        flush();
+
         return taskActivitiesDataService.retrieveAll(new QueryParams(1, 10, new Order("date", Order.Direction.DESC)));
     }
 
     @Override
     public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypes, QueryParams queryParams) {
+        flush();
+
         return taskActivitiesDataService.byTaskAndActivityTypes(taskId, activityTypes, queryParams);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes) {
+        flush();
+
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, activityTypes);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
+        flush();
+
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
     }
-}
\ No newline at end of file
+
+    @PostConstruct
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("motech-tasks-activities-%d").setDaemon(true).build()
+            );
+            scheduler.scheduleWithFixedDelay(flushTask, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        ScheduledExecutorService executor;
+
+        synchronized (this) {
+            executor = scheduler;
+            scheduler = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        flush();
+    }
+
+    /**
+     * Writes all the queued activities to the database. If another thread is writing a batch, waits until that batch
+     * is committed.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            while (!buffer.isEmpty()) {
+                List<TaskActivity> batch = new ArrayList<>(BATCH_SIZE);
+                buffer.drainTo(batch, BATCH_SIZE);
+
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                try {
+                    taskActivitiesDataService.createAll(batch);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to save a batch of {} task activities, saving them one by one", batch.size(), e);
+                    createOneByOne(batch);
+                }
+            }
+        }
+    }
+
+    private void createOneByOne(List<TaskActivity> batch) {
+        // only the activities which can't be saved on their own are lost
+        for (TaskActivity activity : batch) {
+            try {
+                taskActivitiesDataService.create(activity);
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to save activity of task {}", activity.getTask(), e);
+            }
+        }
+    }
+
+    private void add(TaskActivity activity) {
+        if (!buffer.offer(activity)) {
+            flush();
+            if (!buffer.offer(activity)) {
+                taskActivitiesDataService.create(activity);
+            }
+        }
+
+        // a single flush writes all the queued activities, so there's no need to request another one until it starts
+        if (buffer.size() >= BATCH_SIZE && flushPending.compareAndSet(false, true)) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        ScheduledExecutorService executor;
+
+        synchronized (this) {
+            executor = scheduler;
+        }
+
+        if (executor != null) {
+            try {
+                executor.execute(flushTask);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Task activities are no longer written in the background", e);
+            }
+        }
+
+        flushPending.set(false);
+        flush();
+    }
+}
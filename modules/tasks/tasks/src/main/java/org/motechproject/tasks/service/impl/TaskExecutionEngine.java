@@ -0,0 +1,285 @@
+package org.motechproject.tasks.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes the tasks triggered by a single event. When more than one task matches the event, the tasks are executed
+ * in parallel on a bounded thread pool, so that a slow action of one task does not delay the others. The engine
+ * waits until all the tasks have been executed, so the event is handled only once all its tasks are done.
+ * <p>
+ * By default executions of the same task never overlap and are run in the order in which their events arrived. This
+ * ordering can be turned off with the {@code task.execution.ordered} setting, executions of the same task may then
+ * run at the same time, so changes of the shared task object must be made through
+ * {@link #executeExclusively(Task, TaskCallback)}. Tasks are ordered using a fixed number of locks, so executions of
+ * two different tasks may occasionally wait for each other as well.
+ * <p>
+ * The size of the pool is set with the {@code task.execution.threads} setting, a value of 1 or less makes all tasks
+ * run one after another on the thread handling the event.
+ */
+@Component
+public class TaskExecutionEngine {
+
+    /**
+     * Callback executing a single task.
+     */
+    public interface TaskCallback {
+
+        /**
+         * Executes the given task.
+         *
+         * @param task  the task to execute, not null
+         */
+        void execute(Task task);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionEngine.class);
+
+    private static final String THREADS_KEY = "task.execution.threads";
+    private static final String ORDERED_KEY = "task.execution.ordered";
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 16;
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final ThreadLocal<Boolean> IN_POOL = new ThreadLocal<>();
+
+    private final Lock[] taskLocks = createLocks();
+
+    private SettingsFacade settings;
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile Boolean ordered;
+
+    @Autowired
+    public TaskExecutionEngine(@Qualifier("tasksSettings") SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Executes the given tasks and waits until all of them are done. If executing any of the tasks has thrown an
+     * exception, the first such exception is rethrown after all the tasks are done.
+     *
+     * @param tasks  the tasks to execute, not null
+     * @param callback  the callback executing a single task, not null
+     */
+    public void executeAll(List<Task> tasks, TaskCallback callback) {
+        if (!isParallel(tasks)) {
+            for (Task task : tasks) {
+                executeInOrder(task, callback);
+            }
+            return;
+        }
+
+        ThreadPoolExecutor pool = getExecutor();
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            FutureTask<Void> future = new FutureTask<>(createExecution(task, callback), null);
+            pool.execute(future);
+            futures.add(future);
+        }
+
+        waitFor(futures);
+    }
+
+    /**
+     * Checks whether the given tasks would be executed in parallel by {@link #executeAll(List, TaskCallback)}.
+     *
+     * @param tasks  the tasks to execute, not null
+     * @return true if the tasks would be executed in parallel, false if one after another
+     */
+    public boolean isParallel(List<Task> tasks) {
+        return tasks.size() > 1 && getExecutor() != null && !Boolean.TRUE.equals(IN_POOL.get());
+    }
+
+    /**
+     * Executes the given callback while no other execution of the same task holds the lock of the task, regardless of
+     * the {@code task.execution.ordered} setting. Used for changing the task object shared by concurrent executions.
+     * The lock is reentrant, so this can be called from within an execution of the task.
+     *
+     * @param task  the task to lock, not null
+     * @param callback  the callback to execute, not null
+     */
+    public void executeExclusively(Task task, TaskCallback callback) {
+        if (task.getId() == null) {
+            callback.execute(task);
+            return;
+        }
+
+        Lock lock = getLock(task.getId());
+        lock.lock();
+        try {
+            callback.execute(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ThreadPoolExecutor pool = executor;
+
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("{} task executions did not finish before shutdown", pool.getActiveCount());
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private Runnable createExecution(final Task task, final TaskCallback callback) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                Thread thread = Thread.currentThread();
+                ClassLoader previous = thread.getContextClassLoader();
+                Boolean wasInPool = IN_POOL.get();
+
+                thread.setContextClassLoader(classLoader);
+                IN_POOL.set(Boolean.TRUE);
+                try {
+                    executeInOrder(task, callback);
+                } finally {
+                    IN_POOL.set(wasInPool);
+                    thread.setContextClassLoader(previous);
+                }
+            }
+        };
+    }
+
+    private void executeInOrder(Task task, TaskCallback callback) {
+        if (isOrdered()) {
+            executeExclusively(task, callback);
+        } else {
+            callback.execute(task);
+        }
+    }
+
+    private void waitFor(List<Future<?>> futures) {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                failure = keepFirst(failure, new IllegalStateException("Interrupted while executing tasks", e));
+            } catch (ExecutionException e) {
+                failure = keepFirst(failure, toRuntimeException(e.getCause()));
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private RuntimeException keepFirst(RuntimeException first, RuntimeException next) {
+        return first == null ? next : first;
+    }
+
+    private RuntimeException toRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private Lock getLock(Long taskId) {
+        // the locks are striped, so that their number does not grow with the number of tasks ever executed
+        int hash = taskId.hashCode();
+        return taskLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    private static Lock[] createLocks() {
+        Lock[] locks = new Lock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            // fair locks keep the executions of a task in the order in which they were requested
+            locks[i] = new ReentrantLock(true);
+        }
+        return locks;
+    }
+
+    private boolean isOrdered() {
+        if (ordered == null) {
+            String property = settings.getProperty(ORDERED_KEY);
+            ordered = property == null || Boolean.parseBoolean(property.trim());
+        }
+        return ordered;
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = createExecutor();
+                }
+            }
+        }
+        return executor.getMaximumPoolSize() > 1 ? executor : null;
+    }
+
+    private ThreadPoolExecutor createExecutor() {
+        int threads = getThreadCount();
+        int poolSize = Math.max(1, threads);
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(poolSize * QUEUE_CAPACITY_PER_THREAD),
+                new ThreadFactoryBuilder().setNameFormat("motech-tasks-executor-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("Tasks triggered by the same event will be executed on {} threads", poolSize);
+        return pool;
+    }
+
+    private int getThreadCount() {
+        String property = settings.getProperty(THREADS_KEY);
+
+        if (property == null) {
+            return DEFAULT_THREADS;
+        }
+
+        try {
+            return Integer.parseInt(property.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("The value of key: {} is not a number. Tasks will be executed on {} threads",
+                    THREADS_KEY, DEFAULT_THREADS);
+            return DEFAULT_THREADS;
+        }
+    }
+}
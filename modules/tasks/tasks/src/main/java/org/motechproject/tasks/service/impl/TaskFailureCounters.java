@@ -0,0 +1,234 @@
+package org.motechproject.tasks.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the counters of failures in a row of the tasks in memory. Executing a task only changes the counter held
+ * here, the changed counters are written to the database periodically, or as soon as many of them are waiting. The
+ * counters held here take precedence over the ones of the task objects, which may have been loaded before the last
+ * change of the counter was written. Saving a task through the task service writes the counter held here together
+ * with the task, deleting a task discards its counter.
+ */
+@Component
+public class TaskFailureCounters {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskFailureCounters.class);
+
+    private static final long FLUSH_INTERVAL_SECONDS = 5L;
+    private static final int FLUSH_THRESHOLD = 100;
+
+    private final Map<Long, Integer> pending = new HashMap<>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private TasksDataService tasksDataService;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("motech-tasks-failure-counters-%d").setDaemon(true).build()
+            );
+            scheduler.scheduleWithFixedDelay(flushTask, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        ScheduledExecutorService executor;
+
+        synchronized (this) {
+            executor = scheduler;
+            scheduler = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        flush();
+    }
+
+    /**
+     * Records a failed execution of the given task. The counter of the task object is updated as well.
+     *
+     * @param task  the task which failed, not null
+     * @return the number of failures in a row of the task, including this one
+     */
+    public int recordFailure(Task task) {
+        int failures;
+        boolean flushNeeded;
+
+        synchronized (this) {
+            failures = currentFailures(task) + 1;
+            flushNeeded = store(task, failures);
+        }
+
+        if (flushNeeded) {
+            requestFlush();
+        }
+
+        return failures;
+    }
+
+    /**
+     * Records a successful execution of the given task, which resets its counter of failures in a row. Nothing is
+     * written if the counter is already zero.
+     *
+     * @param task  the task which succeeded, not null
+     */
+    public void recordSuccess(Task task) {
+        boolean flushNeeded;
+
+        synchronized (this) {
+            if (currentFailures(task) == 0) {
+                return;
+            }
+            flushNeeded = store(task, 0);
+        }
+
+        if (flushNeeded) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Forgets the counter waiting to be written for the task with the given id.
+     *
+     * @param taskId  the id of the task
+     */
+    public synchronized void discard(Long taskId) {
+        pending.remove(taskId);
+    }
+
+    /**
+     * Forgets the counter waiting to be written for the task with the given id, unless it has changed since it was
+     * retrieved with {@link #getPendingFailures(Long)}.
+     *
+     * @param taskId  the id of the task
+     * @param failures  the counter which was written with the task, null if there was none
+     */
+    public synchronized void discard(Long taskId, Integer failures) {
+        if (failures != null && failures.equals(pending.get(taskId))) {
+            pending.remove(taskId);
+        }
+    }
+
+    /**
+     * Returns the counter of the task with the given id which was not written to the database yet.
+     *
+     * @param taskId  the id of the task, may be null
+     * @return the counter waiting to be written, null if there is none
+     */
+    public synchronized Integer getPendingFailures(Long taskId) {
+        return taskId == null ? null : pending.get(taskId);
+    }
+
+    /**
+     * Writes all the changed counters to the database. Counters which could not be written are kept and written
+     * with the next flush.
+     */
+    public void flush() {
+        final Map<Long, Integer> batch;
+
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(pending);
+        }
+
+        try {
+            tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (Map.Entry<Long, Integer> entry : batch.entrySet()) {
+                        Task existing = tasksDataService.findById(entry.getKey());
+
+                        if (existing != null && existing.getFailuresInRow() != entry.getValue()) {
+                            existing.setFailuresInRow(entry.getValue());
+                            tasksDataService.update(existing);
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to save the failure counters of {} tasks, they will be saved later", batch.size(), e);
+            return;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<Long, Integer> entry : batch.entrySet()) {
+                // the counter may have changed again while it was being written
+                if (entry.getValue().equals(pending.get(entry.getKey()))) {
+                    pending.remove(entry.getKey());
+                }
+            }
+        }
+
+        LOGGER.debug("Saved the failure counters of {} tasks", batch.size());
+    }
+
+    @Autowired
+    public void setTasksDataService(TasksDataService tasksDataService) {
+        this.tasksDataService = tasksDataService;
+    }
+
+    private int currentFailures(Task task) {
+        Integer failures = task.getId() == null ? null : pending.get(task.getId());
+        return failures == null ? task.getFailuresInRow() : failures;
+    }
+
+    private boolean store(Task task, int failures) {
+        task.setFailuresInRow(failures);
+
+        if (task.getId() == null) {
+            return false;
+        }
+
+        pending.put(task.getId(), failures);
+        return pending.size() >= FLUSH_THRESHOLD;
+    }
+
+    private void requestFlush() {
+        ScheduledExecutorService executor;
+
+        synchronized (this) {
+            executor = scheduler;
+        }
+
+        if (executor != null) {
+            try {
+                executor.execute(flushTask);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Failure counters are no longer flushed in the background", e);
+            }
+        }
+
+        flush();
+    }
+}
@@ -36,6 +36,7 @@ class TaskInitializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskInitializer.class);
 
     private TaskContext taskContext;
+    private DataSourceLookupCache lookupCache;
 
     /**
      * Class constructor.
@@ -43,7 +44,18 @@ class TaskInitializer {
      * @param taskContext  the task context
      */
     TaskInitializer(TaskContext taskContext) {
+        this(taskContext, new DataSourceLookupCache());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param taskContext  the task context
+     * @param lookupCache  the results of data source lookups shared by the tasks handling the same event
+     */
+    TaskInitializer(TaskContext taskContext, DataSourceLookupCache lookupCache) {
         this.taskContext = taskContext;
+        this.lookupCache = lookupCache;
     }
 
     /**
@@ -102,6 +114,6 @@ class TaskInitializer {
             lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
         }
 
-        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+        return lookupCache.lookup(provider, dataSource.getType(), dataSource.getName(), lookupFields);
     }
 }
@@ -11,7 +11,6 @@ import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.mds.query.QueryExecution;
-import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.osgi.web.util.WebBundleUtil;
 import org.motechproject.tasks.domain.mds.channel.ActionEvent;
@@ -35,9 +34,9 @@ import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.TriggerEventService;
 import org.motechproject.tasks.service.TriggerHandler;
+import org.motechproject.tasks.service.util.ChannelAvailabilityUtil;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,10 +45,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PreDestroy;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -58,6 +57,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
@@ -65,9 +65,10 @@ import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_REGISTER_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
-import static org.motechproject.tasks.service.util.HandlerPredicates.tasksWithRegisteredChannel;
 
 /**
  * A {@link TaskService} that manages CRUD operations for a {@link Task}.
@@ -85,7 +86,15 @@ public class TaskServiceImpl implements TaskService {
     private EventRelay eventRelay;
     private BundleContext bundleContext;
     private TaskMigrationManager taskMigrationManager;
+    private ActiveTasksIndex activeTasksIndex;
+    private TaskFailureCounters failureCounters;
 
+    /**
+     * Actions already found in channels, by the module name, action name, service and subject they were looked up by.
+     */
+    private final Map<String, ActionEvent> actionEvents = new ConcurrentHashMap<>();
+
+    private final TasksEventParserRegistry parserRegistry = new TasksEventParserRegistry();
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -135,8 +144,14 @@ public class TaskServiceImpl implements TaskService {
     @Override
     public ActionEvent getActionEventFor(TaskActionInformation taskActionInformation)
             throws ActionNotFoundException {
+        String key = actionEventKey(taskActionInformation);
+        ActionEvent event = actionEvents.get(key);
+
+        if (event != null) {
+            return event;
+        }
+
         Channel channel = channelService.getChannel(taskActionInformation.getModuleName());
-        ActionEvent event = null;
 
         for (ActionEvent action : channel.getActionTaskEvents()) {
             if (action.accept(taskActionInformation)) {
@@ -151,6 +166,7 @@ public class TaskServiceImpl implements TaskService {
             ));
         }
 
+        actionEvents.put(key, event);
         return event;
     }
 
@@ -179,31 +195,7 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public List<Task> findActiveTasksForTriggerSubject(final String subject) {
-        List<Task> list = null;
-
-        if (isNotBlank(subject)) {
-            List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
-                @Override
-                public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
-                    String byTriggerSubject = "trigger.subject == param";
-                    String isTaskActive = "enabled == true";
-                    String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
-
-                    query.setFilter(filter);
-                    query.declareParameters("java.lang.String param");
-                    query.setOrdering("id asc");
-
-                    return (List) QueryExecutor.execute(query, subject, restriction);
-                }
-            });
-            if (enabledTasks != null) {
-                checkChannelAvailableInTasks(enabledTasks);
-                list = new ArrayList<>(enabledTasks);
-                CollectionUtils.filter(list, tasksWithRegisteredChannel());
-            }
-        }
-
-        return list == null ? new ArrayList<>() : list;
+        return isNotBlank(subject) ? activeTasksIndex.getActiveTasks(subject) : new ArrayList<Task>();
     }
 
     @Override
@@ -212,18 +204,9 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
-
-            for (ServiceReference<TasksEventParser> ref : references) {
-                TasksEventParser parser = bundleContext.getService(ref);
-                if (parser.getName().equals(name)) {
-                    return parser;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.");
+        TasksEventParser parser = parserRegistry.getParser(name);
+        if (parser != null) {
+            return parser;
         }
 
         // If a non-null parser name has been found in the event parameter, yet it cannot be found in
@@ -247,12 +230,21 @@ public class TaskServiceImpl implements TaskService {
             throw new TaskNotFoundException(taskId);
         }
 
+        failureCounters.discard(taskId);
         tasksDataService.delete(t);
+        activeTasksIndex.refresh(taskId);
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
+    @MotechListener(subjects = {CHANNEL_REGISTER_SUBJECT, CHANNEL_DEREGISTER_SUBJECT})
+    public void clearActionEventsAfterChannelChange(MotechEvent event) {
+        actionEvents.clear();
+    }
+
     @MotechListener(subjects = CHANNEL_UPDATE_SUBJECT)
     public void validateTasksAfterChannelUpdate(MotechEvent event) {
+        actionEvents.clear();
+
         String moduleName = event.getParameters().get(CHANNEL_MODULE_NAME).toString();
         Channel channel = channelService.getChannel(moduleName);
 
@@ -555,6 +547,9 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
+        // failures counted since the task was loaded must not be lost by saving its stale counter
+        final Integer pendingFailures = failureCounters.getPendingFailures(task.getId());
+
         tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -564,7 +559,7 @@ public class TaskServiceImpl implements TaskService {
                     LOGGER.debug("Updating task: {} with ID: {}", existing.getName(), existing.getId());
                     existing.setActions(task.getActions());
                     existing.setDescription(task.getDescription());
-                    existing.setFailuresInRow(task.getFailuresInRow());
+                    existing.setFailuresInRow(pendingFailures == null ? task.getFailuresInRow() : pendingFailures);
 
                     if (!existing.isEnabled() && task.isEnabled()) {
                         existing.resetFailuresInRow();
@@ -591,6 +586,10 @@ public class TaskServiceImpl implements TaskService {
             }
         });
 
+        // the counter was written with the task
+        failureCounters.discard(task.getId(), pendingFailures);
+
+        activeTasksIndex.refresh(task.getId());
         LOGGER.info("Saved task: {}", task.getName());
     }
 
@@ -610,28 +609,24 @@ public class TaskServiceImpl implements TaskService {
 
     private void checkChannelAvailableInTasks(List<Task> tasks) {
         if (CollectionUtils.isNotEmpty(tasks)) {
+            List<String> symbolic = WebBundleUtil.getSymbolicNames(bundleContext);
+
             for (Task task : tasks) {
-                checkChannelAvailableInTask(task);
+                ChannelAvailabilityUtil.checkChannelAvailableInTask(task, symbolic);
             }
         }
     }
 
+    private String actionEventKey(TaskActionInformation info) {
+        return StringUtils.join(new Object[]{
+                info.getModuleName(), info.getName(), info.getServiceInterface(), info.getServiceMethod(),
+                info.getSubject()
+        }, '|');
+    }
+
     private void checkChannelAvailableInTask(Task task) {
         if (null != task) {
-            List<String> symbolic = WebBundleUtil.getSymbolicNames(bundleContext);
-
-            TaskTriggerInformation trigger = task.getTrigger();
-            List<TaskActionInformation> actions = task.getActions();
-
-            task.setHasRegisteredChannel(null != trigger && symbolic.contains(trigger.getModuleName()));
-
-            if (CollectionUtils.isNotEmpty(actions)) {
-                for (TaskActionInformation action : actions) {
-                    if (!symbolic.contains(action.getModuleName())) {
-                        task.setHasRegisteredChannel(false);
-                    }
-                }
-            }
+            ChannelAvailabilityUtil.checkChannelAvailableInTask(task, WebBundleUtil.getSymbolicNames(bundleContext));
         }
     }
 
@@ -658,6 +653,12 @@ public class TaskServiceImpl implements TaskService {
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+        this.parserRegistry.setBundleContext(bundleContext);
+    }
+
+    @PreDestroy
+    public void close() {
+        parserRegistry.close();
     }
 
     @Autowired
@@ -674,4 +675,14 @@ public class TaskServiceImpl implements TaskService {
     public void setTaskMigrationManager(TaskMigrationManager taskMigrationManager) {
         this.taskMigrationManager = taskMigrationManager;
     }
+
+    @Autowired
+    public void setActiveTasksIndex(ActiveTasksIndex activeTasksIndex) {
+        this.activeTasksIndex = activeTasksIndex;
+    }
+
+    @Autowired
+    public void setFailureCounters(TaskFailureCounters failureCounters) {
+        this.failureCounters = failureCounters;
+    }
 }
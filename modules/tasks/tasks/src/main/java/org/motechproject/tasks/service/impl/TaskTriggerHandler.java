@@ -35,6 +35,7 @@ import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.motechproject.tasks.service.util.HandlerPredicates.withServiceName;
 import static org.motechproject.tasks.constants.EventDataKeys.HANDLER_ERROR_PARAM;
@@ -87,7 +88,13 @@ public class TaskTriggerHandler implements TriggerHandler {
     @Autowired
     private TaskActionExecutor executor;
 
-    private Map<String, DataProvider> dataProviders;
+    @Autowired
+    private TaskExecutionEngine executionEngine;
+
+    @Autowired
+    private TaskFailureCounters failureCounters;
+
+    private volatile Map<String, DataProvider> dataProviders;
 
     @PostConstruct
     public void init() {
@@ -149,14 +156,26 @@ public class TaskTriggerHandler implements TriggerHandler {
 
         // Use custom event parser, if it exists, to modify event
         String triggerSubject = parser == null ? event.getSubject() : parser.parseEventSubject(event.getSubject(), event.getParameters());
-        Map<String, Object> parameters = parser == null ? event.getParameters() : parser.parseEventParameters(event.getSubject(), event.getParameters());
+        final Map<String, Object> parameters = parser == null ? event.getParameters() : parser.parseEventParameters(event.getSubject(), event.getParameters());
 
         List<Task> tasks = taskService.findActiveTasksForTriggerSubject(triggerSubject);
-
-        // Handle all tasks one by one
-        for (Task task : tasks) {
-            handleTask(task, parameters);
-        }
+        // Tasks executed in parallel share the data source lookups. Tasks executed one after another look up
+        // the data sources again, so that they see the changes made by the actions of the previous tasks.
+        final DataSourceLookupCache sharedCache = executionEngine.isParallel(tasks)
+                ? new DataSourceLookupCache()
+                : null;
+
+        // Handle all tasks, independent tasks are executed in parallel
+        executionEngine.executeAll(tasks, new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task task) {
+                if (sharedCache == null) {
+                    handleTask(task, parameters);
+                } else {
+                    handleTask(task, parameters, sharedCache);
+                }
+            }
+        });
     }
 
     @Override
@@ -185,9 +204,13 @@ public class TaskTriggerHandler implements TriggerHandler {
     }
 
     private void handleTask(Task task, Map<String, Object> parameters) {
+        handleTask(task, parameters, new DataSourceLookupCache());
+    }
+
+    private void handleTask(Task task, Map<String, Object> parameters, DataSourceLookupCache lookupCache) {
 
         TaskContext taskContext = new TaskContext(task, parameters, activityService);
-        TaskInitializer initializer = new TaskInitializer(taskContext);
+        TaskInitializer initializer = new TaskInitializer(taskContext, lookupCache);
 
         boolean success = true;
 
@@ -240,21 +263,24 @@ public class TaskTriggerHandler implements TriggerHandler {
         LOGGER.warn("Omitted task: {} with ID: {} because: {}", task.getName(), task.getId(), e);
 
         activityService.addError(task, e, params);
-        task.incrementFailuresInRow();
-
-        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), task.getFailuresInRow());
+        final int failureNumber = failureCounters.recordFailure(task);
 
-        int failureNumber = task.getFailuresInRow();
-        int possibleErrorsNumber = getPossibleErrorsNumber();
+        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), failureNumber);
 
-        if (failureNumber >= possibleErrorsNumber) {
-            task.setEnabled(false);
+        // executions of the same task may run at the same time, if they are not ordered
+        executionEngine.executeExclusively(task, new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task failedTask) {
+                if (failedTask.isEnabled() && failureNumber >= getPossibleErrorsNumber()) {
+                    failedTask.setEnabled(false);
 
-            activityService.addWarning(task);
-            publishTaskDisabledMessage(task.getName());
-        }
+                    activityService.addWarning(failedTask);
+                    publishTaskDisabledMessage(failedTask.getName());
 
-        taskService.save(task);
+                    taskService.save(failedTask);
+                }
+            }
+        });
 
         Map<String, Object> errorParam = new HashMap<>();
         errorParam.put(TASK_FAIL_MESSAGE, e.getMessage());
@@ -279,8 +305,7 @@ public class TaskTriggerHandler implements TriggerHandler {
         LOGGER.debug("All actions from task: {} with ID: {} were successfully executed", task.getName(), task.getId());
 
         activityService.addSuccess(task);
-        task.resetFailuresInRow();
-        taskService.save(task);
+        failureCounters.recordSuccess(task);
 
         eventRelay.sendEventMessage(new MotechEvent(
             createHandlerSuccessSubject(task.getName()),
@@ -289,9 +314,9 @@ public class TaskTriggerHandler implements TriggerHandler {
     }
 
     @Override
-    public void addDataProvider(DataProvider provider) {
+    public synchronized void addDataProvider(DataProvider provider) {
         if (dataProviders == null) {
-            dataProviders = new HashMap<>();
+            dataProviders = new ConcurrentHashMap<>();
         }
 
         dataProviders.put(provider.getName(), provider);
@@ -309,6 +334,14 @@ public class TaskTriggerHandler implements TriggerHandler {
         this.dataProviders = dataProviders;
     }
 
+    void setExecutionEngine(TaskExecutionEngine executionEngine) {
+        this.executionEngine = executionEngine;
+    }
+
+    void setFailureCounters(TaskFailureCounters failureCounters) {
+        this.failureCounters = failureCounters;
+    }
+
     private void publishTaskDisabledMessage(String taskName) {
         Map<String, Object> params = new HashMap<>();
         params.put("message", "Task disabled automatically: " + taskName);
@@ -0,0 +1,126 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.api.TasksEventParser;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link TasksEventParser}s exposed as OSGi services, keyed by their names. The parsers are followed
+ * by a {@link ServiceTracker}, opened when a parser is looked up for the first time, so that finding a parser does not
+ * query the service registry. A parser is removed from the registry and its service is released as soon as it is
+ * unregistered, for example when its bundle is stopped. If more than one parser has the same name, the one
+ * registered first is used, and the next one replaces it once it is unregistered.
+ *
+ * @see TaskServiceImpl#findCustomParser(String)
+ */
+class TasksEventParserRegistry {
+
+    private final ConcurrentMap<String, TasksEventParser> parsers = new ConcurrentHashMap<>();
+
+    private BundleContext bundleContext;
+    private volatile ServiceTracker tracker;
+
+    /**
+     * Returns the parser with the given name, or null if no such parser is registered.
+     *
+     * @param name  the name of the parser, not null
+     * @return the parser, null if not registered
+     */
+    public TasksEventParser getParser(String name) {
+        if (tracker == null) {
+            ensureOpen();
+        }
+        return parsers.get(name);
+    }
+
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        close();
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Closes the service tracker, which releases all the parser services.
+     */
+    synchronized void close() {
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+
+        parsers.clear();
+    }
+
+    private synchronized void ensureOpen() {
+        if (tracker == null && bundleContext != null) {
+            ServiceTracker opened = new ServiceTracker(
+                    bundleContext, TasksEventParser.class.getName(), new ParserCustomizer(bundleContext)
+            );
+            opened.open();
+            // published only once opened, so that lookups without the lock see all the registered parsers
+            tracker = opened;
+        }
+    }
+
+    /**
+     * Keeps the map of parsers in sync with the parser services followed by the tracker.
+     */
+    private final class ParserCustomizer implements ServiceTrackerCustomizer {
+
+        private final BundleContext context;
+        private final List<TasksEventParser> tracked = new ArrayList<>();
+
+        private ParserCustomizer(BundleContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Object addingService(ServiceReference reference) {
+            Object service = context.getService(reference);
+
+            if (service instanceof TasksEventParser) {
+                TasksEventParser parser = (TasksEventParser) service;
+                synchronized (this) {
+                    tracked.add(parser);
+                    parsers.putIfAbsent(parser.getName(), parser);
+                }
+            }
+
+            return service;
+        }
+
+        @Override
+        public void modifiedService(ServiceReference reference, Object service) {
+            // the name of a parser does not depend on the service properties
+        }
+
+        @Override
+        public void removedService(ServiceReference reference, Object service) {
+            if (service instanceof TasksEventParser) {
+                removeParser((TasksEventParser) service);
+            }
+
+            context.ungetService(reference);
+        }
+
+        private synchronized void removeParser(TasksEventParser parser) {
+            tracked.remove(parser);
+
+            if (parsers.remove(parser.getName(), parser)) {
+                // fall back to the next registered parser with the same name
+                for (TasksEventParser remaining : tracked) {
+                    if (parser.getName().equals(remaining.getName())) {
+                        parsers.putIfAbsent(remaining.getName(), remaining);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
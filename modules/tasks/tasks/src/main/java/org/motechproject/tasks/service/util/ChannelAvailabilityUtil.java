@@ -0,0 +1,45 @@
+package org.motechproject.tasks.service.util;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
+import org.motechproject.tasks.domain.mds.task.TaskTriggerInformation;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility class for checking whether the channels used by tasks are currently registered.
+ */
+public final class ChannelAvailabilityUtil {
+
+    /**
+     * Utility class, should not be instantiated.
+     */
+    private ChannelAvailabilityUtil() {
+    }
+
+    /**
+     * Sets the {@code hasRegisteredChannel} flag of the given task. The flag is set only if the modules of the
+     * trigger and of all the actions of the task are among the given bundle symbolic names.
+     *
+     * @param task  the task to check, null is ignored
+     * @param symbolicNames  the symbolic names of the installed bundles
+     */
+    public static void checkChannelAvailableInTask(Task task, Collection<String> symbolicNames) {
+        if (null != task) {
+            TaskTriggerInformation trigger = task.getTrigger();
+            List<TaskActionInformation> actions = task.getActions();
+
+            task.setHasRegisteredChannel(null != trigger && symbolicNames.contains(trigger.getModuleName()));
+
+            if (CollectionUtils.isNotEmpty(actions)) {
+                for (TaskActionInformation action : actions) {
+                    if (!symbolicNames.contains(action.getModuleName())) {
+                        task.setHasRegisteredChannel(false);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.motechproject.tasks.service.util;
+
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.Months;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.mds.ParameterType;
+import org.motechproject.tasks.domain.mds.task.Filter;
+import org.motechproject.tasks.domain.mds.task.OperatorType;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.motechproject.tasks.domain.KeyInformation.parse;
+
+/**
+ * Compiled form of a task {@link Filter}. The key of the filter is parsed, its type and operator are resolved and its
+ * expression is converted to the type of the filter only once, so that checking the filter for an event only requires
+ * converting the filtered value and comparing it. Compiled filters are cached by the content of the filter, which
+ * means that a filter is compiled once for each version of the task it belongs to.
+ */
+public final class CompiledFilter {
+
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    private static final Map<Filter, CompiledFilter> CACHE = new ConcurrentHashMap<>();
+
+    private static final Condition NEVER = new Condition() {
+        @Override
+        boolean test(Object value) {
+            return false;
+        }
+    };
+
+    private final KeyInformation key;
+    private final boolean negationOperator;
+    private final Condition condition;
+
+    private CompiledFilter(KeyInformation key, boolean negationOperator, Condition condition) {
+        this.key = key;
+        this.negationOperator = negationOperator;
+        this.condition = condition;
+    }
+
+    /**
+     * Returns the compiled form of the given filter.
+     *
+     * @param filter  the filter to compile, not null
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the key of the filter has an incorrect format
+     */
+    public static CompiledFilter compile(Filter filter) {
+        CompiledFilter compiled = CACHE.get(filter);
+
+        if (compiled == null) {
+            compiled = new CompiledFilter(parse(filter.getKey()), filter.isNegationOperator(), condition(filter));
+
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            // the filter is copied, so that later changes to the task do not affect the cache
+            CACHE.put(copy(filter), compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the key of the value checked by the filter.
+     *
+     * @return the key of the filtered value
+     */
+    public KeyInformation getKey() {
+        return key;
+    }
+
+    /**
+     * Checks whether the given value passes the filter. A value of a number or date filter is converted to the type
+     * of the filter first.
+     *
+     * @param value  the filtered value, null if it could not be retrieved
+     * @return true if the value passes the filter
+     * @throws IllegalArgumentException if the value or the expression of the filter could not be converted to the
+     * type of the filter
+     */
+    public boolean matches(Object value) {
+        boolean result = value != null && condition.test(value);
+        return negationOperator ? result : !result;
+    }
+
+    private static Condition condition(Filter filter) {
+        ParameterType type = filter.getType();
+        OperatorType operator = OperatorType.fromString(filter.getOperator());
+
+        if (type == null) {
+            return new InvalidTypeCondition();
+        } else if (type.isString()) {
+            return operator == null ? NEVER : new StringCondition(operator, filter.getExpression());
+        } else if (type.isNumber()) {
+            return new NumberCondition(operator, filter.getExpression());
+        } else if (type == ParameterType.DATE) {
+            return new DateCondition(operator, filter.getExpression());
+        }
+
+        return NEVER;
+    }
+
+    private static Filter copy(Filter filter) {
+        return new Filter(filter.getDisplayName(), filter.getKey(), filter.getType(), filter.isNegationOperator(),
+                filter.getOperator(), filter.getExpression());
+    }
+
+    /**
+     * Compares a filtered value with the expression of a filter.
+     */
+    private abstract static class Condition {
+        abstract boolean test(Object value);
+    }
+
+    private static final class InvalidTypeCondition extends Condition {
+        @Override
+        boolean test(Object value) {
+            throw new IllegalArgumentException("The filter has no type");
+        }
+    }
+
+    private static final class StringCondition extends Condition {
+
+        private final OperatorType operator;
+        private final String expression;
+
+        private StringCondition(OperatorType operator, String expression) {
+            this.operator = operator;
+            this.expression = expression;
+        }
+
+        @Override
+        boolean test(Object value) {
+            String param = value.toString();
+
+            switch (operator) {
+                case EQUALS:
+                    return param.equals(expression);
+                case CONTAINS:
+                    return param.contains(expression);
+                case EXIST:
+                    return true;
+                case STARTSWITH:
+                    return param.startsWith(expression);
+                case ENDSWITH:
+                    return param.endsWith(expression);
+                case EQUALS_IGNORE_CASE:
+                    return param.equalsIgnoreCase(expression);
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static final class NumberCondition extends Condition {
+
+        private final OperatorType operator;
+        private final String expression;
+        private final BigDecimal operand;
+
+        private NumberCondition(OperatorType operator, String expression) {
+            this.operator = operator;
+            this.expression = expression;
+            this.operand = compares(operator) ? toNumberOrNull(expression) : null;
+        }
+
+        @Override
+        boolean test(Object value) {
+            BigDecimal param = toNumber(value);
+
+            if (!compares(operator)) {
+                return operator == OperatorType.EXIST;
+            }
+
+            // an expression which could not be converted fails the same way on every check
+            int compare = param.compareTo(operand == null ? new BigDecimal(expression) : operand);
+
+            switch (operator) {
+                case EQ_NUMBER:
+                    return compare == 0;
+                case GT:
+                    return compare > 0;
+                case LT:
+                    return compare < 0;
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean compares(OperatorType operator) {
+            return operator != null && operator != OperatorType.EXIST;
+        }
+
+        private static BigDecimal toNumber(Object value) {
+            if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            } else if (value instanceof Integer || value instanceof Long) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            }
+
+            return new BigDecimal(value.toString());
+        }
+
+        private static BigDecimal toNumberOrNull(String expression) {
+            try {
+                return new BigDecimal(expression);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class DateCondition extends Condition {
+
+        private final OperatorType operator;
+        private final String expression;
+        private final DateTime date;
+        private final Integer amount;
+
+        private DateCondition(OperatorType operator, String expression) {
+            this.operator = operator;
+            this.expression = expression;
+            this.date = toDateOrNull(expression);
+            this.amount = toIntegerOrNull(expression);
+        }
+
+        @Override
+        boolean test(Object value) {
+            DateTime param = toDate(value);
+
+            if (operator == null) {
+                return false;
+            }
+
+            // expressions which could not be converted fail the same way on every check
+            switch (operator) {
+                case EXIST:
+                    return true;
+                case AFTER_NOW:
+                    return param.isAfterNow();
+                case BEFORE_NOW:
+                    return param.isBeforeNow();
+                case EQUALS:
+                    return param.isEqual(getDate());
+                case AFTER:
+                    return param.isAfter(getDate());
+                case BEFORE:
+                    return param.isBefore(getDate());
+                default:
+                    return testDistance(param);
+            }
+        }
+
+        private boolean testDistance(DateTime param) {
+            switch (operator) {
+                case LESS_DAYS_FROM_NOW:
+                    return countNumberOfDays(param) < getAmount();
+                case LESS_MONTHS_FROM_NOW:
+                    return countNumberOfMonths(param) < getAmount();
+                case MORE_DAYS_FROM_NOW:
+                    return countNumberOfDays(param) > getAmount();
+                case MORE_MONTHS_FROM_NOW:
+                    return countNumberOfMonths(param) > getAmount();
+                default:
+                    return false;
+            }
+        }
+
+        private DateTime getDate() {
+            return date == null ? DateTime.parse(expression) : date;
+        }
+
+        private int getAmount() {
+            return amount == null ? Integer.valueOf(expression) : amount;
+        }
+
+        private static int countNumberOfDays(DateTime param) {
+            return param.isBeforeNow()
+                    ? Days.daysBetween(param, DateUtil.now()).getDays()
+                    : Days.daysBetween(DateUtil.now(), param).getDays();
+        }
+
+        private static int countNumberOfMonths(DateTime param) {
+            return param.isBeforeNow()
+                    ? Months.monthsBetween(param, DateUtil.now()).getMonths()
+                    : Months.monthsBetween(DateUtil.now(), param).getMonths();
+        }
+
+        private static DateTime toDate(Object value) {
+            return value instanceof DateTime ? (DateTime) value : DateTime.parse(value.toString());
+        }
+
+        private static DateTime toDateOrNull(String expression) {
+            try {
+                return expression == null ? null : DateTime.parse(expression);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static Integer toIntegerOrNull(String expression) {
+            try {
+                return Integer.valueOf(expression);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
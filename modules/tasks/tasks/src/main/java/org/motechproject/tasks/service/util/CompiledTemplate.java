@@ -0,0 +1,139 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.motechproject.tasks.domain.KeyInformation.parseAll;
+
+/**
+ * Compiled form of a template, for example a value of a task action or of a data source lookup. The template is
+ * parsed only once into the dragged fields it contains and the constant text between them, so that evaluating it
+ * for an event only requires retrieving and manipulating the values of the fields. Compiled templates are cached by
+ * their text, which means that a template is compiled once for each version of the task it belongs to.
+ */
+public final class CompiledTemplate {
+
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    private static final Map<String, CompiledTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String template;
+    private final List<KeyInformation> keys;
+    private final List<Object> segments;
+
+    private CompiledTemplate(String template, List<KeyInformation> keys, List<Object> segments) {
+        this.template = template;
+        this.keys = keys;
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the compiled form of the given template.
+     *
+     * @param template  the template to compile
+     * @return the compiled template
+     * @throws IllegalArgumentException if any of the dragged fields in the template has an incorrect format
+     */
+    public static CompiledTemplate compile(String template) {
+        if (template == null) {
+            return new CompiledTemplate(null, Collections.<KeyInformation>emptyList(), Collections.emptyList());
+        }
+
+        CompiledTemplate compiled = CACHE.get(template);
+
+        if (compiled == null) {
+            List<KeyInformation> keys = parseAll(template);
+            compiled = new CompiledTemplate(template, Collections.unmodifiableList(keys), split(template, keys));
+
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(template, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the dragged fields found in the template, in the order of their appearance.
+     *
+     * @return the dragged fields
+     */
+    public List<KeyInformation> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Builds the text of the template, with each dragged field replaced by the given value.
+     *
+     * @param values  the values of the dragged fields, in the same order as {@link #getKeys()}
+     * @return the evaluated template
+     */
+    public String render(String[] values) {
+        if (keys.isEmpty()) {
+            return template;
+        }
+
+        StringBuilder builder = new StringBuilder(template.length());
+
+        for (Object segment : segments) {
+            if (segment instanceof Integer) {
+                builder.append(values[(Integer) segment]);
+            } else {
+                builder.append(segment);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Splits the template into constant text and the indexes of the keys which should be put between it. Every
+     * occurrence of a key is replaced, in the order in which the keys were found.
+     */
+    private static List<Object> split(String template, List<KeyInformation> keys) {
+        List<Object> segments = new ArrayList<>();
+        segments.add(template);
+
+        for (int i = 0; i < keys.size(); ++i) {
+            String placeholder = String.format("{{%s}}", keys.get(i).getOriginalKey());
+            List<Object> replaced = new ArrayList<>();
+
+            for (Object segment : segments) {
+                if (segment instanceof String) {
+                    splitText((String) segment, placeholder, i, replaced);
+                } else {
+                    replaced.add(segment);
+                }
+            }
+
+            segments = replaced;
+        }
+
+        return Collections.unmodifiableList(segments);
+    }
+
+    private static void splitText(String text, String placeholder, int keyIndex, List<Object> target) {
+        int start = 0;
+        int idx = text.indexOf(placeholder);
+
+        while (idx != -1) {
+            if (idx > start) {
+                target.add(text.substring(start, idx));
+            }
+            target.add(keyIndex);
+
+            start = idx + placeholder.length();
+            idx = text.indexOf(placeholder, start);
+        }
+
+        if (start < text.length()) {
+            target.add(text.substring(start));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.exception.TaskHandlerException;
+
+/**
+ * A single compiled manipulation, for example {@code toUpper} or {@code datetime(yyyy-MM-dd)}, which can be applied
+ * to the value of a dragged field. Manipulations are compiled by {@link Manipulations}, which resolves their type and
+ * parses their arguments only once.
+ */
+public interface Manipulation {
+
+    /**
+     * Applies this manipulation to the given value.
+     *
+     * @param value  the value to manipulate, not null
+     * @param keyEvaluator  the evaluator used for retrieving the values of keys passed as arguments, not null
+     * @return the manipulated value
+     * @throws TaskHandlerException if there were problems while retrieving the values of the arguments
+     */
+    String apply(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException;
+}
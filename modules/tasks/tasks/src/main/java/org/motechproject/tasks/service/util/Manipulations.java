@@ -0,0 +1,353 @@
+package org.motechproject.tasks.service.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.WordUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.exception.TaskHandlerException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * Compiles the string representations of manipulations into {@link Manipulation}s. The type of the manipulation is
+ * resolved, and its arguments, such as date patterns, indexes or keys, are parsed only once. Compiled manipulations
+ * are cached, so that executing a task does not parse its manipulations again.
+ */
+public final class Manipulations {
+
+    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
+    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
+    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
+    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
+    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
+    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
+    private static final int MINUS_DAYS_PATTERN_BEGIN_INDEX = 10;
+    private static final int PLUS_HOURS_PATTERN_BEGIN_INDEX = 10;
+    private static final int MINUS_HOURS_PATTERN_BEGIN_INDEX = 11;
+    private static final int PLUS_MINUTES_PATTERN_BEGIN_INDEX = 12;
+    private static final int MINUS_MINUTES_PATTERN_BEGIN_INDEX = 13;
+    private static final int PARSE_DATE_PATTERN_BEGIN_INDEX = 10;
+
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    private static final DateTimeFormatter PARSE_DATE_OUTPUT_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm Z");
+
+    private static final Map<String, Manipulation> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Utility class, should not be instantiated.
+     */
+    private Manipulations() {
+    }
+
+    /**
+     * Returns the compiled form of the given manipulation. Manipulations that cannot be compiled are not cached, so
+     * that the error is reported each time they are used.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the compiled manipulation
+     * @throws MotechException if the manipulation is not supported or its date pattern is incorrect
+     */
+    public static Manipulation get(String manipulation) {
+        Manipulation compiled = CACHE.get(manipulation);
+
+        if (compiled == null) {
+            compiled = manipulation.contains("format") ? compileFormat(manipulation) : compileValueManipulation(manipulation);
+
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(manipulation, compiled);
+        }
+
+        return compiled;
+    }
+
+    static ValueManipulation compileValueManipulation(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        ValueManipulation result;
+
+        if (lowerCase.contains("join")) {
+            result = join(manipulation);
+        } else if (lowerCase.contains("datetime")) {
+            result = datetime(manipulation);
+        } else if (lowerCase.contains("substring")) {
+            result = substring(manipulation);
+        } else if (lowerCase.contains("split")) {
+            result = split(manipulation);
+        } else if (lowerCase.contains("parsedate")) {
+            result = parseDate(manipulation);
+        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
+            result = dateTimeChange(lowerCase);
+        } else {
+            result = simple(lowerCase.replace("()", ""));
+        }
+
+        return result;
+    }
+
+    private static Manipulation compileFormat(String manipulation) {
+        String formatElements = manipulation.substring(FORMAT_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+
+        if (isBlank(formatElements)) {
+            return new ValueManipulation() {
+                @Override
+                public String apply(String value) {
+                    return value;
+                }
+            };
+        }
+
+        final String[] items = formatElements.split(",");
+        final KeyInformation[] keys = new KeyInformation[items.length];
+
+        for (int i = 0; i < items.length; ++i) {
+            String item = items[i];
+
+            if (item.startsWith("{{") && item.endsWith("}}")) {
+                keys[i] = KeyInformation.parse(item.substring(2, item.length() - 2));
+            }
+        }
+
+        return new Manipulation() {
+            @Override
+            public String apply(String value, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+                Object[] args = new Object[items.length];
+
+                for (int i = 0; i < items.length; ++i) {
+                    if (keys[i] == null) {
+                        args[i] = items[i];
+                    } else {
+                        Object subValue = keyEvaluator.getValue(keys[i]);
+                        args[i] = subValue != null ? subValue.toString() : "";
+                    }
+                }
+
+                return String.format(value, args);
+            }
+        };
+    }
+
+    private static ValueManipulation join(String manipulation) {
+        final String pattern = manipulation.substring(JOIN_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+
+        return new ValueManipulation() {
+            @Override
+            public String apply(String value) {
+                return StringUtils.join(value.split(" "), pattern);
+            }
+        };
+    }
+
+    private static ValueManipulation datetime(String manipulation) {
+        final DateTimeFormatter targetFormat;
+
+        try {
+            targetFormat = DateTimeFormat.forPattern(
+                    manipulation.substring(DATETIME_PATTERN_BEGIN_INDEX, manipulation.length() - 1)
+            );
+        } catch (IllegalArgumentException e) {
+            throw new MotechException("error.date.format", e);
+        }
+
+        return new ValueManipulation() {
+            @Override
+            public String apply(String value) {
+                try {
+                    return targetFormat.print(new DateTime(value));
+                } catch (IllegalArgumentException e) {
+                    throw new MotechException("error.date.format", e);
+                }
+            }
+        };
+    }
+
+    private static ValueManipulation substring(String manipulation) {
+        String pattern = manipulation.substring(SUBSTRING_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+        String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
+        final int[] indexes = new int[splitValue.length];
+
+        for (int i = 0; i < splitValue.length; ++i) {
+            indexes[i] = Integer.parseInt(splitValue[i]);
+        }
+
+        switch (indexes.length) {
+            case 1:
+                return new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        return value.substring(indexes[0]);
+                    }
+                };
+            case 2:
+                return new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        return value.substring(indexes[0], indexes[1]);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Incorrect pattern for substring manipulation");
+        }
+    }
+
+    private static ValueManipulation split(String manipulation) {
+        String pattern = manipulation.substring(SPLIT_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+        String[] splitValue = pattern.split(",");
+        final Pattern regex = Pattern.compile(splitValue[0]);
+        final int idx = Integer.parseInt(splitValue[1]);
+
+        return new ValueManipulation() {
+            @Override
+            public String apply(String value) {
+                return regex.split(value)[idx];
+            }
+        };
+    }
+
+    private static ValueManipulation parseDate(String manipulation) {
+        final DateTimeFormatter formatter = DateTimeFormat.forPattern(
+                manipulation.substring(PARSE_DATE_PATTERN_BEGIN_INDEX, manipulation.length() - 1)
+        );
+
+        return new ValueManipulation() {
+            @Override
+            public String apply(String value) {
+                return PARSE_DATE_OUTPUT_FORMAT.print(formatter.parseDateTime(value));
+            }
+        };
+    }
+
+    private static ValueManipulation dateTimeChange(String manipulation) {
+        ValueManipulation result;
+
+        if (manipulation.contains("plusdays")) {
+            result = new DateTimeChange(DateTimeChange.DAYS, argument(manipulation, PLUS_DAYS_PATTERN_BEGIN_INDEX));
+        } else if (manipulation.contains("minusdays")) {
+            result = new DateTimeChange(DateTimeChange.DAYS, -argument(manipulation, MINUS_DAYS_PATTERN_BEGIN_INDEX));
+        } else if (manipulation.contains("plushours")) {
+            result = new DateTimeChange(DateTimeChange.HOURS, argument(manipulation, PLUS_HOURS_PATTERN_BEGIN_INDEX));
+        } else if (manipulation.contains("minushours")) {
+            result = new DateTimeChange(DateTimeChange.HOURS, -argument(manipulation, MINUS_HOURS_PATTERN_BEGIN_INDEX));
+        } else if (manipulation.contains("plusminutes")) {
+            result = new DateTimeChange(DateTimeChange.MINUTES, argument(manipulation, PLUS_MINUTES_PATTERN_BEGIN_INDEX));
+        } else if (manipulation.contains("minusminutes")) {
+            result = new DateTimeChange(DateTimeChange.MINUTES, -argument(manipulation, MINUS_MINUTES_PATTERN_BEGIN_INDEX));
+        } else {
+            throw new MotechException("task.warning.manipulation");
+        }
+
+        return result;
+    }
+
+    private static int argument(String manipulation, int beginIndex) {
+        return Integer.parseInt(manipulation.substring(beginIndex, manipulation.length() - 1));
+    }
+
+    private static ValueManipulation simple(String manipulation) {
+        ValueManipulation result;
+
+        switch (manipulation) {
+            case "toupper":
+                result = new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        return value.toUpperCase();
+                    }
+                };
+                break;
+            case "tolower":
+                result = new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        return value.toLowerCase();
+                    }
+                };
+                break;
+            case "capitalize":
+                result = new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        return WordUtils.capitalize(value);
+                    }
+                };
+                break;
+            case "urlencode":
+                result = new ValueManipulation() {
+                    @Override
+                    public String apply(String value) {
+                        try {
+                            return URLEncoder.encode(value, "UTF-8");
+                        } catch (UnsupportedEncodingException e) {
+                            throw new MotechException("URLEncode manipulator error.", e);
+                        }
+                    }
+                };
+                break;
+            default:
+                throw new MotechException("task.warning.manipulation");
+        }
+
+        return result;
+    }
+
+    /**
+     * Base class for manipulations which depend only on the manipulated value.
+     */
+    abstract static class ValueManipulation implements Manipulation {
+
+        /**
+         * Applies this manipulation to the given value.
+         *
+         * @param value  the value to manipulate, not null
+         * @return the manipulated value
+         */
+        public abstract String apply(String value);
+
+        @Override
+        public String apply(String value, KeyEvaluator keyEvaluator) {
+            return apply(value);
+        }
+    }
+
+    /**
+     * Moves the date and time given as the value by a fixed amount of days, hours or minutes.
+     */
+    private static final class DateTimeChange extends ValueManipulation {
+
+        private static final int DAYS = 0;
+        private static final int HOURS = 1;
+        private static final int MINUTES = 2;
+
+        private final int unit;
+        private final int amount;
+
+        private DateTimeChange(int unit, int amount) {
+            this.unit = unit;
+            this.amount = amount;
+        }
+
+        @Override
+        public String apply(String value) {
+            DateTime dateTime = new DateTime(value);
+
+            switch (unit) {
+                case DAYS:
+                    return dateTime.plusDays(amount).toString();
+                case HOURS:
+                    return dateTime.plusHours(amount).toString();
+                default:
+                    return dateTime.plusMinutes(amount).toString();
+            }
+        }
+    }
+}
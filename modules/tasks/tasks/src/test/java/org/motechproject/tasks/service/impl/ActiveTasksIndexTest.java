@@ -0,0 +1,147 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
+import org.motechproject.tasks.domain.mds.task.TaskTriggerInformation;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_DELETE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_UPDATE_SUBJECT;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ActiveTasksIndexTest {
+
+    private static final String SUBJECT = "SEND";
+
+    private static final TaskTriggerInformation trigger = new TaskTriggerInformation("send", "test", "test-trigger", "0.15", SUBJECT, SUBJECT);
+    private static final TaskActionInformation action = new TaskActionInformation("receive", "test", "test-action", "0.14", "RECEIVE");
+
+    @Mock
+    private TasksDataService tasksDataService;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundleTrigger;
+
+    @Mock
+    private Bundle bundleAction;
+
+    private ActiveTasksIndex index;
+
+    private Task first;
+    private Task second;
+    private Task disabled;
+    private Task otherSubject;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        index = new ActiveTasksIndex();
+        index.setTasksDataService(tasksDataService);
+        index.setBundleContext(bundleContext);
+
+        first = createTask(1L, trigger, true);
+        second = createTask(2L, trigger, true);
+        disabled = createTask(3L, trigger, false);
+        otherSubject = createTask(4L, new TaskTriggerInformation("other", "test", "test-trigger", "0.15", "OTHER", "OTHER"), true);
+
+        when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger, bundleAction});
+        when(bundleTrigger.getSymbolicName()).thenReturn("test-trigger");
+        when(bundleAction.getSymbolicName()).thenReturn("test-action");
+
+        when(tasksDataService.retrieveAll()).thenReturn(asList(second, disabled, otherSubject, first));
+    }
+
+    @Test
+    public void shouldReturnEnabledTasksForSubjectOrderedById() {
+        assertEquals(asList(first, second), index.getActiveTasks(SUBJECT));
+        assertEquals(asList(otherSubject), index.getActiveTasks("OTHER"));
+        assertTrue(index.getActiveTasks("UNKNOWN").isEmpty());
+    }
+
+    @Test
+    public void shouldLoadTasksFromDatabaseOnlyOnce() {
+        index.getActiveTasks(SUBJECT);
+        index.getActiveTasks(SUBJECT);
+        index.getActiveTasks("OTHER");
+
+        verify(tasksDataService, times(1)).retrieveAll();
+    }
+
+    @Test
+    public void shouldUpdateTaskAfterCrudEvent() {
+        index.getActiveTasks(SUBJECT);
+
+        Task moved = createTask(1L, otherSubject.getTrigger(), true);
+        when(tasksDataService.findById(1L)).thenReturn(moved);
+
+        index.handleTaskChange(crudEvent(TASK_UPDATE_SUBJECT, 1L));
+
+        assertEquals(asList(second), index.getActiveTasks(SUBJECT));
+        assertEquals(asList(moved, otherSubject), index.getActiveTasks("OTHER"));
+    }
+
+    @Test
+    public void shouldAddTaskAfterItIsEnabled() {
+        index.getActiveTasks(SUBJECT);
+
+        disabled.setEnabled(true);
+        when(tasksDataService.findById(3L)).thenReturn(disabled);
+
+        index.refresh(3L);
+
+        assertEquals(asList(first, second, disabled), index.getActiveTasks(SUBJECT));
+    }
+
+    @Test
+    public void shouldRemoveDeletedTask() {
+        index.getActiveTasks(SUBJECT);
+
+        index.handleTaskChange(crudEvent(TASK_DELETE_SUBJECT, 2L));
+
+        assertEquals(asList(first), index.getActiveTasks(SUBJECT));
+    }
+
+    @Test
+    public void shouldSkipTasksWithUnregisteredChannelAfterChannelEvent() {
+        index.getActiveTasks(SUBJECT);
+
+        when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger});
+        index.handleChannelChange(new MotechEvent(CHANNEL_DEREGISTER_SUBJECT));
+
+        assertTrue(index.getActiveTasks(SUBJECT).isEmpty());
+        verify(tasksDataService, times(1)).retrieveAll();
+    }
+
+    private Task createTask(Long id, TaskTriggerInformation taskTrigger, boolean enabled) {
+        Task task = new Task("task-" + id, taskTrigger, asList(action), null, enabled, false);
+        task.setId(id);
+        return task;
+    }
+
+    private MotechEvent crudEvent(String subject, Long id) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(OBJECT_ID, id);
+        return new MotechEvent(subject, params);
+    }
+}
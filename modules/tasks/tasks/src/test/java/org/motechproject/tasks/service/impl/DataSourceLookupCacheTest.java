@@ -0,0 +1,70 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.commons.api.DataProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class DataSourceLookupCacheTest {
+
+    private static final String TYPE = "Patient";
+    private static final String LOOKUP = "By id";
+
+    @Mock
+    private DataProvider provider;
+
+    private DataSourceLookupCache lookupCache;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        lookupCache = new DataSourceLookupCache();
+    }
+
+    @Test
+    public void shouldExecuteSameLookupOnlyOnce() {
+        Object patient = new Object();
+        when(provider.lookup(TYPE, LOOKUP, lookupFields("1"))).thenReturn(patient);
+
+        assertEquals(patient, lookupCache.lookup(provider, TYPE, LOOKUP, lookupFields("1")));
+        assertEquals(patient, lookupCache.lookup(provider, TYPE, LOOKUP, lookupFields("1")));
+
+        verify(provider, times(1)).lookup(TYPE, LOOKUP, lookupFields("1"));
+    }
+
+    @Test
+    public void shouldExecuteLookupForEachDistinctValue() {
+        Object first = new Object();
+        Object second = new Object();
+        when(provider.lookup(TYPE, LOOKUP, lookupFields("1"))).thenReturn(first);
+        when(provider.lookup(TYPE, LOOKUP, lookupFields("2"))).thenReturn(second);
+
+        assertEquals(first, lookupCache.lookup(provider, TYPE, LOOKUP, lookupFields("1")));
+        assertEquals(second, lookupCache.lookup(provider, TYPE, LOOKUP, lookupFields("2")));
+
+        verify(provider).lookup(TYPE, LOOKUP, lookupFields("1"));
+        verify(provider).lookup(TYPE, LOOKUP, lookupFields("2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRethrowLookupException() {
+        when(provider.lookup(TYPE, LOOKUP, lookupFields("1"))).thenThrow(new IllegalArgumentException());
+
+        lookupCache.lookup(provider, TYPE, LOOKUP, lookupFields("1"));
+    }
+
+    private Map<String, String> lookupFields(String id) {
+        Map<String, String> lookupFields = new HashMap<>();
+        lookupFields.put("id", id);
+        return lookupFields;
+    }
+}
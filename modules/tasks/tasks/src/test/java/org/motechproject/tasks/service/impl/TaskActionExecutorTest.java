@@ -18,6 +18,7 @@ import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.motechproject.tasks.service.TaskService;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 
 import java.util.HashMap;
@@ -61,14 +62,14 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod").setActionParameters(new TreeSet<ActionParameter>()).build();
         actionEvent.setActionParameters(new TreeSet<>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -81,7 +82,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -89,7 +90,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(new TestService());
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
@@ -103,7 +104,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -111,7 +112,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference[]{serviceReference});
         TestService testService = new TestService();
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
@@ -158,7 +159,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -166,7 +167,7 @@ public class TaskActionExecutorTest {
         actionEvent.setActionParameters(new TreeSet<>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
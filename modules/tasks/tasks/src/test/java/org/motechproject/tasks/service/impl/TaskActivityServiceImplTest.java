@@ -4,6 +4,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.mds.task.Task;
@@ -11,21 +13,24 @@ import org.motechproject.tasks.domain.mds.task.TaskActivity;
 import org.motechproject.tasks.domain.mds.task.TaskActivityType;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
-import org.motechproject.tasks.service.TaskActivityService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -47,7 +52,7 @@ public class TaskActivityServiceImplTest {
     @Mock
     TaskActivitiesDataService taskActivitiesDataService;
 
-    TaskActivityService activityService;
+    TaskActivityServiceImpl activityService;
 
     Task task;
 
@@ -70,54 +75,50 @@ public class TaskActivityServiceImplTest {
         Map<String, Object> errorParameters = new HashMap<>();
         errorParameters.put("errorKey", "errorValue");
 
-        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
-
         activityService.addError(task, exception, errorParameters);
 
-        verify(taskActivitiesDataService).create(captor.capture());
+        activityService.flush();
+        TaskActivity activity = captureCreatedActivity();
 
-        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.ERROR, getStackTrace(exception), errorParameters, captor.getValue());
+        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.ERROR, getStackTrace(exception), errorParameters, activity);
     }
 
     @Test
     public void shouldAddTaskSuccessActivity() {
         String messageKey = "task.success.ok";
 
-        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
-
         activityService.addSuccess(task);
 
-        verify(taskActivitiesDataService).create(captor.capture());
+        activityService.flush();
+        TaskActivity activity = captureCreatedActivity();
 
         assertActivity(messageKey, Collections.<String>emptyList(), TASK_ID,
-                TaskActivityType.SUCCESS, null, null, captor.getValue());
+                TaskActivityType.SUCCESS, null, null, activity);
     }
 
     @Test
     public void shouldAddTaskWarningActivity() {
         String messageKey = "task.warning.taskDisabled";
 
-        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
-
         activityService.addWarning(task);
 
-        verify(taskActivitiesDataService).create(captor.capture());
+        activityService.flush();
+        TaskActivity activity = captureCreatedActivity();
 
         assertActivity(messageKey, Collections.<String>emptyList(), TASK_ID,
-                TaskActivityType.WARNING, null, null, captor.getValue());
+                TaskActivityType.WARNING, null, null, activity);
     }
 
     @Test
     public void shouldAddTaskWarningActivityWithGivenKeyAndField() {
         String messageKey = "warning.manipulation";
 
-        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
-
         activityService.addWarning(task, messageKey, ERROR_FIELD.get(0));
 
-        verify(taskActivitiesDataService).create(captor.capture());
+        activityService.flush();
+        TaskActivity activity = captureCreatedActivity();
 
-        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, null, null, captor.getValue());
+        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, null, null, activity);
     }
 
     @Test
@@ -125,13 +126,12 @@ public class TaskActivityServiceImplTest {
         TaskHandlerException exception = new TaskHandlerException(TRIGGER, "trigger.exception", new TaskHandlerException(TRIGGER, "task.exception"));
         String messageKey = "warning.manipulation";
 
-        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
-
         activityService.addWarning(task, messageKey, ERROR_FIELD.get(0), exception);
 
-        verify(taskActivitiesDataService).create(captor.capture());
+        activityService.flush();
+        TaskActivity activity = captureCreatedActivity();
 
-        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, getStackTrace(exception.getCause()), null, captor.getValue());
+        assertActivity(messageKey, ERROR_FIELD, TASK_ID, TaskActivityType.WARNING, getStackTrace(exception.getCause()), null, activity);
     }
 
     @Test
@@ -165,6 +165,99 @@ public class TaskActivityServiceImplTest {
         assertEquals(activities, actual);
     }
 
+    @Test
+    public void shouldWriteQueuedActivitiesInOneTransactionBeforeReadingThem() {
+        activityService.addSuccess(task);
+        activityService.addWarning(task);
+        activityService.addSuccess(task);
+
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        activityService.getLatestActivities();
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(taskActivitiesDataService).createAll(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+        verify(taskActivitiesDataService).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldWaitForBatchBeingWrittenBeforeReading() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch commit = new CountDownLatch(1);
+        when(taskActivitiesDataService.createAll(any(Collection.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                writing.countDown();
+                commit.await();
+                return null;
+            }
+        });
+
+        activityService.addSuccess(task);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                activityService.flush();
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // the buffer is already empty, but the batch taken from it is not committed yet
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                activityService.getLatestActivities();
+            }
+        });
+        reader.start();
+        reader.join(100L);
+
+        verify(taskActivitiesDataService, never()).retrieveAll(any(QueryParams.class));
+
+        commit.countDown();
+        writer.join(5000L);
+        reader.join(5000L);
+
+        verify(taskActivitiesDataService).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldSaveActivitiesOneByOneIfBatchFails() {
+        when(taskActivitiesDataService.createAll(any(Collection.class)))
+                .thenThrow(new IllegalStateException("batch failed"));
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenAnswer(new Answer<TaskActivity>() {
+            @Override
+            public TaskActivity answer(InvocationOnMock invocation) {
+                TaskActivity activity = (TaskActivity) invocation.getArguments()[0];
+                if (activity.getActivityType() == WARNING) {
+                    throw new IllegalStateException("invalid activity");
+                }
+                return activity;
+            }
+        });
+
+        activityService.addSuccess(task);
+        activityService.addWarning(task);
+        activityService.addSuccess(task);
+
+        activityService.flush();
+
+        // the batch is retried row by row, so only the invalid activity would be lost
+        verify(taskActivitiesDataService, times(3)).create(any(TaskActivity.class));
+    }
+
+    private TaskActivity captureCreatedActivity() {
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(taskActivitiesDataService).createAll(captor.capture());
+
+        assertEquals(1, captor.getValue().size());
+        return (TaskActivity) captor.getValue().iterator().next();
+    }
+
     private void assertActivity(String messageKey, List<String> field, Long taskId, TaskActivityType activityType,
                                 String stackTraceElement, Map<String, Object> errorParams, TaskActivity activity) {
         assertNotNull(activity);
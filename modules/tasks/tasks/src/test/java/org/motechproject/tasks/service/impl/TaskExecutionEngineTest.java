@@ -0,0 +1,173 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.tasks.domain.mds.task.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskExecutionEngineTest {
+
+    @Mock
+    private SettingsFacade settings;
+
+    private TaskExecutionEngine engine;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(settings.getProperty("task.execution.threads")).thenReturn("4");
+        when(settings.getProperty("task.execution.ordered")).thenReturn("true");
+
+        engine = new TaskExecutionEngine(settings);
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void shouldExecuteTasksOfEventInParallel() {
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        engine.executeAll(asList(task(1L), task(2L), task(3L)), new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task task) {
+                latch.countDown();
+                try {
+                    // every task waits for the others, this only finishes if they run at the same time
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        fail("Tasks were not executed in parallel");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        assertEquals(0, latch.getCount());
+    }
+
+    @Test
+    public void shouldExecuteTasksSequentiallyWhenPoolIsDisabled() {
+        when(settings.getProperty("task.execution.threads")).thenReturn("1");
+        engine = new TaskExecutionEngine(settings);
+
+        final Thread caller = Thread.currentThread();
+        final List<Long> executed = new ArrayList<>();
+
+        engine.executeAll(asList(task(1L), task(2L), task(3L)), new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task task) {
+                assertEquals(caller, Thread.currentThread());
+                executed.add(task.getId());
+            }
+        });
+
+        assertEquals(asList(1L, 2L, 3L), executed);
+        assertFalse(engine.isParallel(asList(task(1L), task(2L), task(3L))));
+    }
+
+    @Test
+    public void shouldExecuteOnlyMultipleTasksInParallel() {
+        assertTrue(engine.isParallel(asList(task(1L), task(2L))));
+        assertFalse(engine.isParallel(asList(task(1L))));
+    }
+
+    @Test
+    public void shouldNotOverlapExecutionsOfTheSameTask() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        engine.executeAll(Collections.nCopies(8, task(1L)), new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task task) {
+                int current = running.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), current));
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }
+        });
+
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void shouldExecuteChangesOfTaskExclusivelyWhenNotOrdered() {
+        when(settings.getProperty("task.execution.ordered")).thenReturn("false");
+        engine = new TaskExecutionEngine(settings);
+
+        final AtomicInteger changing = new AtomicInteger();
+        final AtomicInteger maxChanging = new AtomicInteger();
+
+        engine.executeAll(Collections.nCopies(8, task(1L)), new TaskExecutionEngine.TaskCallback() {
+            @Override
+            public void execute(Task task) {
+                engine.executeExclusively(task, new TaskExecutionEngine.TaskCallback() {
+                    @Override
+                    public void execute(Task lockedTask) {
+                        int currentChanging = changing.incrementAndGet();
+                        maxChanging.set(Math.max(maxChanging.get(), currentChanging));
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        changing.decrementAndGet();
+                    }
+                });
+            }
+        });
+
+        assertEquals(1, maxChanging.get());
+    }
+
+    @Test
+    public void shouldRethrowFailureAfterAllTasksAreDone() {
+        final AtomicInteger executed = new AtomicInteger();
+
+        try {
+            engine.executeAll(asList(task(1L), task(2L), task(3L)), new TaskExecutionEngine.TaskCallback() {
+                @Override
+                public void execute(Task task) {
+                    executed.incrementAndGet();
+                    if (task.getId() == 2L) {
+                        throw new IllegalStateException("failure");
+                    }
+                }
+            });
+            fail("Expected the failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("failure", e.getMessage());
+        }
+
+        assertEquals(3, executed.get());
+    }
+
+    private Task task(Long id) {
+        Task task = new Task();
+        task.setId(id);
+        return task;
+    }
+}
@@ -0,0 +1,122 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.springframework.transaction.support.TransactionCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskFailureCountersTest {
+
+    private static final Long TASK_ID = 7L;
+
+    @Mock
+    private TasksDataService tasksDataService;
+
+    private TaskFailureCounters failureCounters;
+
+    private Task task;
+    private Task persisted;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        failureCounters = new TaskFailureCounters();
+        failureCounters.setTasksDataService(tasksDataService);
+
+        task = new Task();
+        task.setId(TASK_ID);
+
+        persisted = new Task();
+        persisted.setId(TASK_ID);
+
+        when(tasksDataService.findById(TASK_ID)).thenReturn(persisted);
+        when(tasksDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+    }
+
+    @Test
+    public void shouldCountFailuresInMemoryAndWriteThemOnFlush() {
+        assertEquals(1, failureCounters.recordFailure(task));
+        assertEquals(2, failureCounters.recordFailure(task));
+        assertEquals(2, task.getFailuresInRow());
+
+        verify(tasksDataService, never()).update(any(Task.class));
+
+        failureCounters.flush();
+
+        assertEquals(2, persisted.getFailuresInRow());
+        verify(tasksDataService).update(persisted);
+    }
+
+    @Test
+    public void shouldPreferPendingCounterOverReloadedTask() {
+        failureCounters.recordFailure(task);
+        failureCounters.recordFailure(task);
+
+        Task reloaded = new Task();
+        reloaded.setId(TASK_ID);
+
+        assertEquals(3, failureCounters.recordFailure(reloaded));
+    }
+
+    @Test
+    public void shouldNotWriteAnythingOnSuccessIfThereWereNoFailures() {
+        failureCounters.recordSuccess(task);
+        failureCounters.flush();
+
+        verify(tasksDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test
+    public void shouldResetCounterOnSuccess() {
+        persisted.setFailuresInRow(3);
+        task.setFailuresInRow(3);
+
+        failureCounters.recordSuccess(task);
+        failureCounters.flush();
+
+        assertEquals(0, task.getFailuresInRow());
+        assertEquals(0, persisted.getFailuresInRow());
+        verify(tasksDataService).update(persisted);
+    }
+
+    @Test
+    public void shouldNotWriteDiscardedCounter() {
+        failureCounters.recordFailure(task);
+        failureCounters.discard(TASK_ID);
+        failureCounters.flush();
+
+        verify(tasksDataService, never()).update(any(Task.class));
+    }
+
+    @Test
+    public void shouldKeepCounterChangedAfterItWasSavedWithTask() {
+        failureCounters.recordFailure(task);
+        Integer saved = failureCounters.getPendingFailures(TASK_ID);
+        assertEquals(Integer.valueOf(1), saved);
+
+        failureCounters.recordFailure(task);
+        failureCounters.discard(TASK_ID, saved);
+        assertEquals(Integer.valueOf(2), failureCounters.getPendingFailures(TASK_ID));
+
+        failureCounters.discard(TASK_ID, 2);
+        assertNull(failureCounters.getPendingFailures(TASK_ID));
+    }
+}
@@ -11,9 +11,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.verification.VerificationMode;
+import org.motechproject.commons.api.TasksEventParser;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.mds.query.QueryExecution;
@@ -42,17 +42,21 @@ import org.motechproject.tasks.domain.mds.task.TaskEventInformation;
 import org.motechproject.tasks.domain.mds.task.TaskTriggerInformation;
 import org.motechproject.tasks.domain.mds.channel.TriggerEvent;
 import org.motechproject.tasks.exception.ActionNotFoundException;
+import org.motechproject.tasks.exception.CustomParserNotFoundException;
 import org.motechproject.tasks.exception.TaskNameAlreadyExistsException;
 import org.motechproject.tasks.exception.TaskNotFoundException;
 import org.motechproject.tasks.exception.ValidationException;
 import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.ChannelService;
+import org.motechproject.tasks.service.SampleTasksEventParser;
 import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TriggerEventService;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.springframework.transaction.support.TransactionCallback;
 
@@ -71,10 +75,13 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -85,6 +92,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.domain.mds.ParameterType.UNICODE;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 
@@ -126,6 +134,12 @@ public class TaskServiceImplTest {
     @Mock
     TaskMigrationManager taskMigrationManager;
 
+    @Mock
+    ActiveTasksIndex activeTasksIndex;
+
+    @Mock
+    TaskFailureCounters failureCounters;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -146,6 +160,8 @@ public class TaskServiceImplTest {
         taskValidator.setTriggerEventService(triggerEventService);
         taskService.setTaskValidator(taskValidator);
         taskService.setTaskMigrationManager(taskMigrationManager);
+        taskService.setActiveTasksIndex(activeTasksIndex);
+        taskService.setFailureCounters(failureCounters);
 
         when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger, bundleAction});
         when(bundleTrigger.getSymbolicName()).thenReturn("test-trigger");
@@ -357,6 +373,76 @@ public class TaskServiceImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldFindActionInChannelOnlyOnceUntilChannelChanges() throws ActionNotFoundException {
+        ActionEvent expected = new ActionEventBuilder().build();
+        expected.setSubject(action.getSubject());
+        expected.setDisplayName("receive");
+
+        Channel c = new Channel();
+        c.setActionTaskEvents(asList(expected));
+
+        when(channelService.getChannel("test-action")).thenReturn(c);
+
+        assertEquals(expected, taskService.getActionEventFor(action));
+        assertEquals(expected, taskService.getActionEventFor(action));
+        verify(channelService, times(1)).getChannel("test-action");
+
+        taskService.clearActionEventsAfterChannelChange(new MotechEvent(CHANNEL_DEREGISTER_SUBJECT));
+
+        assertEquals(expected, taskService.getActionEventFor(action));
+        verify(channelService, times(2)).getChannel("test-action");
+    }
+
+    @Test
+    public void shouldFindCustomParserWithoutQueryingServiceRegistryEachTime() throws Exception {
+        ServiceReference parserReference = mock(ServiceReference.class);
+        SampleTasksEventParser parser = new SampleTasksEventParser();
+
+        when(bundleContext.getServiceReferences(TasksEventParser.class.getName(), null))
+                .thenReturn(new ServiceReference[]{parserReference});
+        when(bundleContext.getService(parserReference)).thenReturn(parser);
+
+        assertEquals(parser, taskService.findCustomParser(SampleTasksEventParser.PARSER_NAME));
+        assertEquals(parser, taskService.findCustomParser(SampleTasksEventParser.PARSER_NAME));
+
+        verify(bundleContext, times(1)).getServiceReferences(TasksEventParser.class.getName(), null);
+        verify(bundleContext, times(1)).getService(parserReference);
+
+        taskService.close();
+
+        verify(bundleContext).ungetService(parserReference);
+    }
+
+    @Test
+    public void shouldFallBackToNextCustomParserWithSameNameWhenParserIsUnregistered() throws Exception {
+        ServiceReference firstReference = mock(ServiceReference.class);
+        ServiceReference secondReference = mock(ServiceReference.class);
+        SampleTasksEventParser firstParser = new SampleTasksEventParser();
+        SampleTasksEventParser secondParser = new SampleTasksEventParser();
+
+        when(bundleContext.getServiceReferences(TasksEventParser.class.getName(), null))
+                .thenReturn(new ServiceReference[]{firstReference, secondReference});
+        when(bundleContext.getService(firstReference)).thenReturn(firstParser);
+        when(bundleContext.getService(secondReference)).thenReturn(secondParser);
+
+        assertSame(firstParser, taskService.findCustomParser(SampleTasksEventParser.PARSER_NAME));
+
+        ArgumentCaptor<ServiceListener> listenerCaptor = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(bundleContext).addServiceListener(listenerCaptor.capture(), anyString());
+        listenerCaptor.getValue().serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, firstReference));
+
+        assertSame(secondParser, taskService.findCustomParser(SampleTasksEventParser.PARSER_NAME));
+        verify(bundleContext).ungetService(firstReference);
+    }
+
+    @Test(expected = CustomParserNotFoundException.class)
+    public void shouldThrowExceptionWhenCustomParserIsNotRegistered() throws Exception {
+        when(bundleContext.getServiceReferences(TasksEventParser.class.getName(), null)).thenReturn(null);
+
+        taskService.findCustomParser(SampleTasksEventParser.PARSER_NAME);
+    }
+
     @Test
     public void shouldGetAllTasks() {
         ArrayList<Task> expected = new ArrayList<>();
@@ -400,11 +486,12 @@ public class TaskServiceImplTest {
         TriggerEvent triggerEvent = new TriggerEvent();
         triggerEvent.setSubject(trigger.getSubject());
 
-        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(activeTasksIndex.getActiveTasks(trigger.getSubject())).thenReturn(asList(t));
 
         List<Task> tasks = taskService.findActiveTasksForTrigger(triggerEvent);
 
         assertEquals(asList(t), tasks);
+        verify(tasksDataService, never()).executeQuery(any(QueryExecution.class));
     }
 
     @Test
@@ -448,6 +535,8 @@ public class TaskServiceImplTest {
 
         verify(tasksDataService).findById(expected.getId());
         verify(tasksDataService).delete(expected);
+        verify(failureCounters).discard(expected.getId());
+        verify(activeTasksIndex).refresh(expected.getId());
     }
 
     @Test(expected = TaskNotFoundException.class)
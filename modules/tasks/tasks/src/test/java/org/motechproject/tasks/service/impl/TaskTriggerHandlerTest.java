@@ -191,6 +191,8 @@ public class TaskTriggerHandlerTest {
         handler.init();
         handler.addDataProvider(dataProvider);
         handler.setBundleContext(null);
+        handler.setExecutionEngine(new TaskExecutionEngine(settingsFacade));
+        handler.setFailureCounters(new TaskFailureCounters());
 
         verify(taskService).getAllTasks();
         verify(registryService).registerListener(any(EventListener.class), eq(task.getTrigger().getSubject()));
@@ -268,7 +270,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -292,7 +294,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -317,7 +319,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -342,7 +344,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -368,7 +370,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -394,7 +396,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -420,7 +422,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -446,7 +448,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -472,7 +474,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -502,7 +504,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addSuccess(eq(task));
@@ -679,7 +681,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(new MotechEvent("trigger", param));
 
         assertEquals(0, task.getFailuresInRow());
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskActivityService).addSuccess(task);
     }
 
@@ -772,7 +774,7 @@ public class TaskTriggerHandlerTest {
         handler.handle(new MotechEvent("trigger", param));
 
         assertEquals(0, task.getFailuresInRow());
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskActivityService).addSuccess(task);
     }
 
@@ -945,7 +947,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -972,7 +974,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
 
@@ -993,7 +995,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
@@ -1065,7 +1067,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
@@ -1119,7 +1121,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -1143,14 +1145,14 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference(anyString())).thenReturn(null);
+        when(bundleContext.getServiceReferences(anyString(), anyString())).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", "TestService");
@@ -1176,7 +1178,7 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1184,7 +1186,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -1209,7 +1211,7 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1217,7 +1219,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
@@ -1242,7 +1244,7 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -1250,7 +1252,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addSuccess(task);
@@ -1272,14 +1274,14 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
@@ -1303,14 +1305,14 @@ public class TaskTriggerHandlerTest {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
@@ -1340,7 +1342,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(1, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
         verify(taskActivityService, never()).addSuccess(task);
 
@@ -1362,7 +1364,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskService).getActionEventFor(task.getActions().get(1));
@@ -1425,7 +1427,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
 
         MotechEvent event = captor.getAllValues().get(0);
@@ -1447,7 +1449,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
 
         MotechEvent event = captor.getAllValues().get(1);
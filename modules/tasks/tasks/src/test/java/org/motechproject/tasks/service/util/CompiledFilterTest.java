@@ -0,0 +1,79 @@
+package org.motechproject.tasks.service.util;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.mds.task.Filter;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.motechproject.tasks.domain.mds.ParameterType.DATE;
+import static org.motechproject.tasks.domain.mds.ParameterType.INTEGER;
+import static org.motechproject.tasks.domain.mds.ParameterType.UNICODE;
+import static org.motechproject.tasks.domain.mds.task.OperatorType.AFTER;
+import static org.motechproject.tasks.domain.mds.task.OperatorType.EXIST;
+import static org.motechproject.tasks.domain.mds.task.OperatorType.GT;
+import static org.motechproject.tasks.domain.mds.task.OperatorType.STARTSWITH;
+
+public class CompiledFilterTest {
+
+    @Test
+    public void shouldCompileFilterOnlyOnce() {
+        Filter filter = new Filter("Name", "trigger.name", UNICODE, true, STARTSWITH.getValue(), "Al");
+        CompiledFilter compiled = CompiledFilter.compile(filter);
+
+        assertEquals(KeyInformation.parse("trigger.name"), compiled.getKey());
+        assertSame(compiled, CompiledFilter.compile(new Filter("Name", "trigger.name", UNICODE, true, STARTSWITH.getValue(), "Al")));
+
+        filter.setExpression("Ol");
+        assertNotSame(compiled, CompiledFilter.compile(filter));
+    }
+
+    @Test
+    public void shouldNegateResult() {
+        CompiledFilter compiled = CompiledFilter.compile(new Filter("Name", "trigger.name", UNICODE, false, STARTSWITH.getValue(), "Al"));
+
+        assertFalse(compiled.matches("Ala"));
+        assertTrue(compiled.matches("Ola"));
+        assertTrue(compiled.matches(null));
+    }
+
+    @Test
+    public void shouldCompareNumbersOfAnyType() {
+        CompiledFilter compiled = CompiledFilter.compile(new Filter("Age", "trigger.age", INTEGER, true, GT.getValue(), "17"));
+
+        assertTrue(compiled.matches(18));
+        assertTrue(compiled.matches(18L));
+        assertTrue(compiled.matches(new BigDecimal("17.5")));
+        assertTrue(compiled.matches("18"));
+        assertFalse(compiled.matches(17));
+        assertFalse(compiled.matches(null));
+    }
+
+    @Test
+    public void shouldCompareDates() {
+        CompiledFilter compiled = CompiledFilter.compile(new Filter("Date", "trigger.date", DATE, true, AFTER.getValue(), "2015-01-01T00:00:00.000Z"));
+
+        assertTrue(compiled.matches(new DateTime(2015, 1, 2, 0, 0)));
+        assertTrue(compiled.matches("2015-01-02T00:00:00.000Z"));
+        assertFalse(compiled.matches("2014-12-31T00:00:00.000Z"));
+    }
+
+    @Test
+    public void shouldCheckExistenceWithoutExpression() {
+        CompiledFilter compiled = CompiledFilter.compile(new Filter("Age", "trigger.age", INTEGER, true, EXIST.getValue(), ""));
+
+        assertTrue(compiled.matches(5));
+        assertFalse(compiled.matches(null));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldFailForInvalidExpression() {
+        CompiledFilter.compile(new Filter("Age", "trigger.age", INTEGER, true, GT.getValue(), "abc")).matches(5);
+    }
+}
@@ -0,0 +1,63 @@
+package org.motechproject.tasks.service.util;
+
+import org.junit.Test;
+import org.motechproject.tasks.domain.KeyInformation;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledTemplateTest {
+
+    @Test
+    public void shouldReturnTemplateWithoutKeysUnchanged() {
+        CompiledTemplate compiled = CompiledTemplate.compile("Hello world");
+
+        assertTrue(compiled.getKeys().isEmpty());
+        assertEquals("Hello world", compiled.render(new String[0]));
+
+        assertNull(CompiledTemplate.compile(null).render(new String[0]));
+    }
+
+    @Test
+    public void shouldFindKeysInOrder() {
+        CompiledTemplate compiled = CompiledTemplate.compile("{{trigger.name?toUpper}} has {{ad.provider.Patient#0.age}} years");
+
+        assertEquals(asList(KeyInformation.parse("trigger.name?toUpper"), KeyInformation.parse("ad.provider.Patient#0.age")),
+                compiled.getKeys());
+    }
+
+    @Test
+    public void shouldRenderValuesInPlaceOfKeys() {
+        CompiledTemplate compiled = CompiledTemplate.compile("{{trigger.name}} has {{trigger.age}} years");
+
+        assertEquals("Ala has 5 years", compiled.render(new String[]{"Ala", "5"}));
+        assertEquals("Ola has 7 years", compiled.render(new String[]{"Ola", "7"}));
+    }
+
+    @Test
+    public void shouldReplaceAllOccurrencesOfKey() {
+        CompiledTemplate compiled = CompiledTemplate.compile("{{trigger.a}}-{{trigger.b}}-{{trigger.a}}");
+
+        assertEquals(asList(KeyInformation.parse("trigger.a"), KeyInformation.parse("trigger.b"), KeyInformation.parse("trigger.a")),
+                compiled.getKeys());
+        assertEquals("1-2-1", compiled.render(new String[]{"1", "2", "ignored"}));
+    }
+
+    @Test
+    public void shouldNotTreatKeysInManipulationArgumentsAsSeparateKeys() {
+        CompiledTemplate compiled = CompiledTemplate.compile("Msg: {{trigger.message?format({{trigger.name}},cat)}}!");
+
+        assertEquals(1, compiled.getKeys().size());
+        assertEquals("Msg: formatted!", compiled.render(new String[]{"formatted"}));
+    }
+
+    @Test
+    public void shouldCacheCompiledTemplates() {
+        String template = "Cached {{trigger.value}}";
+
+        assertSame(CompiledTemplate.compile(template), CompiledTemplate.compile(new String(template)));
+    }
+}
@@ -7,6 +7,9 @@ import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 
 import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class KeyEvaluatorTest {
 
@@ -45,4 +48,29 @@ public class KeyEvaluatorTest {
     public void shouldThrowExceptionWhenManipulationIsUnknown(){
         new KeyEvaluator(null).manipulate("undefined", "something");
     }
+
+    @Test
+    public void shouldEvaluateTemplateWithManipulations() throws Exception {
+        TaskContext taskContext = mock(TaskContext.class);
+        when(taskContext.getTriggerValue("name")).thenReturn("ala");
+        when(taskContext.getTriggerValue("animal")).thenReturn("cat");
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+
+        String template = "{{trigger.name?capitalize}} has a {{trigger.animal?toUpper}} - {{trigger.name?format(%s)}}";
+
+        assertEquals("Ala has a CAT - ala", keyEvaluator.evaluateTemplateString(template));
+        assertEquals("Ala has a CAT - ala", keyEvaluator.evaluateTemplateString(template));
+
+        when(taskContext.getTriggerValue("message")).thenReturn("%s has a %s");
+        assertEquals("ala has a dog", keyEvaluator.evaluateTemplateString("{{trigger.message?format({{trigger.name}},dog)}}"));
+    }
+
+    @Test
+    public void shouldPublishWarningForUnknownManipulationInTemplate() throws Exception {
+        TaskContext taskContext = mock(TaskContext.class);
+        when(taskContext.getTriggerValue("name")).thenReturn("ala");
+
+        assertEquals("ala", new KeyEvaluator(taskContext).evaluateTemplateString("{{trigger.name?undefined}}"));
+        verify(taskContext).publishWarningActivity("task.warning.manipulation", "undefined");
+    }
 }
@@ -2,6 +2,7 @@ package org.motechproject.event;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -18,12 +19,14 @@ public class MotechEvent implements Serializable {
     private static final long serialVersionUID = -6710829948064847678L;
 
     private UUID id;
+    private Long publishTime;
     private boolean invalid;
     private boolean discarded;
     private boolean broadcast;
     private int redeliveryCount;
     private String subject;
     private String messageDestination;
+    private List<String> messageDestinations;
     private Map<String, Object> parameters;
 
     public MotechEvent() {
@@ -70,6 +73,25 @@ public class MotechEvent implements Serializable {
         this.id = id;
     }
 
+    /**
+     * Returns the time the event was last sent to the broker, in milliseconds since the epoch. It is not taken into
+     * account when comparing events.
+     *
+     * @return the publish time, null if the event was not sent yet
+     */
+    public Long getPublishTime() {
+        return publishTime;
+    }
+
+    /**
+     * Sets the time the event was sent to the broker.
+     *
+     * @param publishTime the publish time, in milliseconds since the epoch
+     */
+    public void setPublishTime(Long publishTime) {
+        this.publishTime = publishTime;
+    }
+
     /**
      * Returns whether event is invalid
      *
@@ -151,6 +173,25 @@ public class MotechEvent implements Serializable {
         messageDestination = value;
     }
 
+    /**
+     * Returns the ids of the Motech listeners that this event is meant for. Used when a single message
+     * carries the event for multiple listeners, the receiving end hands a copy of the event to each of them.
+     *
+     * @return message destinations, null if the event is meant for a single listener
+     */
+    public List<String> getMessageDestinations() {
+        return messageDestinations;
+    }
+
+    /**
+     * Sets the ids of the Motech listeners that this event is meant for
+     *
+     * @param value
+     */
+    public void setMessageDestinations(List<String> value) {
+        messageDestinations = value;
+    }
+
     /**
      * Returns the parameters, if null returns
      * empty <code>HashMap</code>.
@@ -181,6 +222,7 @@ public class MotechEvent implements Serializable {
                 Objects.equals(redeliveryCount, that.redeliveryCount) &&
                 Objects.equals(subject, that.subject) &&
                 Objects.equals(messageDestination, that.messageDestination) &&
+                Objects.equals(messageDestinations, that.messageDestinations) &&
                 Objects.equals(parameters, that.parameters);
     }
 
@@ -192,6 +234,7 @@ public class MotechEvent implements Serializable {
                 redeliveryCount,
                 subject,
                 messageDestination,
+                messageDestinations,
                 parameters);
     }
 
@@ -206,6 +249,9 @@ public class MotechEvent implements Serializable {
         sb.append(", discarded=").append(discarded);
         sb.append(", broadcast=").append(broadcast);
         sb.append(", destination='").append(messageDestination).append('\'');
+        if (messageDestinations != null) {
+            sb.append(", destinations=").append(messageDestinations);
+        }
         sb.append(", parameters=").append(parameters);
         sb.append('}');
         return sb.toString();
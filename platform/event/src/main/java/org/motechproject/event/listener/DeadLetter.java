@@ -0,0 +1,67 @@
+package org.motechproject.event.listener;
+
+import org.joda.time.DateTime;
+import org.motechproject.event.MotechEvent;
+
+import java.util.Objects;
+
+/**
+ * An event which was discarded after its handling by a listener failed and the maximum number of redeliveries
+ * was reached. Keeps the identifier of the listener which failed and the reason of the last failure.
+ */
+public class DeadLetter {
+
+    private final MotechEvent event;
+    private final String listenerIdentifier;
+    private final String failureMessage;
+    private final DateTime discardedAt;
+
+    public DeadLetter(MotechEvent event, String listenerIdentifier, String failureMessage, DateTime discardedAt) {
+        this.event = event;
+        this.listenerIdentifier = listenerIdentifier;
+        this.failureMessage = failureMessage;
+        this.discardedAt = discardedAt;
+    }
+
+    public MotechEvent getEvent() {
+        return event;
+    }
+
+    public String getListenerIdentifier() {
+        return listenerIdentifier;
+    }
+
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    public DateTime getDiscardedAt() {
+        return discardedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        DeadLetter that = (DeadLetter) o;
+
+        return Objects.equals(event, that.event) && Objects.equals(listenerIdentifier, that.listenerIdentifier) &&
+                Objects.equals(failureMessage, that.failureMessage) && Objects.equals(discardedAt, that.discardedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(event, listenerIdentifier, failureMessage, discardedAt);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeadLetter{event=%s, listenerIdentifier='%s', failureMessage='%s', discardedAt=%s}",
+                event, listenerIdentifier, failureMessage, discardedAt);
+    }
+}
@@ -0,0 +1,30 @@
+package org.motechproject.event.listener;
+
+import java.util.List;
+
+/**
+ * The <code>DeadLetterStore</code> interface provides access to the events which were discarded after their
+ * handling failed more times than the maximum redelivery count allows. Only a bounded number of the most recently
+ * discarded events is kept.
+ */
+public interface DeadLetterStore {
+
+    /**
+     * Returns the discarded events, oldest first.
+     *
+     * @return the list of dead letters
+     */
+    List<DeadLetter> getDeadLetters();
+
+    /**
+     * Returns the number of discarded events in the store.
+     *
+     * @return the number of dead letters
+     */
+    int size();
+
+    /**
+     * Removes all discarded events from the store.
+     */
+    void clear();
+}
@@ -11,4 +11,19 @@ public interface EventConsumerInfo {
      * @return true if Event Consumers are running, false otherwise
      */
     boolean isRunning();
+
+    /**
+     * Returns the number of events received from the event topic which are waiting to be handled.
+     *
+     * @return the number of waiting topic events
+     */
+    int getTopicQueueDepth();
+
+    /**
+     * Returns the time (in milliseconds) the oldest of the events received from the event topic has been waiting
+     * to be handled.
+     *
+     * @return the lag of the topic event handling, 0 if no events are waiting
+     */
+    long getTopicLag();
 }
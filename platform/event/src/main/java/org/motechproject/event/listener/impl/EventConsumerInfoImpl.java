@@ -14,12 +14,23 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
 
     private JmsMessageDrivenEndpoint queueEndpoint;
     private JmsMessageDrivenEndpoint topicEndpoint;
+    private TopicEventDispatcher topicEventDispatcher;
 
     @Override
     public boolean isRunning() {
         return queueEndpoint.isRunning() && topicEndpoint.isRunning();
     }
 
+    @Override
+    public int getTopicQueueDepth() {
+        return topicEventDispatcher.getQueueDepth();
+    }
+
+    @Override
+    public long getTopicLag() {
+        return topicEventDispatcher.getLag();
+    }
+
     @Autowired
     @Qualifier("eventQueueJMSIn")
     public void setQueueEndpoint(JmsMessageDrivenEndpoint queueEndpoint) {
@@ -31,4 +42,9 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
     public void setTopicEndpoint(JmsMessageDrivenEndpoint topicEndpoint) {
         this.topicEndpoint = topicEndpoint;
     }
+
+    @Autowired
+    public void setTopicEventDispatcher(TopicEventDispatcher topicEventDispatcher) {
+        this.topicEventDispatcher = topicEventDispatcher;
+    }
 }
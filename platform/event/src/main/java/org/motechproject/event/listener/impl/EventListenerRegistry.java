@@ -4,20 +4,25 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
- import org.springframework.stereotype.Service;
+import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Set;
 
 /**
  * Implementation of the {@link EventListenerRegistryService} interface.
- * Acts as a registry for all scheduled event listeners.
+ * Acts as a registry for all scheduled event listeners. The listener tree is never modified once published -
+ * registering or removing listeners works on a copy, which then replaces the current tree. Lookups, done by
+ * every published and received event, therefore need no locking and are served from the lookup cache
+ * of the current tree.
  */
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerRegistry.class);
 
-    private EventListenerTree listenerTree = new EventListenerTree();
+    private volatile EventListenerTree listenerTree = new EventListenerTree();
+
+    private final Object writeLock = new Object();
 
     public void registerListener(EventListener listener, List<String> subjects) {
 
@@ -29,9 +34,23 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             throw new IllegalArgumentException("Invalid attempt to register for null subjects");
         }
 
-        // Add the listener to the list of those interested in each event type
+        if (subjects.isEmpty()) {
+            return;
+        }
+
         for (String subject : subjects) {
-            registerListener(listener, subject);
+            validateSubject(subject);
+            logRegistration(listener, subject);
+        }
+
+        synchronized (writeLock) {
+            EventListenerTree updatedTree = listenerTree;
+            // Add the listener to the list of those interested in each event type
+            for (String subject : subjects) {
+                updatedTree = updatedTree.copyPath(subject);
+                updatedTree.addListener(listener, subject);
+            }
+            listenerTree = updatedTree;
         }
     }
 
@@ -40,15 +59,14 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             throw new IllegalArgumentException("Invalid attempt to register a null EventListener");
         }
 
-        if (subject == null) {
-            throw new IllegalArgumentException("Invalid attempt to register for null subject");
-        }
+        validateSubject(subject);
+        logRegistration(listener, subject);
 
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("registering handler for {} to {}", subject, this.toString());
+        synchronized (writeLock) {
+            EventListenerTree updatedTree = listenerTree.copyPath(subject);
+            updatedTree.addListener(listener, subject);
+            listenerTree = updatedTree;
         }
-
-        listenerTree.addListener(listener, subject);
     }
 
     public Set<EventListener> getListeners(String subject) {
@@ -65,6 +83,23 @@ public class EventListenerRegistry implements EventListenerRegistryService {
 
     public void clearListenersForBean(String beanName) {
         LOGGER.debug("Clearing listeners for bean: {}", beanName);
-        listenerTree.removeAllListeners(beanName);
+
+        synchronized (writeLock) {
+            EventListenerTree updatedTree = listenerTree.copy();
+            updatedTree.removeAllListeners(beanName);
+            listenerTree = updatedTree;
+        }
+    }
+
+    private void validateSubject(String subject) {
+        if (subject == null) {
+            throw new IllegalArgumentException("Invalid attempt to register for null subject");
+        }
+    }
+
+    private void logRegistration(EventListener listener, String subject) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("registering handler {} for {} to {}", listener.getIdentifier(), subject, this.toString());
+        }
     }
 }
@@ -5,29 +5,45 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.springframework.util.CollectionUtils.isEmpty;
 
 /**
  * Implementation of the {@link org.motechproject.event.listener.impl.EventListenerRegistry} interface.
- * Listeners are stored as a tree.
+ * Listeners are stored as a tree. Children of a node are kept in a hash map keyed by the path element, and the
+ * root node caches the result of {@link #getListeners(String)} for every subject it was asked about. The cache is
+ * cleared whenever a listener is added or removed. The tree itself is not thread-safe, the
+ * {@link EventListenerRegistry} uses it in a copy-on-write fashion, see {@link #copy()} and {@link #copyPath(String)}.
  */
 public class EventListenerTree {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerTree.class);
 
-    private static final String SPLIT_REGEX = "\\.";
+    private static final char PATH_SEPARATOR = '.';
 
-    private List<EventListenerTree> children = new ArrayList<EventListenerTree>();
+    /**
+     * The maximum number of subjects for which the lookup results are cached, protects us from subjects
+     * containing generated parts (e.g. ids).
+     */
+    private static final int MAX_CACHED_SUBJECTS = 50000;
+
+    private Map<String, EventListenerTree> children = new HashMap<>();
     private EventListenerTree parent;
 
     private String pathElement;
     private Set<EventListener> listeners;
     private Set<EventListener> wildcardListeners;
 
+    private final ConcurrentMap<String, Set<EventListener>> lookupCache;
+
     public EventListenerTree() {
         this("*", null);
     }
@@ -35,6 +51,67 @@ public class EventListenerTree {
     public EventListenerTree(String pathElement, EventListenerTree parent) {
         this.pathElement = pathElement;
         this.parent = parent;
+        this.lookupCache = (parent == null) ? new ConcurrentHashMap<String, Set<EventListener>>() : null;
+    }
+
+    /**
+     * Creates a deep copy of this tree. Listener instances are shared, but all the nodes and listener sets
+     * are new, so the copy can be modified without affecting readers of this tree. The lookup cache of the
+     * copy starts empty.
+     *
+     * @return the copy of this tree
+     */
+    public EventListenerTree copy() {
+        return copy(null);
+    }
+
+    /**
+     * Creates a copy of this tree, in which only the nodes lying on the path of the given subject are copied,
+     * all other nodes are shared with this tree. Adding a listener for the given subject to the returned
+     * tree does not affect this tree. The lookup cache of the copy starts empty.
+     *
+     * @param subject the subject for which a listener will be added
+     * @return the copy of this tree
+     */
+    public EventListenerTree copyPath(String subject) {
+        EventListenerTree root = shallowCopy(null);
+
+        EventListenerTree node = root;
+        for (String element : splitSubject(subject)) {
+            EventListenerTree child = node.getChild(element);
+            if (child == null) {
+                break;
+            }
+            EventListenerTree childCopy = child.shallowCopy(node);
+            node.addChild(childCopy);
+            node = childCopy;
+        }
+
+        return root;
+    }
+
+    private EventListenerTree copy(EventListenerTree newParent) {
+        EventListenerTree copy = shallowCopy(newParent);
+
+        for (EventListenerTree child : children.values()) {
+            copy.addChild(child.copy(copy));
+        }
+
+        return copy;
+    }
+
+    private EventListenerTree shallowCopy(EventListenerTree newParent) {
+        EventListenerTree copy = new EventListenerTree(pathElement, newParent);
+
+        copy.children.putAll(children);
+        if (listeners != null) {
+            copy.listeners = new HashSet<>(listeners);
+        }
+        if (wildcardListeners != null) {
+            copy.wildcardListeners = new HashSet<>(wildcardListeners);
+        }
+
+        return copy;
     }
 
     /**
@@ -84,12 +161,14 @@ public class EventListenerTree {
         }
 
         // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
+        String[] path = splitSubject(subject);
 
         if (path[path.length - 1].contains("*") && path[path.length - 1].length() > 1) {
             throw new IllegalArgumentException("Wildcard can not be mixed with characters");
         }
 
+        clearLookupCache();
+
         if ("*".equals(subject)) {
             addListener(listener);
             return;
@@ -130,19 +209,34 @@ public class EventListenerTree {
      * @see org.motechproject.event.listener.EventListenerRegistryService#getListeners(String)
      */
     public Set<EventListener> getListeners(String subject) {
+        if (lookupCache == null) {
+            return findListeners(subject);
+        }
+
+        Set<EventListener> cached = lookupCache.get(subject);
+        if (cached == null) {
+            cached = Collections.unmodifiableSet(findListeners(subject));
+            if (lookupCache.size() < MAX_CACHED_SUBJECTS) {
+                lookupCache.putIfAbsent(subject, cached);
+            }
+        }
+
+        return cached;
+    }
+
+    private Set<EventListener> findListeners(String subject) {
         // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
+        String[] path = splitSubject(subject);
 
         Set<EventListener> allListeners = new HashSet<>();
         if (isRootNode() && listeners != null) {
             allListeners.addAll(listeners);
         }
         EventListenerTree child = getChild(path[0]);
-        if (child == null) {
-            return allListeners;
+        if (child != null) {
+            child.collectListeners(path, 0, allListeners);
         }
 
-        allListeners.addAll(child.getListeners(path, 0));
         return allListeners;
     }
 
@@ -150,51 +244,25 @@ public class EventListenerTree {
         return "*".equals(pathElement);
     }
 
-    private Set<EventListener> getListeners(String[] path, int pathLevel) {
-        Set<EventListener> ret;
-
+    private void collectListeners(String[] path, int pathLevel, Set<EventListener> result) {
         if ((pathLevel + 1) == path.length) {
-            return getAllListeners();
+            collectAllListeners(result);
+            return;
         }
 
+        addAllIfPresent(result, wildcardListeners);
+
         EventListenerTree child = getChild(path[pathLevel + 1]);
-        if (child == null) {
-            return getWildcardListeners();
+        if (child != null) {
+            child.collectListeners(path, (pathLevel + 1), result);
         }
-
-        ret = child.getListeners(path, (pathLevel + 1));
-        ret.addAll(getWildcardListeners());
-
-        return ret;
     }
 
     /**
      * @see org.motechproject.event.listener.EventListenerRegistryService#hasListener(String)
      */
     public boolean hasListener(String subject) {
-        // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
-
-        if (isRootNode() && listeners != null && !listeners.isEmpty()) {
-            return true;
-        }
-        EventListenerTree child = getChild(path[0]);
-        return child != null && child.hasListener(path, 0);
-
-    }
-
-    private boolean hasListener(String[] path, int pathLevel) {
-        if (hasWildcardListeners()) {
-            return true;
-        }
-
-        if ((pathLevel + 1) == path.length) {
-            return listeners != null && !listeners.isEmpty();
-        }
-
-        EventListenerTree child = getChild(path[pathLevel + 1]);
-        return child != null && child.hasListener(path, (pathLevel + 1));
-
+        return !getListeners(subject).isEmpty();
     }
 
     /**
@@ -202,7 +270,7 @@ public class EventListenerTree {
      */
     public int getListenerCount(String subject) {
         // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
+        String[] path = splitSubject(subject);
 
         EventListenerTree child = getChild(path[0]);
         if (child == null) {
@@ -213,53 +281,33 @@ public class EventListenerTree {
     }
 
     private int getListenerCount(String[] path, int pathLevel) {
-        int ret = 0;
-
         if ((pathLevel + 1) == path.length) {
-            return getAllListeners().size();
+            return collectAllListeners(new HashSet<EventListener>()).size();
         }
 
+        int ret = (wildcardListeners == null) ? 0 : wildcardListeners.size();
+
         EventListenerTree child = getChild(path[pathLevel + 1]);
         if (child == null) {
-            return getWildcardListeners().size();
-        }
-
-        ret = getWildcardListeners().size();
-
-        return ret + child.getListeners(path, (pathLevel + 1)).size();
-    }
-
-    private Set<EventListener> getListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
-
-        if (listeners == null) {
-            listeners = new HashSet<EventListener>();
+            return ret;
         }
 
-        ret.addAll(listeners);
+        Set<EventListener> childListeners = new HashSet<>();
+        child.collectListeners(path, (pathLevel + 1), childListeners);
 
-        return ret;
+        return ret + childListeners.size();
     }
 
-    private Set<EventListener> getAllListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
-
-        ret.addAll(getListeners());
-        ret.addAll(getWildcardListeners());
-
-        return ret;
+    private Set<EventListener> collectAllListeners(Set<EventListener> result) {
+        addAllIfPresent(result, listeners);
+        addAllIfPresent(result, wildcardListeners);
+        return result;
     }
 
-    private Set<EventListener> getWildcardListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
-
-        if (wildcardListeners == null) {
-            wildcardListeners = new HashSet<EventListener>();
+    private static void addAllIfPresent(Set<EventListener> result, Set<EventListener> toAdd) {
+        if (toAdd != null) {
+            result.addAll(toAdd);
         }
-
-        ret.addAll(wildcardListeners);
-
-        return ret;
     }
 
     private void addListener(EventListener listener) {
@@ -290,39 +338,52 @@ public class EventListenerTree {
         }
     }
 
-    private boolean hasWildcardListeners() {
-        return wildcardListeners != null && !wildcardListeners.isEmpty();
+    private EventListenerTree getChild(String pathElement) {
+        return children.get(pathElement);
     }
 
-    private EventListenerTree getChild(String pathElement) {
-        EventListenerTree ret = null;
+    private void addChild(EventListenerTree child) {
+        children.put(child.getPathElement(), child);
+    }
 
-        if (children != null) {
-            for (EventListenerTree n : children) {
-                if (n.getPathElement().equals(pathElement)) {
-                    ret = n;
-                    break;
-                }
-            }
+    private void clearLookupCache() {
+        if (lookupCache != null) {
+            lookupCache.clear();
         }
-
-        return ret;
     }
 
-    private void addChild(EventListenerTree child) {
-        if (children == null) {
-            children = new ArrayList<EventListenerTree>();
+    /**
+     * Splits the subject into its path elements. Does the same as {@code subject.split("\\.")}, without
+     * going through the regex machinery.
+     */
+    private static String[] splitSubject(String subject) {
+        List<String> path = new ArrayList<>();
+
+        int start = 0;
+        int end = subject.indexOf(PATH_SEPARATOR);
+        while (end != -1) {
+            path.add(subject.substring(start, end));
+            start = end + 1;
+            end = subject.indexOf(PATH_SEPARATOR, start);
+        }
+        path.add(subject.substring(start));
+
+        // String.split removes trailing empty strings
+        int size = path.size();
+        while (size > 1 && path.get(size - 1).isEmpty()) {
+            size--;
         }
 
-        children.add(child);
+        return path.subList(0, size).toArray(new String[size]);
     }
 
     /**
      * @see org.motechproject.event.listener.EventListenerRegistryService#clearListenersForBean(String)
      */
     public void removeAllListeners(String beanName) {
+        clearLookupCache();
 
-        for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+        for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
             EventListenerTree child = listenerIterator.next();
             if (child.containsListenersForBeanName(beanName) && child.allListenersEmpty()) {
                 listenerIterator.remove();
@@ -333,9 +394,9 @@ public class EventListenerTree {
     private boolean allListenersEmpty() {
 
         if (children.size() == 0) {
-            return this.getAllListeners().size() == 0;
+            return collectAllListeners(new HashSet<EventListener>()).isEmpty();
         } else {
-            for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+            for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
                 EventListenerTree child = listenerIterator.next();
                 if (!child.allListenersEmpty() || isEmpty(wildcardListeners)) {
                     return false;
@@ -369,7 +430,7 @@ public class EventListenerTree {
                 }
             }
         }
-        for (EventListenerTree childTree : children) {
+        for (EventListenerTree childTree : children.values()) {
             if (childTree.containsListenersForBeanName(beanName)) {
                 removed = true;
             }
@@ -0,0 +1,74 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.DeadLetter;
+import org.motechproject.event.listener.DeadLetterStore;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the discarded events in memory. Once the capacity configured in the {@link MotechEventConfig} is reached,
+ * the oldest events are dropped to make room for new ones.
+ */
+@Component("deadLetterStore")
+public class InMemoryDeadLetterStore implements DeadLetterStore {
+
+    private final Deque<DeadLetter> deadLetters = new ArrayDeque<>();
+
+    private MotechEventConfig motechEventConfig;
+
+    @Autowired
+    public InMemoryDeadLetterStore(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Stores the event discarded after the given listener failed to handle it.
+     *
+     * @param event the discarded event
+     * @param listenerIdentifier the identifier of the listener that failed
+     * @param cause the last failure
+     */
+    public void add(MotechEvent event, String listenerIdentifier, Throwable cause) {
+        int capacity = motechEventConfig.getDeadLetterCapacity();
+        if (capacity <= 0) {
+            return;
+        }
+
+        DeadLetter deadLetter = new DeadLetter(event, listenerIdentifier, String.valueOf(cause), DateUtil.now());
+        synchronized (deadLetters) {
+            while (deadLetters.size() >= capacity) {
+                deadLetters.removeFirst();
+            }
+            deadLetters.addLast(deadLetter);
+        }
+    }
+
+    @Override
+    public List<DeadLetter> getDeadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (deadLetters) {
+            deadLetters.clear();
+        }
+    }
+}
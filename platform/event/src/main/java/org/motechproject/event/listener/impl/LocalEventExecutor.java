@@ -0,0 +1,171 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the delivery of events to listeners of this Motech instance, without going through the JMS broker.
+ * Deliveries are run on a bounded thread pool, once its queue is full the sending thread runs the delivery itself.
+ * Redeliveries of failed events are delayed using a separate scheduler thread, which never runs them itself: a
+ * redelivery which does not fit in the queue is delayed again. Deliveries which will not be run because the executor
+ * was shut down are discarded through {@link Delivery#discard(RejectedExecutionException)}.
+ */
+@Component
+public class LocalEventExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
+    /**
+     * A delivery of an event, which is told when it will never be run.
+     */
+    public interface Delivery extends Runnable {
+
+        /**
+         * Called instead of {@link #run()} when the delivery is dropped, because the executor was shut down.
+         *
+         * @param cause the reason why the delivery was dropped
+         */
+        void discard(RejectedExecutionException cause);
+    }
+
+    private final Set<DelayedDelivery> pendingRetries =
+            Collections.newSetFromMap(new ConcurrentHashMap<DelayedDelivery, Boolean>());
+
+    private MotechEventConfig motechEventConfig;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService retryScheduler;
+
+    @Autowired
+    public LocalEventExecutor(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        int poolSize = Math.max(1, motechEventConfig.getLocalPoolSize());
+        int queueCapacity = Math.max(1, motechEventConfig.getLocalQueueCapacity());
+
+        executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("motech-local-event-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("motech-local-event-retry-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Executes the given delivery asynchronously. If the queue is full, the delivery is run by the calling thread.
+     *
+     * @param delivery the delivery to execute
+     */
+    public void execute(Delivery delivery) {
+        try {
+            executor.execute(delivery);
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                delivery.discard(e);
+            } else {
+                // the queue is full, slow down the sender by running the delivery on its thread
+                delivery.run();
+            }
+        }
+    }
+
+    /**
+     * Executes the given delivery asynchronously, after the given delay.
+     *
+     * @param delivery the delivery to execute
+     * @param delayMillis the delay, in milliseconds
+     */
+    public void executeWithDelay(Delivery delivery, long delayMillis) {
+        DelayedDelivery delayed = new DelayedDelivery(delivery, delayMillis);
+        pendingRetries.add(delayed);
+        try {
+            retryScheduler.schedule(delayed, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingRetries.remove(delayed);
+            delivery.discard(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        for (DelayedDelivery delayed : pendingRetries) {
+            delayed.getDelivery().discard(new RejectedExecutionException("Local event executor was shut down"));
+        }
+        pendingRetries.clear();
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("{} local event deliveries did not finish before shutdown", executor.getActiveCount());
+                discardQueued();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discardQueued();
+        }
+    }
+
+    private void discardQueued() {
+        for (Runnable queued : executor.shutdownNow()) {
+            ((Delivery) queued).discard(new RejectedExecutionException("Local event executor was shut down"));
+        }
+    }
+
+    /**
+     * A delivery waiting for its delay on the scheduler thread. Once the delay passes, the delivery is handed to
+     * the pool. If the queue of the pool is full, the delivery waits for another delay instead of being run on
+     * the scheduler thread, which would hold back all the other redeliveries.
+     */
+    private class DelayedDelivery implements Runnable {
+        private final Delivery delivery;
+        private final long delayMillis;
+
+        DelayedDelivery(Delivery delivery, long delayMillis) {
+            this.delivery = delivery;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void run() {
+            pendingRetries.remove(this);
+            try {
+                executor.execute(delivery);
+            } catch (RejectedExecutionException e) {
+                if (executor.isShutdown()) {
+                    delivery.discard(e);
+                } else {
+                    LOGGER.debug("Local event queue is full, delaying {} again by {} millis", delivery, delayMillis);
+                    executeWithDelay(delivery, delayMillis);
+                }
+            }
+        }
+
+        Delivery getDelivery() {
+            return delivery;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.messaging.impl.MotechEventBatchSender;
+import org.motechproject.event.metrics.impl.EventMetricsServiceImpl;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.osgi.service.event.Event;
@@ -15,13 +17,23 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles incoming scheduled events and relays those events to the appropriate event listeners.
- * It is also used for publishing events in the ActiveMQ.
+ * It is also used for publishing events in the ActiveMQ. If local delivery is enabled in the
+ * {@link MotechEventConfig}, events sent to the queue are delivered to the listeners of this instance
+ * using the {@link LocalEventExecutor} instead, unless their subjects are configured as durable. Failed deliveries
+ * of events received from the topic are retried with a delay, using the {@link LocalEventExecutor} as well. Events
+ * discarded after the maximum number of redeliveries are kept in the {@link InMemoryDeadLetterStore}. Throughput,
+ * latency and failures are recorded in the {@link EventMetricsServiceImpl}.
  */
 @Component("eventRelay")
 public class ServerEventRelay implements EventRelay, EventHandler {
@@ -33,23 +45,39 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private OutboundEventGateway outboundEventGateway;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
+    private MotechEventBatchSender eventBatchSender;
+    private LocalEventExecutor localEventExecutor;
+    private InMemoryDeadLetterStore deadLetterStore;
+    private EventMetricsServiceImpl eventMetrics;
 
     @Autowired
     public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin) {
+                            EventAdmin osgiEventAdmin, MotechEventBatchSender eventBatchSender, LocalEventExecutor localEventExecutor,
+                            InMemoryDeadLetterStore deadLetterStore, EventMetricsServiceImpl eventMetrics) {
         this.outboundEventGateway = outboundEventGateway;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
+        this.eventBatchSender = eventBatchSender;
+        this.localEventExecutor = localEventExecutor;
+        this.deadLetterStore = deadLetterStore;
+        this.eventMetrics = eventMetrics;
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
     @Override
     public void sendEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordPublished(event.getSubject());
         Set<EventListener> listeners = getEventListeners(event);
 
-        if (!listeners.isEmpty()) {
+        if (!listeners.isEmpty() && motechEventConfig.isLocalDelivery() && !isDurableSubject(event.getSubject())) {
+            // No need to go through the broker, all the listeners are in this instance
+            deliverLocally(event, listeners);
+        } else if (listeners.size() > 1 && motechEventConfig.isCompactFanOut()) {
+            // A single message carrying all the destinations, split on the receiving end
+            sendCompactEvent(event, listeners);
+        } else if (!listeners.isEmpty()) {
             // We need to split the message for each listener to ensure the work units
             // are completed individually. Therefore, if a message fails it will be
             // re-distributed to another server without being lost
@@ -60,6 +88,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     @Override
     public void broadcastEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordPublished(event.getSubject());
         Set<EventListener> listeners = getEventListeners(event);
 
         // broadcast the event if there are listeners for it, or if it should get proxied as an OSGi event,
@@ -77,8 +106,12 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      */
     public void relayQueueEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordReceived(event.getSubject(), event.getPublishTime());
         String messageDestination = event.getMessageDestination();
-        if (null != messageDestination) {
+        List<String> messageDestinations = event.getMessageDestinations();
+        if (null != messageDestinations && !messageDestinations.isEmpty()) {
+            relayToDestinations(event, messageDestinations);
+        } else if (null != messageDestination) {
             EventListener listener = getEventListener(event, messageDestination);
             if (null != listener) {
                 MotechEvent e = copyMotechEvent(event);
@@ -98,9 +131,10 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      */
     public void relayTopicEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordReceived(event.getSubject(), event.getPublishTime());
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
-            handleTopicEvent(listener, event);
+            handleTopicEvent(listener, event, 0);
         }
 
         // broadcast events can be also be additionally sent as OSGi events upon being received
@@ -150,7 +184,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-            listener.handle(event);
+            handle(listener, event);
 
         } catch (RuntimeException e) {
             LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
@@ -161,40 +195,124 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                 event.setDiscarded(true);
                 LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
+                discard(event, listener, e);
                 throw e;
             }
 
             event.incrementMessageRedeliveryCount();
+            eventMetrics.recordRetry(event.getSubject());
             outboundEventGateway.sendEventMessage(event);
         } finally {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
         }
     }
 
-    private void handleTopicEvent(EventListener listener, MotechEvent event) {
-        int retryCount = 0;
-        int maxRetryCount = motechEventConfig.getMessageMaxRedeliveryCount();
-        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    private void deliverLocally(MotechEvent event, Set<EventListener> listeners) {
+        for (EventListener listener : listeners) {
+            MotechEvent localEvent = new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+            localEvent.setId(UUID.randomUUID());
+            localEvent.setMessageDestination(listener.getIdentifier());
+            localEvent.setPublishTime(System.currentTimeMillis());
+            localEventExecutor.execute(new LocalDelivery(localEvent));
+        }
+    }
 
-        do {
-            try {
-                Object target = MotechProxyUtils.getTargetIfProxied(listener);
-                Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-                listener.handle(event);
-                break;
-            } catch (RuntimeException e) {
-                if (retryCount < maxRetryCount) {
-                    LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
-                            event.toString(), listener.getIdentifier()), e);
-                } else {
-                    LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
-                            event.toString(), listener.getIdentifier()), e);
-                    break;
+    /**
+     * Handles a locally delivered event, with the same retry semantics as {@link #handleQueueEvent(EventListener, MotechEvent)},
+     * except that redeliveries are scheduled on the {@link LocalEventExecutor} instead of the broker.
+     */
+    private void handleLocalEvent(EventListener listener, MotechEvent event) {
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Object target = MotechProxyUtils.getTargetIfProxied(listener);
+            Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
+            handle(listener, event);
+
+        } catch (RuntimeException e) {
+            LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
+
+            event.setInvalid(true);
+
+            if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
+                event.setDiscarded(true);
+                LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
+                discard(event, listener, e);
+                return;
+            }
+
+            event.incrementMessageRedeliveryCount();
+            long delay = motechEventConfig.getRedeliveryDelayMillis(event.getMessageRedeliveryCount());
+            LOGGER.debug("Redelivering {} after {} millis.", event, delay);
+            eventMetrics.recordRetry(event.getSubject());
+            localEventExecutor.executeWithDelay(new LocalDelivery(event), delay);
+        } finally {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+        }
+    }
+
+    /**
+     * Hands the event to the listener, recording the time it took and whether the listener failed.
+     */
+    private void handle(EventListener listener, MotechEvent event) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            listener.handle(event);
+            failed = false;
+        } finally {
+            eventMetrics.recordExecution(listener.getIdentifier(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed);
+        }
+    }
+
+    private void discard(MotechEvent event, EventListener listener, RuntimeException cause) {
+        discard(event, listener.getIdentifier(), cause);
+    }
+
+    private void discard(MotechEvent event, String listenerIdentifier, RuntimeException cause) {
+        eventMetrics.recordDiscard(event.getSubject());
+        deadLetterStore.add(event, listenerIdentifier, cause);
+    }
+
+    private boolean isDurableSubject(String subject) {
+        for (String durableSubject : motechEventConfig.getDurableSubjects()) {
+            if (durableSubject.endsWith("*")) {
+                if (subject.startsWith(durableSubject.substring(0, durableSubject.length() - 1))) {
+                    return true;
                 }
-            } finally {
-                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            } else if (subject.equals(durableSubject)) {
+                return true;
             }
-        } while (retryCount++ < maxRetryCount);
+        }
+        return false;
+    }
+
+    /**
+     * Handles an event received from the topic. If the listener fails, the handling is retried with the same delays
+     * as the redeliveries of queue events, without blocking the thread handling the topic. The retry count is kept
+     * in the scheduled redelivery, since the event itself is shared by all of its listeners.
+     */
+    private void handleTopicEvent(EventListener listener, MotechEvent event, int retryCount) {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Object target = MotechProxyUtils.getTargetIfProxied(listener);
+            Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
+            handle(listener, event);
+        } catch (RuntimeException e) {
+            if (retryCount < motechEventConfig.getMessageMaxRedeliveryCount()) {
+                long delay = motechEventConfig.getRedeliveryDelayMillis(retryCount + 1);
+                LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s, retrying after %d millis.",
+                        event.toString(), listener.getIdentifier(), delay), e);
+                eventMetrics.recordRetry(event.getSubject());
+                localEventExecutor.executeWithDelay(new TopicRedelivery(listener.getIdentifier(), event, retryCount + 1), delay);
+            } else {
+                LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
+                        event.toString(), listener.getIdentifier()), e);
+                discard(event, listener, e);
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
     }
 
     /**
@@ -206,6 +324,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      * @param listeners A list of listeners for this given message that will be used as message destinations
      */
     private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
+        List<MotechEvent> enrichedEventMessages = new ArrayList<>(listeners.size());
         MotechEvent enrichedEventMessage;
         Map<String, Object> parameters;
 
@@ -214,7 +333,68 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             parameters.putAll(event.getParameters());
             enrichedEventMessage = new MotechEvent(event.getSubject(), parameters);
             enrichedEventMessage.setMessageDestination(listener.getIdentifier());
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            enrichedEventMessages.add(enrichedEventMessage);
+        }
+
+        if (enrichedEventMessages.size() > 1 && motechEventConfig.isBatchFanOut()) {
+            // All copies go to the broker in a single transaction
+            eventBatchSender.sendEventMessages(enrichedEventMessages);
+        } else {
+            for (MotechEvent message : enrichedEventMessages) {
+                outboundEventGateway.sendEventMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Sends a single message for all the listeners of the given event. The message carries the identifiers
+     * of the listeners as its destinations, the receiving end hands a copy of the event to each of them.
+     *
+     * @param event     Event message to be sent
+     * @param listeners A list of listeners for this given message that will be used as message destinations
+     */
+    private void sendCompactEvent(MotechEvent event, Set<EventListener> listeners) {
+        List<String> destinations = new ArrayList<>(listeners.size());
+        for (EventListener listener : listeners) {
+            destinations.add(listener.getIdentifier());
+        }
+
+        MotechEvent compactEventMessage = new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+        compactEventMessage.setMessageDestinations(destinations);
+        outboundEventGateway.sendEventMessage(compactEventMessage);
+    }
+
+    /**
+     * Expands an event carrying multiple destinations and hands a copy of it to each of the destination
+     * listeners. A failure of one listener does not prevent the others from handling the event. Failures are
+     * never rethrown, since a redelivery of the whole message would run the listeners which succeeded again.
+     * A failed destination is redelivered on its own instead, or discarded if that is not possible.
+     *
+     * @param event        the event being relayed
+     * @param destinations the identifiers of the listeners that should handle the event
+     */
+    private void relayToDestinations(MotechEvent event, List<String> destinations) {
+        for (String destination : destinations) {
+            EventListener listener = getEventListener(event, destination);
+            if (null == listener) {
+                LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", destination, event);
+                continue;
+            }
+
+            MotechEvent e = new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+            e.setId(event.getId());
+            e.setMessageDestination(destination);
+            try {
+                // a failed destination is sent again as a separate message by handleQueueEvent
+                handleQueueEvent(listener, e);
+            } catch (RuntimeException ex) {
+                if (!e.isDiscarded()) {
+                    // the separate message could not be sent
+                    LOGGER.error("Discarding Motech event {}. Unable to redeliver it.", e, ex);
+                    e.setDiscarded(true);
+                    discard(e, listener, ex);
+                }
+            }
         }
     }
 
@@ -253,6 +433,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private MotechEvent copyMotechEvent(MotechEvent event) {
         MotechEvent copy = new MotechEvent(event.getSubject(), event.getParameters());
         copy.setId(event.getId());
+        copy.setPublishTime(event.getPublishTime());
         copy.setMessageRedeliveryCount(event.getMessageRedeliveryCount());
         copy.setInvalid(event.isInvalid());
         copy.setDiscarded(event.isDiscarded());
@@ -266,4 +447,80 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             throw new IllegalArgumentException("Invalid request to relay null event");
         }
     }
+
+    /**
+     * Delivery of an event to the listener identified by its message destination. The listener is looked up
+     * each time the delivery is run, since it might have been unregistered before a redelivery.
+     */
+    private class LocalDelivery implements LocalEventExecutor.Delivery {
+        private final MotechEvent event;
+
+        LocalDelivery(MotechEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            if (event.getMessageRedeliveryCount() == 0) {
+                eventMetrics.recordReceived(event.getSubject(), event.getPublishTime());
+            }
+            EventListener listener = getEventListener(event, event.getMessageDestination());
+            if (null != listener) {
+                handleLocalEvent(listener, event);
+            } else {
+                LOGGER.warn("Event listener with identifier {} not present to handle the event: {}",
+                        event.getMessageDestination(), event);
+            }
+        }
+
+        @Override
+        public void discard(RejectedExecutionException cause) {
+            LOGGER.error("Discarding Motech event {}. Local delivery was stopped.", event, cause);
+            event.setDiscarded(true);
+            ServerEventRelay.this.discard(event, event.getMessageDestination(), cause);
+        }
+
+        @Override
+        public String toString() {
+            return "local delivery of " + event;
+        }
+    }
+
+    /**
+     * Redelivery of a topic event to the listener which failed to handle it. As with local deliveries,
+     * the listener is looked up when the redelivery is run.
+     */
+    private class TopicRedelivery implements LocalEventExecutor.Delivery {
+        private final String listenerIdentifier;
+        private final MotechEvent event;
+        private final int retryCount;
+
+        TopicRedelivery(String listenerIdentifier, MotechEvent event, int retryCount) {
+            this.listenerIdentifier = listenerIdentifier;
+            this.event = event;
+            this.retryCount = retryCount;
+        }
+
+        @Override
+        public void run() {
+            EventListener listener = getEventListener(event, listenerIdentifier);
+            if (null != listener) {
+                handleTopicEvent(listener, event, retryCount);
+            } else {
+                LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", listenerIdentifier, event);
+            }
+        }
+
+        @Override
+        public void discard(RejectedExecutionException cause) {
+            LOGGER.error(String.format("Discarding topic event %s for listener %s. Local delivery was stopped.",
+                    event.toString(), listenerIdentifier), cause);
+            ServerEventRelay.this.discard(event, listenerIdentifier, cause);
+        }
+
+        @Override
+        public String toString() {
+            return "redelivery of " + event + " to " + listenerIdentifier;
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTimeUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the events from the event topic and hands them over to the {@link ServerEventRelay} on a pool of
+ * worker threads. The workers are striped by the event subject - all events with the same subject are handled
+ * by the same worker, in the order in which they were received, while events with unrelated subjects are handled
+ * in parallel. The JMS consumer thread is only blocked if the queue of the worker it hands the event to is full.
+ * If the number of workers is configured to 0, events are relayed on the consumer thread.
+ */
+@Component("topicEventDispatcher")
+public class TopicEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicEventDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
+    private ServerEventRelay eventRelay;
+    private MotechEventConfig motechEventConfig;
+
+    private ThreadPoolExecutor[] workers = new ThreadPoolExecutor[0];
+
+    @Autowired
+    public TopicEventDispatcher(ServerEventRelay eventRelay, MotechEventConfig motechEventConfig) {
+        this.eventRelay = eventRelay;
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        int workerCount = Math.max(0, motechEventConfig.getTopicWorkerCount());
+        int queueCapacity = Math.max(1, motechEventConfig.getTopicQueueCapacity());
+
+        workers = new ThreadPoolExecutor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(queueCapacity),
+                    new ThreadFactoryBuilder().setNameFormat("motech-topic-event-" + i).setDaemon(true).build(),
+                    new BlockingEnqueuePolicy());
+        }
+    }
+
+    /**
+     * Hands the event received from the event topic over to the worker responsible for its subject.
+     *
+     * @param event the event to relay
+     */
+    public void dispatch(MotechEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Invalid request to relay null event");
+        }
+
+        if (workers.length == 0) {
+            eventRelay.relayTopicEvent(event);
+        } else {
+            getWorker(event.getSubject()).execute(new TopicDelivery(event));
+        }
+    }
+
+    /**
+     * Returns the number of received events waiting to be handled.
+     *
+     * @return the number of waiting events
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            depth += worker.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the time the oldest of the waiting events has been waiting for, in milliseconds.
+     *
+     * @return the lag of the topic workers, 0 if no events are waiting
+     */
+    public long getLag() {
+        long now = DateTimeUtils.currentTimeMillis();
+        long lag = 0;
+
+        for (ThreadPoolExecutor worker : workers) {
+            Runnable head = worker.getQueue().peek();
+            if (head instanceof TopicDelivery) {
+                lag = Math.max(lag, now - ((TopicDelivery) head).receivedAt);
+            }
+        }
+
+        return lag;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        for (ThreadPoolExecutor worker : workers) {
+            try {
+                if (!worker.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Dropping {} topic events not handled before shutdown", worker.getQueue().size());
+                    worker.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    private ThreadPoolExecutor getWorker(String subject) {
+        return workers[(subject.hashCode() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    private class TopicDelivery implements Runnable {
+        private final MotechEvent event;
+        private final long receivedAt = DateTimeUtils.currentTimeMillis();
+
+        TopicDelivery(MotechEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            try {
+                eventRelay.relayTopicEvent(event);
+            } catch (RuntimeException e) {
+                LOGGER.error("Error while relaying topic event {}", event, e);
+            }
+        }
+    }
+
+    /**
+     * Blocks the thread handing over an event until there is room in the worker queue. Since a single consumer
+     * thread hands over the events, this keeps the order of events with the same subject.
+     */
+    private static class BlockingEnqueuePolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable delivery, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                LOGGER.warn("Topic event dispatcher is shut down, dropping {}", delivery);
+                return;
+            }
+            try {
+                executor.getQueue().put(delivery);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while waiting for room in the topic event queue, dropping {}", delivery);
+            }
+        }
+    }
+}
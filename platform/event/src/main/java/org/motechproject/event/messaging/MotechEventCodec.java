@@ -0,0 +1,45 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Encodes <code>MotechEvent</code>s into the bytes carried by JMS messages and decodes them back. Codecs are
+ * identified by their names, which are sent along with the encoded events, so that the receiving end knows
+ * which codec to use. Events which are not supported by a codec are sent using Java serialization.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Returns the name of this codec, unique among all codecs.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Checks whether the given event can be encoded by this codec, meaning all of its parameters are
+     * of supported types.
+     *
+     * @param event the event to check
+     * @return true if the event can be encoded, false otherwise
+     */
+    boolean supports(MotechEvent event);
+
+    /**
+     * Encodes the given event.
+     *
+     * @param event the event to encode
+     * @return the encoded event
+     * @throws IllegalArgumentException if the event is not supported by this codec
+     */
+    byte[] encode(MotechEvent event);
+
+    /**
+     * Decodes the event from the given bytes.
+     *
+     * @param data the encoded event
+     * @return the decoded event
+     * @throws IllegalArgumentException if the data is not a valid encoded event
+     */
+    MotechEvent decode(byte[] data);
+}
@@ -1,20 +1,62 @@
 package org.motechproject.event.messaging;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Accesses the <code>MotechEventConfig</code> variables.
  */
 @Component
 public class MotechEventConfig {
 
+    /**
+     * The name of the message codec meaning events are sent using Java serialization.
+     */
+    public static final String SERIALIZATION_CODEC = "serialization";
+
+    private static final String LOCAL_DELIVERY_MODE = "local";
+    private static final long MILLIS_PER_SEC = 1000L;
+
     @Value("${motech.message.max.redelivery.count:3}")
     private int messageMaxRedeliveryCount;
 
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.message.batch.fanout:true}")
+    private boolean batchFanOut;
+
+    @Value("${motech.message.compact.fanout:false}")
+    private boolean compactFanOut;
+
+    @Value("${motech.message.delivery.mode:jms}")
+    private String deliveryMode;
+
+    @Value("${motech.message.durable.subjects:}")
+    private String durableSubjects;
+
+    @Value("${motech.message.local.pool.size:10}")
+    private int localPoolSize;
+
+    @Value("${motech.message.local.queue.capacity:10000}")
+    private int localQueueCapacity;
+
+    @Value("${motech.message.topic.workers:4}")
+    private int topicWorkerCount;
+
+    @Value("${motech.message.topic.queue.capacity:1000}")
+    private int topicQueueCapacity;
+
+    @Value("${motech.message.deadletter.capacity:1000}")
+    private int deadLetterCapacity;
+
+    @Value("${motech.message.codec:" + SERIALIZATION_CODEC + "}")
+    private String messageCodec;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +78,126 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns whether the copies of an event sent to its listeners should be sent in a single
+     * JMS transaction, instead of one by one.
+     *
+     * @return true if the event copies should be sent in a batch
+     */
+    public boolean isBatchFanOut() {
+        return batchFanOut;
+    }
+
+    /**
+     * Returns whether an event should be sent as a single message carrying the list of its listeners, instead
+     * of a separate message per listener. The receiving instance hands the event to each of the listeners.
+     * All Motech instances in the cluster must support this mode before it gets enabled.
+     *
+     * @return true if the event should be sent as a single message
+     */
+    public boolean isCompactFanOut() {
+        return compactFanOut;
+    }
+
+    /**
+     * Returns the delay (in milliseconds) before the given redelivery of a message, computed from
+     * the {@link #getMessageRedeliveryDelay()} as described there.
+     *
+     * @param redeliveryCount the number of the redelivery, starting with 1
+     * @return the redelivery delay in milliseconds
+     */
+    public long getRedeliveryDelayMillis(int redeliveryCount) {
+        Double delay = getMessageRedeliveryDelay() * MILLIS_PER_SEC * Math.pow(2, redeliveryCount - 1);
+        return delay.longValue();
+    }
+
+    /**
+     * Returns whether events sent to the queue should be delivered to the listeners of this Motech instance
+     * directly, using an in-memory executor, instead of going through the JMS broker. Events with subjects
+     * configured as durable, as well as broadcast events, are always sent through the broker.
+     *
+     * @return true if events should be delivered locally
+     */
+    public boolean isLocalDelivery() {
+        return LOCAL_DELIVERY_MODE.equalsIgnoreCase(StringUtils.trim(deliveryMode));
+    }
+
+    /**
+     * Returns the subjects of events which should always be sent through the JMS broker, even if local delivery
+     * is enabled. Subjects ending with a wildcard ('*') match all subjects starting with the given prefix.
+     *
+     * @return the list of durable subjects
+     */
+    public List<String> getDurableSubjects() {
+        List<String> subjects = new ArrayList<>();
+        for (String subject : StringUtils.split(StringUtils.defaultString(durableSubjects), ',')) {
+            if (StringUtils.isNotBlank(subject)) {
+                subjects.add(subject.trim());
+            }
+        }
+        return subjects;
+    }
+
+    /**
+     * Returns the number of threads used for delivering events locally.
+     *
+     * @return the size of the local delivery thread pool
+     */
+    public int getLocalPoolSize() {
+        return localPoolSize;
+    }
+
+    /**
+     * Returns the maximum number of events waiting for local delivery. Once it is reached, the thread
+     * sending the event delivers it itself.
+     *
+     * @return the capacity of the local delivery queue
+     */
+    public int getLocalQueueCapacity() {
+        return localQueueCapacity;
+    }
+
+    /**
+     * Returns the number of threads handling events received from the event topic. Events with the same subject
+     * are always handled by the same thread, in the order they were received. If it is 0, the events are handled
+     * by the thread receiving them.
+     *
+     * @return the number of topic worker threads
+     */
+    public int getTopicWorkerCount() {
+        return topicWorkerCount;
+    }
+
+    /**
+     * Returns the maximum number of events received from the event topic waiting for each of the topic worker
+     * threads. Once it is reached, receiving events is suspended until there is room in the queue.
+     *
+     * @return the capacity of a topic worker queue
+     */
+    public int getTopicQueueCapacity() {
+        return topicQueueCapacity;
+    }
+
+    /**
+     * Returns the maximum number of discarded events kept in the
+     * {@link org.motechproject.event.listener.DeadLetterStore}. If it is 0, discarded events are not kept.
+     *
+     * @return the capacity of the dead letter store
+     */
+    public int getDeadLetterCapacity() {
+        return deadLetterCapacity;
+    }
+
+    /**
+     * Returns the name of the codec used for encoding events sent to the broker, see
+     * {@link org.motechproject.event.messaging.MotechEventCodec}. Events are sent using Java serialization if it is
+     * {@link #SERIALIZATION_CODEC} or if the codec does not support the event. Messages are always decoded using the
+     * codec they were encoded with, regardless of this setting.
+     *
+     * @return the name of the codec
+     */
+    public String getMessageCodec() {
+        return StringUtils.trim(messageCodec);
+    }
 }
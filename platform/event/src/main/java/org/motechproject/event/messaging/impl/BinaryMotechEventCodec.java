@@ -0,0 +1,520 @@
+package org.motechproject.event.messaging.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact binary codec for <code>MotechEvent</code>s. Every parameter value is written with a one byte type tag,
+ * followed by its value. Supported are strings, characters, booleans, the primitive wrappers, big decimals and
+ * integers, UUIDs, <code>java.util.Date</code>, Joda <code>DateTime</code> (ISO chronology), <code>LocalDate</code>
+ * and <code>LocalDateTime</code>, as well as lists, sets and maps of those. Lists are decoded as
+ * <code>ArrayList</code>, sets as <code>LinkedHashSet</code> and maps as <code>LinkedHashMap</code>, the top level
+ * parameter map as a <code>HashMap</code>. Events carrying values of any other type are not supported.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    public static final String NAME = "binary";
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_DEPTH = 32;
+
+    private static final int FLAG_INVALID = 1;
+    private static final int FLAG_DISCARDED = 1 << 1;
+    private static final int FLAG_BROADCAST = 1 << 2;
+    private static final int FLAG_ID = 1 << 3;
+    private static final int FLAG_PUBLISH_TIME = 1 << 4;
+
+    private static final ValueType[] VALUE_TYPES = ValueType.values();
+    private static final Map<Class<?>, ValueType> SCALAR_TYPES = new HashMap<>();
+
+    static {
+        SCALAR_TYPES.put(String.class, ValueType.STRING);
+        SCALAR_TYPES.put(Integer.class, ValueType.INTEGER);
+        SCALAR_TYPES.put(Long.class, ValueType.LONG);
+        SCALAR_TYPES.put(Double.class, ValueType.DOUBLE);
+        SCALAR_TYPES.put(Float.class, ValueType.FLOAT);
+        SCALAR_TYPES.put(Short.class, ValueType.SHORT);
+        SCALAR_TYPES.put(Byte.class, ValueType.BYTE);
+        SCALAR_TYPES.put(Boolean.class, ValueType.BOOLEAN);
+        SCALAR_TYPES.put(Character.class, ValueType.CHARACTER);
+        SCALAR_TYPES.put(BigDecimal.class, ValueType.BIG_DECIMAL);
+        SCALAR_TYPES.put(BigInteger.class, ValueType.BIG_INTEGER);
+        SCALAR_TYPES.put(UUID.class, ValueType.UUID_VALUE);
+        SCALAR_TYPES.put(Date.class, ValueType.DATE);
+        SCALAR_TYPES.put(LocalDate.class, ValueType.LOCAL_DATE);
+        SCALAR_TYPES.put(LocalDateTime.class, ValueType.LOCAL_DATE_TIME);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(MotechEvent event) {
+        return event != null && event.getClass() == MotechEvent.class &&
+                isSupported(event.getMessageDestinations(), 0) && isSupported(event.getParameters(), 0);
+    }
+
+    @Override
+    public byte[] encode(MotechEvent event) {
+        if (!supports(event)) {
+            throw new IllegalArgumentException("Event " + event + " contains values not supported by the " +
+                    NAME + " codec");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(getFlags(event));
+
+            if (event.getId() != null) {
+                out.writeLong(event.getId().getMostSignificantBits());
+                out.writeLong(event.getId().getLeastSignificantBits());
+            }
+            if (event.getPublishTime() != null) {
+                out.writeLong(event.getPublishTime());
+            }
+
+            writeVarInt(out, event.getMessageRedeliveryCount());
+            writeString(out, event.getSubject());
+            writeValue(out, event.getMessageDestination());
+            writeValue(out, event.getMessageDestinations());
+            writeValue(out, event.getParameters());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode event " + event, e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported format version: " + version);
+            }
+
+            int flags = in.readByte();
+            UUID id = ((flags & FLAG_ID) != 0) ? new UUID(in.readLong(), in.readLong()) : null;
+            Long publishTime = ((flags & FLAG_PUBLISH_TIME) != 0) ? in.readLong() : null;
+            int redeliveryCount = readVarInt(in);
+            String subject = readString(in);
+            String messageDestination = (String) readValue(in);
+            List<String> messageDestinations = (List<String>) readValue(in);
+            Map<String, Object> parameters = (Map<String, Object>) readValue(in);
+
+            MotechEvent event = new MotechEvent(subject, (parameters == null) ? null : new HashMap<>(parameters));
+            event.setId(id);
+            event.setPublishTime(publishTime);
+            event.setInvalid((flags & FLAG_INVALID) != 0);
+            event.setDiscarded((flags & FLAG_DISCARDED) != 0);
+            event.setBroadcast((flags & FLAG_BROADCAST) != 0);
+            event.setMessageRedeliveryCount(redeliveryCount);
+            event.setMessageDestination(messageDestination);
+            event.setMessageDestinations(messageDestinations);
+
+            return event;
+        } catch (IOException | ClassCastException e) {
+            throw new IllegalArgumentException("Unable to decode event", e);
+        }
+    }
+
+    private static int getFlags(MotechEvent event) {
+        int flags = 0;
+        flags |= event.isInvalid() ? FLAG_INVALID : 0;
+        flags |= event.isDiscarded() ? FLAG_DISCARDED : 0;
+        flags |= event.isBroadcast() ? FLAG_BROADCAST : 0;
+        flags |= (event.getId() != null) ? FLAG_ID : 0;
+        flags |= (event.getPublishTime() != null) ? FLAG_PUBLISH_TIME : 0;
+        return flags;
+    }
+
+    private static boolean isSupported(Object value, int depth) {
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+
+        ValueType type = getType(value);
+        if (type == null) {
+            return false;
+        } else if (type == ValueType.DATE_TIME) {
+            return ((DateTime) value).getChronology() instanceof ISOChronology;
+        } else if (type == ValueType.LIST || type == ValueType.SET) {
+            for (Object element : (Collection) value) {
+                if (!isSupported(element, depth + 1)) {
+                    return false;
+                }
+            }
+        } else if (type == ValueType.MAP) {
+            for (Map.Entry entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isSupported(entry.getKey(), depth + 1) || !isSupported(entry.getValue(), depth + 1)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static ValueType getType(Object value) {
+        if (value == null) {
+            return ValueType.NULL;
+        }
+
+        ValueType type = SCALAR_TYPES.get(value.getClass());
+        if (type != null) {
+            return type;
+        } else if (value instanceof DateTime) {
+            return ValueType.DATE_TIME;
+        } else if (value instanceof List) {
+            return ValueType.LIST;
+        } else if (value instanceof Set) {
+            return ValueType.SET;
+        } else if (value instanceof Map) {
+            return ValueType.MAP;
+        }
+
+        return null;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        ValueType type = getType(value);
+        if (type == null) {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+        }
+
+        out.writeByte(type.ordinal());
+        type.write(out, value);
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readByte();
+        if (tag < 0 || tag >= VALUE_TYPES.length) {
+            throw new IllegalArgumentException("Unknown value type: " + tag);
+        }
+
+        return VALUE_TYPES[tag].read(in);
+    }
+
+    private static void writeElements(DataOutputStream out, Collection<?> collection) throws IOException {
+        writeVarInt(out, collection.size());
+        for (Object element : collection) {
+            writeValue(out, element);
+        }
+    }
+
+    private static Collection<Object> readElements(DataInputStream in, Collection<Object> collection) throws IOException {
+        int size = readVarInt(in);
+        for (int i = 0; i < size; i++) {
+            collection.add(readValue(in));
+        }
+        return collection;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed variable length integer");
+            }
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The types of values supported by the codec. The ordinal of a type is used as its tag in the encoded data,
+     * so new types must only be added at the end.
+     */
+    private enum ValueType {
+        NULL {
+            @Override
+            void write(DataOutputStream out, Object value) {
+                // the tag is all there is to write
+            }
+
+            @Override
+            Object read(DataInputStream in) {
+                return null;
+            }
+        },
+        STRING {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, (String) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return readString(in);
+            }
+        },
+        INTEGER {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeInt((Integer) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readInt();
+            }
+        },
+        LONG {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong((Long) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readLong();
+            }
+        },
+        DOUBLE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeDouble((Double) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readDouble();
+            }
+        },
+        FLOAT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeFloat((Float) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readFloat();
+            }
+        },
+        SHORT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeShort((Short) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readShort();
+            }
+        },
+        BYTE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readByte();
+            }
+        },
+        BOOLEAN {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readBoolean();
+            }
+        },
+        CHARACTER {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeChar((Character) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return in.readChar();
+            }
+        },
+        BIG_DECIMAL {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, value.toString());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return new BigDecimal(readString(in));
+            }
+        },
+        BIG_INTEGER {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, value.toString());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return new BigInteger(readString(in));
+            }
+        },
+        UUID_VALUE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((UUID) value).getMostSignificantBits());
+                out.writeLong(((UUID) value).getLeastSignificantBits());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return new UUID(in.readLong(), in.readLong());
+            }
+        },
+        DATE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((Date) value).getTime());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return new Date(in.readLong());
+            }
+        },
+        DATE_TIME {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((DateTime) value).getMillis());
+                writeString(out, ((DateTime) value).getZone().getID());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                long millis = in.readLong();
+                return new DateTime(millis, DateTimeZone.forID(readString(in)));
+            }
+        },
+        LOCAL_DATE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, value.toString());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return LocalDate.parse(readString(in));
+            }
+        },
+        LOCAL_DATE_TIME {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, value.toString());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return LocalDateTime.parse(readString(in));
+            }
+        },
+        LIST {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeElements(out, (Collection<?>) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return readElements(in, new ArrayList<>());
+            }
+        },
+        SET {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeElements(out, (Collection<?>) value);
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                return readElements(in, new LinkedHashSet<>());
+            }
+        },
+        MAP {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarInt(out, map.size());
+                for (Map.Entry entry : map.entrySet()) {
+                    writeValue(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                int size = readVarInt(in);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+        };
+
+        abstract void write(DataOutputStream out, Object value) throws IOException;
+
+        abstract Object read(DataInputStream in) throws IOException;
+    }
+}
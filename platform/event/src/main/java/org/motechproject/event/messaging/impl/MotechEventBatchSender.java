@@ -0,0 +1,93 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.Collection;
+
+/**
+ * Sends a group of <code>MotechEvent</code>s to the event queue using a single transacted JMS session, which is
+ * committed once after all the events were sent. This replaces a broker round-trip per event with one per batch,
+ * which matters when an event is split into many copies, one for each of its listeners. The events are passed through
+ * the {@link MotechEventTransformer} and converted using the same message converter as the events sent through the
+ * {@link org.motechproject.event.messaging.OutboundEventGateway}.
+ */
+public class MotechEventBatchSender {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechEventBatchSender.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final Destination destination;
+    private final MotechEventTransformer eventTransformer;
+    private final MessageConverter messageConverter;
+    private final JmsTemplate jmsTemplate;
+
+    public MotechEventBatchSender(ConnectionFactory connectionFactory, Destination destination,
+                                  MotechEventTransformer eventTransformer, MessageConverter messageConverter) {
+        this.connectionFactory = connectionFactory;
+        this.destination = destination;
+        this.eventTransformer = eventTransformer;
+        this.messageConverter = messageConverter;
+
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
+    }
+
+    /**
+     * Sends all the given events to the event queue. Either all of them are sent or, in case of an error,
+     * none of them.
+     *
+     * @param events the events to be sent
+     * @throws org.springframework.jms.JmsException if sending the events failed
+     */
+    public void sendEventMessages(final Collection<MotechEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        jmsTemplate.execute(new SessionCallback<Void>() {
+            @Override
+            public Void doInJms(Session session) throws JMSException {
+                MessageProducer producer = session.createProducer(destination);
+                try {
+                    for (MotechEvent event : events) {
+                        producer.send(messageConverter.toMessage(eventTransformer.transform(event), session));
+                    }
+                    commitIfLocallyTransacted(session);
+                } catch (JMSException | RuntimeException e) {
+                    LOGGER.error("Failed to send a batch of {} events, rolling back", events.size());
+                    rollbackIfLocallyTransacted(session);
+                    throw e;
+                } finally {
+                    JmsUtils.closeMessageProducer(producer);
+                }
+                return null;
+            }
+        });
+    }
+
+    private void commitIfLocallyTransacted(Session session) throws JMSException {
+        // if the session takes part in an outer transaction (e.g. the one of the message listener container),
+        // the commit will happen together with that transaction
+        if (!ConnectionFactoryUtils.isSessionTransactional(session, connectionFactory)) {
+            JmsUtils.commitIfNecessary(session);
+        }
+    }
+
+    private void rollbackIfLocallyTransacted(Session session) throws JMSException {
+        if (!ConnectionFactoryUtils.isSessionTransactional(session, connectionFactory)) {
+            JmsUtils.rollbackIfNecessary(session);
+        }
+    }
+}
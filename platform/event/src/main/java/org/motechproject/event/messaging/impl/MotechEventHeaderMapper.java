@@ -11,6 +11,7 @@ import org.springframework.integration.jms.DefaultJmsHeaderMapper;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.ObjectMessage;
 
 /**
  * Sets the <code>AMQ_SCHEDULED_DELAY</code> header of the JMS message being sent based on the <code>MotechEventConfig</code>.
@@ -20,7 +21,6 @@ import javax.jms.Message;
 public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
 
     private static final Logger LOGGER = Logger.getLogger(MotechEventHeaderMapper.class);
-    private static final long MILLIS_PER_SEC = 1000L;
 
     @Autowired
     private MotechEventConfig motechEventConfig;
@@ -33,17 +33,26 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
         try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
-
-            if (motechEvent.isInvalid()) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
-                Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
-                        ((Math.pow(2, redeliveryCount - 1)));
-                LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
-                message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
+            if (message instanceof ObjectMessage) {
+                MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
+
+                if (motechEvent.isInvalid()) {
+                    setDelay(message, motechEvent.getMessageRedeliveryCount(), motechEvent.toString());
+                }
+            } else if (message.propertyExists(MotechEventMessageConverter.INVALID_PROPERTY) &&
+                    message.getBooleanProperty(MotechEventMessageConverter.INVALID_PROPERTY)) {
+                // events encoded by a codec carry their redelivery information as message properties
+                int redeliveryCount = message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY);
+                setDelay(message, redeliveryCount, "event with redelivery count " + redeliveryCount);
             }
         } catch (JMSException e) {
             LOGGER.error("Failed to set header", e);
         }
     }
+
+    private void setDelay(Message message, int redeliveryCount, String description) throws JMSException {
+        long delay = motechEventConfig.getRedeliveryDelayMillis(redeliveryCount);
+        LOGGER.debug("Redelivering " + description + " after " + delay + " millis.");
+        message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay);
+    }
 }
@@ -0,0 +1,110 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts <code>MotechEvent</code>s to JMS messages and back. If a codec is configured in the
+ * <code>MotechEventConfig</code> and it supports the event, the event is encoded by it and sent as a
+ * <code>BytesMessage</code>, with the name of the codec and the redelivery information stored as message properties.
+ * Otherwise the event is sent as an <code>ObjectMessage</code>, using Java serialization. Incoming messages are
+ * decoded based on their codec property, so both formats can be received regardless of the configuration, which
+ * allows running Motech instances with different settings in the same cluster.
+ */
+public class MotechEventMessageConverter extends SimpleMessageConverter {
+
+    /**
+     * The name of the message property holding the name of the codec used for encoding the event.
+     */
+    public static final String CODEC_PROPERTY = "motech_event_codec";
+
+    /**
+     * The name of the message property telling whether the event carried by the message is invalid.
+     */
+    public static final String INVALID_PROPERTY = "motech_event_invalid";
+
+    /**
+     * The name of the message property holding the redelivery count of the event carried by the message.
+     */
+    public static final String REDELIVERY_COUNT_PROPERTY = "motech_event_redelivery_count";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechEventMessageConverter.class);
+
+    private final Map<String, MotechEventCodec> codecs = new HashMap<>();
+
+    @Autowired
+    private MotechEventConfig motechEventConfig;
+
+    public MotechEventMessageConverter(List<MotechEventCodec> codecs) {
+        for (MotechEventCodec codec : codecs) {
+            this.codecs.put(codec.getName(), codec);
+        }
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        MotechEventCodec codec = getEncodingCodec();
+
+        if (object instanceof MotechEvent && codec != null && codec.supports((MotechEvent) object)) {
+            MotechEvent event = (MotechEvent) object;
+
+            BytesMessage message = session.createBytesMessage();
+            message.writeBytes(codec.encode(event));
+            message.setStringProperty(CODEC_PROPERTY, codec.getName());
+            message.setBooleanProperty(INVALID_PROPERTY, event.isInvalid());
+            message.setIntProperty(REDELIVERY_COUNT_PROPERTY, event.getMessageRedeliveryCount());
+
+            return message;
+        }
+
+        return super.toMessage(object, session);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        if (message instanceof BytesMessage && message.propertyExists(CODEC_PROPERTY)) {
+            String codecName = message.getStringProperty(CODEC_PROPERTY);
+            MotechEventCodec codec = codecs.get(codecName);
+            if (codec == null) {
+                throw new MessageConversionException("No codec named " + codecName + " available for message " +
+                        message.getJMSMessageID());
+            }
+
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] data = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(data);
+
+            return codec.decode(data);
+        }
+
+        return super.fromMessage(message);
+    }
+
+    private MotechEventCodec getEncodingCodec() {
+        String codecName = motechEventConfig.getMessageCodec();
+        if (StringUtils.isBlank(codecName) || MotechEventConfig.SERIALIZATION_CODEC.equals(codecName)) {
+            return null;
+        }
+
+        MotechEventCodec codec = codecs.get(codecName);
+        if (codec == null) {
+            LOGGER.warn("No codec named {} available, using Java serialization", codecName);
+        }
+        return codec;
+    }
+}
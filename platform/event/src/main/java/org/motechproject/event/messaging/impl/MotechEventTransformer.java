@@ -5,13 +5,14 @@ import org.motechproject.event.MotechEvent;
 import java.util.UUID;
 
 /**
- * Transforms <code>MotechEvent</code> by settings its UUID.
+ * Transforms <code>MotechEvent</code> by settings its UUID and publish time.
  */
 public class MotechEventTransformer {
 
     /**
      * Updates the motechEvent's {@code UUID} with a random value
-     * if it is null, otherwise it does not change it.
+     * if it is null, otherwise it does not change it. The publish time
+     * is always set to the current time.
      *
      * @param motechEvent the motechEvent to be updated
      * @return the motechEvent after being updated
@@ -21,6 +22,7 @@ public class MotechEventTransformer {
         if (motechEvent.getId() == null) {
             motechEvent.setId(UUID.randomUUID());
         }
+        motechEvent.setPublishTime(System.currentTimeMillis());
         return motechEvent;
     }
 }
@@ -0,0 +1,37 @@
+package org.motechproject.event.metrics;
+
+import javax.management.MXBean;
+import java.util.List;
+
+/**
+ * The <code>EventMetricsService</code> provides the throughput, latency and failure metrics of the events handled
+ * by this Motech instance, per event subject and per listener. It is also registered in the platform MBean server
+ * under the {@link #OBJECT_NAME} name.
+ */
+@MXBean
+public interface EventMetricsService {
+
+    /**
+     * The JMX object name of the event metrics.
+     */
+    String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    /**
+     * Returns the metrics of all event subjects seen since the start or the last reset.
+     *
+     * @return the list of subject metrics
+     */
+    List<SubjectMetrics> getSubjectMetrics();
+
+    /**
+     * Returns the metrics of all listeners which handled events since the start or the last reset.
+     *
+     * @return the list of listener metrics
+     */
+    List<ListenerMetrics> getListenerMetrics();
+
+    /**
+     * Clears all the metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,55 @@
+package org.motechproject.event.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A point in time view of a histogram of durations, in milliseconds. The value of bucket <code>i</code> is the number
+ * of recorded durations lower or equal to <code>bucketBounds[i]</code> and greater than the previous bound. The last
+ * bucket counts the durations greater than all the bounds, so there is one more count than there are bounds.
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final long total;
+    private final long max;
+    private final long[] bucketBounds;
+    private final long[] bucketCounts;
+
+    public HistogramSnapshot(long count, long total, long max, long[] bucketBounds, long[] bucketCounts) {
+        this.count = count;
+        this.total = total;
+        this.max = max;
+        this.bucketBounds = Arrays.copyOf(bucketBounds, bucketBounds.length);
+        this.bucketCounts = Arrays.copyOf(bucketCounts, bucketCounts.length);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    public long[] getBucketBounds() {
+        return Arrays.copyOf(bucketBounds, bucketBounds.length);
+    }
+
+    public long[] getBucketCounts() {
+        return Arrays.copyOf(bucketCounts, bucketCounts.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HistogramSnapshot{count=%d, mean=%.3f, max=%d, buckets=%s}",
+                count, getMean(), max, Arrays.toString(bucketCounts));
+    }
+}
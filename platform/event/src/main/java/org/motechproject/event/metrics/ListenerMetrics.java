@@ -0,0 +1,35 @@
+package org.motechproject.event.metrics;
+
+/**
+ * Metrics of a single event listener, identified by its identifier.
+ */
+public class ListenerMetrics {
+
+    private final String listenerIdentifier;
+    private final long failureCount;
+    private final HistogramSnapshot executionTime;
+
+    public ListenerMetrics(String listenerIdentifier, long failureCount, HistogramSnapshot executionTime) {
+        this.listenerIdentifier = listenerIdentifier;
+        this.failureCount = failureCount;
+        this.executionTime = executionTime;
+    }
+
+    public String getListenerIdentifier() {
+        return listenerIdentifier;
+    }
+
+    /**
+     * @return the number of times the listener threw an exception while handling an event
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return the time the listener spent handling events, including the failed attempts
+     */
+    public HistogramSnapshot getExecutionTime() {
+        return executionTime;
+    }
+}
@@ -0,0 +1,63 @@
+package org.motechproject.event.metrics;
+
+/**
+ * Metrics of the events with a given subject handled by this Motech instance.
+ */
+public class SubjectMetrics {
+
+    private final String subject;
+    private final long publishedCount;
+    private final long receivedCount;
+    private final long retryCount;
+    private final long discardCount;
+    private final HistogramSnapshot latency;
+
+    public SubjectMetrics(String subject, long publishedCount, long receivedCount, long retryCount, long discardCount,
+                          HistogramSnapshot latency) {
+        this.subject = subject;
+        this.publishedCount = publishedCount;
+        this.receivedCount = receivedCount;
+        this.retryCount = retryCount;
+        this.discardCount = discardCount;
+        this.latency = latency;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the number of events published by this instance
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * @return the number of events received by this instance, from the broker or delivered locally
+     */
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * @return the number of scheduled redeliveries of events which failed to be handled
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return the number of events discarded after reaching the maximum redelivery count
+     */
+    public long getDiscardCount() {
+        return discardCount;
+    }
+
+    /**
+     * @return the time between publishing the events and receiving them for handling
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+}
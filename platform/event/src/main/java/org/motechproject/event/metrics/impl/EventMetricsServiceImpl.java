@@ -0,0 +1,181 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the event metrics in memory, using lock-free counters. The number of tracked subjects and listeners
+ * is bounded, once the limit is reached the metrics of new ones are collected under {@link #OTHER_KEY}.
+ */
+@Component("eventMetricsService")
+public class EventMetricsServiceImpl implements EventMetricsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventMetricsServiceImpl.class);
+
+    static final String OTHER_KEY = "*";
+    static final int MAX_TRACKED_KEYS = 5000;
+
+    private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListenerCounters> listeners = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the event metrics in the MBean server", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the event metrics from the MBean server", e);
+        }
+    }
+
+    /**
+     * Records an event published by this instance.
+     *
+     * @param subject the subject of the event
+     */
+    public void recordPublished(String subject) {
+        getSubjectCounters(subject).published.increment();
+    }
+
+    /**
+     * Records an event received for handling.
+     *
+     * @param subject the subject of the event
+     * @param publishTime the time the event was published, in milliseconds, null if unknown
+     */
+    public void recordReceived(String subject, Long publishTime) {
+        SubjectCounters counters = getSubjectCounters(subject);
+        counters.received.increment();
+        if (publishTime != null) {
+            counters.latency.record(System.currentTimeMillis() - publishTime);
+        }
+    }
+
+    /**
+     * Records a scheduled redelivery of an event.
+     *
+     * @param subject the subject of the event
+     */
+    public void recordRetry(String subject) {
+        getSubjectCounters(subject).retries.increment();
+    }
+
+    /**
+     * Records a discarded event.
+     *
+     * @param subject the subject of the event
+     */
+    public void recordDiscard(String subject) {
+        getSubjectCounters(subject).discards.increment();
+    }
+
+    /**
+     * Records the handling of an event by a listener.
+     *
+     * @param listenerIdentifier the identifier of the listener
+     * @param millis the time the handling took, in milliseconds
+     * @param failed true if the listener threw an exception
+     */
+    public void recordExecution(String listenerIdentifier, long millis, boolean failed) {
+        ListenerCounters counters = getListenerCounters(listenerIdentifier);
+        counters.executionTime.record(millis);
+        if (failed) {
+            counters.failures.increment();
+        }
+    }
+
+    @Override
+    public List<SubjectMetrics> getSubjectMetrics() {
+        List<SubjectMetrics> metrics = new ArrayList<>(subjects.size());
+        for (Map.Entry<String, SubjectCounters> entry : subjects.entrySet()) {
+            SubjectCounters counters = entry.getValue();
+            metrics.add(new SubjectMetrics(entry.getKey(), counters.published.sum(), counters.received.sum(),
+                    counters.retries.sum(), counters.discards.sum(), counters.latency.snapshot()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public List<ListenerMetrics> getListenerMetrics() {
+        List<ListenerMetrics> metrics = new ArrayList<>(listeners.size());
+        for (Map.Entry<String, ListenerCounters> entry : listeners.entrySet()) {
+            ListenerCounters counters = entry.getValue();
+            metrics.add(new ListenerMetrics(entry.getKey(), counters.failures.sum(), counters.executionTime.snapshot()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void reset() {
+        subjects.clear();
+        listeners.clear();
+    }
+
+    private SubjectCounters getSubjectCounters(String subject) {
+        SubjectCounters counters = subjects.get(subject);
+        if (counters == null) {
+            String key = (subjects.size() < MAX_TRACKED_KEYS) ? subject : OTHER_KEY;
+            SubjectCounters created = new SubjectCounters();
+            SubjectCounters existing = subjects.putIfAbsent(key, created);
+            counters = (existing == null) ? created : existing;
+        }
+        return counters;
+    }
+
+    private ListenerCounters getListenerCounters(String listenerIdentifier) {
+        ListenerCounters counters = listeners.get(listenerIdentifier);
+        if (counters == null) {
+            String key = (listeners.size() < MAX_TRACKED_KEYS) ? listenerIdentifier : OTHER_KEY;
+            ListenerCounters created = new ListenerCounters();
+            ListenerCounters existing = listeners.putIfAbsent(key, created);
+            counters = (existing == null) ? created : existing;
+        }
+        return counters;
+    }
+
+    private static class SubjectCounters {
+        private final LongAdder published = new LongAdder();
+        private final LongAdder received = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder discards = new LongAdder();
+        private final Histogram latency = new Histogram();
+    }
+
+    private static class ListenerCounters {
+        private final LongAdder failures = new LongAdder();
+        private final Histogram executionTime = new Histogram();
+    }
+}
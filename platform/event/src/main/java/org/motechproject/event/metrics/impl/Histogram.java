@@ -0,0 +1,56 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.HistogramSnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in milliseconds, with fixed bucket bounds. Recording is lock-free, so it can be done
+ * on the hot path of event handling.
+ */
+class Histogram {
+
+    static final long[] BUCKET_BOUNDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 60000};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long millis) {
+        long value = Math.max(0, millis);
+
+        buckets[bucketIndex(value)].increment();
+        count.increment();
+        total.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    HistogramSnapshot snapshot() {
+        long[] bucketCounts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            bucketCounts[i] = buckets[i].sum();
+        }
+        return new HistogramSnapshot(count.sum(), total.sum(), max.get(), BUCKET_BOUNDS, bucketCounts);
+    }
+
+    private static int bucketIndex(long value) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (value <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+}
@@ -249,6 +249,60 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void testListenersReturnedBeforeRegistrationAreNotModified() {
+        EventListener sel = new SampleEventListener();
+        registry.registerListener(sel, "org.motechproject.server.someevent");
+
+        Set<EventListener> el = registry.getListeners("org.motechproject.server.someevent");
+        assertEquals(1, el.size());
+
+        registry.registerListener(new FooEventListener(), "org.motechproject.server.*");
+
+        assertEquals(1, el.size());
+        assertEquals(2, registry.getListeners("org.motechproject.server.someevent").size());
+    }
+
+    @Test
+    public void testLookupMatchesTreeForManySubjects() {
+        EventListenerTree referenceTree = new EventListenerTree();
+
+        for (int i = 0; i < 10000; i++) {
+            EventListener listener = new NamedEventListener("listener" + i);
+            String subject = (i % 10 == 0) ? String.format("org.motechproject.module%d.*", i % 100) :
+                    String.format("org.motechproject.module%d.event%d", i % 100, i);
+
+            registry.registerListener(listener, subject);
+            referenceTree.addListener(listener, subject);
+        }
+
+        for (int i = 0; i < 10000; i += 7) {
+            String subject = String.format("org.motechproject.module%d.event%d", i % 100, i);
+
+            // twice, the second lookup is served from the cache
+            assertEquals(referenceTree.getListeners(subject), registry.getListeners(subject));
+            assertEquals(referenceTree.getListeners(subject), registry.getListeners(subject));
+            assertEquals(referenceTree.getListenerCount(subject), registry.getListenerCount(subject));
+        }
+    }
+
+    class NamedEventListener implements EventListener {
+        private final String identifier;
+
+        NamedEventListener(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
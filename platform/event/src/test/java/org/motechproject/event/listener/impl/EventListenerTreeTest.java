@@ -172,6 +172,50 @@ public class EventListenerTreeTest {
         assertEquals(1, tree.getListenerCount(SUBJECT_2));
     }
 
+    @Test
+    public void testCopyPathDoesNotAffectOriginal() {
+        tree.addListener(listener, SUBJECT_1);
+
+        EventListenerTree copy = tree.copyPath(WILDCARD_SUBJECT);
+        copy.addListener(new FooEventListener(), WILDCARD_SUBJECT);
+
+        assertEquals(1, tree.getListenerCount(SUBJECT_1));
+        assertEquals(0, tree.getListenerCount(SUBJECT_2));
+        assertEquals(2, copy.getListenerCount(SUBJECT_1));
+        assertEquals(1, copy.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void testCopyDoesNotAffectOriginal() {
+        tree.addListener(new FooEventListener(), SUBJECT_1);
+        tree.addListener(new BarEventListener(), WILDCARD_SUBJECT);
+
+        EventListenerTree copy = tree.copy();
+        copy.removeAllListeners("FooEventListener");
+
+        assertEquals(2, tree.getListenerCount(SUBJECT_1));
+        assertEquals(1, copy.getListenerCount(SUBJECT_1));
+    }
+
+    @Test
+    public void testCachedListenersInvalidatedOnChange() {
+        tree.addListener(listener, SUBJECT_1);
+        assertEquals(1, tree.getListeners(SUBJECT_1).size());
+
+        tree.addListener(new FooEventListener(), WILDCARD_SUBJECT);
+        assertEquals(2, tree.getListeners(SUBJECT_1).size());
+
+        tree.removeAllListeners("FooEventListener");
+        assertEquals(1, tree.getListeners(SUBJECT_1).size());
+    }
+
+    @Test
+    public void testSubjectWithTrailingSeparator() {
+        tree.addListener(listener, SUBJECT_0);
+
+        assertEquals(1, tree.getListeners(SUBJECT_0 + ".").size());
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
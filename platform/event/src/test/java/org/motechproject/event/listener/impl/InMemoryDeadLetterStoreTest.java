@@ -0,0 +1,70 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.DeadLetter;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InMemoryDeadLetterStoreTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private InMemoryDeadLetterStore deadLetterStore;
+
+    @Before
+    public void setUp() {
+        deadLetterStore = new InMemoryDeadLetterStore(motechEventConfig);
+    }
+
+    @Test
+    public void shouldKeepDiscardedEvents() {
+        when(motechEventConfig.getDeadLetterCapacity()).thenReturn(10);
+        MotechEvent event = new MotechEvent("subject");
+
+        deadLetterStore.add(event, "listener", new IllegalStateException("failure"));
+
+        List<DeadLetter> deadLetters = deadLetterStore.getDeadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals(event, deadLetters.get(0).getEvent());
+        assertEquals("listener", deadLetters.get(0).getListenerIdentifier());
+        assertTrue(deadLetters.get(0).getFailureMessage().contains("failure"));
+
+        deadLetterStore.clear();
+        assertEquals(0, deadLetterStore.size());
+    }
+
+    @Test
+    public void shouldDropOldestEventsWhenFull() {
+        when(motechEventConfig.getDeadLetterCapacity()).thenReturn(2);
+
+        for (int i = 0; i < 5; i++) {
+            deadLetterStore.add(new MotechEvent("subject" + i), "listener", new RuntimeException());
+        }
+
+        List<DeadLetter> deadLetters = deadLetterStore.getDeadLetters();
+        assertEquals(2, deadLetters.size());
+        assertEquals("subject3", deadLetters.get(0).getEvent().getSubject());
+        assertEquals("subject4", deadLetters.get(1).getEvent().getSubject());
+    }
+
+    @Test
+    public void shouldNotKeepEventsIfCapacityIsZero() {
+        when(motechEventConfig.getDeadLetterCapacity()).thenReturn(0);
+
+        deadLetterStore.add(new MotechEvent("subject"), "listener", new RuntimeException());
+
+        assertEquals(0, deadLetterStore.size());
+    }
+}
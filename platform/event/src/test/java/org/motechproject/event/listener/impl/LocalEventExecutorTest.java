@@ -0,0 +1,126 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalEventExecutorTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private LocalEventExecutor executor;
+
+    @Before
+    public void setUp() {
+        when(motechEventConfig.getLocalPoolSize()).thenReturn(1);
+        when(motechEventConfig.getLocalQueueCapacity()).thenReturn(1);
+
+        executor = new LocalEventExecutor(motechEventConfig);
+        executor.init();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldDiscardDeliveriesAfterShutdown() {
+        executor.shutdown();
+
+        TestDelivery delivery = new TestDelivery();
+        executor.execute(delivery);
+        executor.executeWithDelay(delivery, 0L);
+
+        assertEquals(0, delivery.runs.getCount());
+        assertEquals(2, delivery.discards);
+    }
+
+    @Test
+    public void shouldDiscardPendingRetriesOnShutdown() {
+        TestDelivery delivery = new TestDelivery();
+        executor.executeWithDelay(delivery, TimeUnit.HOURS.toMillis(1));
+
+        executor.shutdown();
+
+        assertEquals(1, delivery.discards);
+    }
+
+    @Test
+    public void shouldNotRunRetriesOnSchedulerThreadWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new BlockingDelivery(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // fills the queue
+        executor.execute(new TestDelivery());
+
+        TestDelivery retry = new TestDelivery();
+        executor.executeWithDelay(retry, 10L);
+        Thread.sleep(100L);
+
+        // the retry was delayed again instead of being run by the scheduler thread
+        assertEquals(1, retry.runs.getCount());
+
+        release.countDown();
+        assertTrue(retry.runs.await(5, TimeUnit.SECONDS));
+        assertTrue(retry.thread.getName().startsWith("motech-local-event-"));
+        assertFalse(retry.thread.getName().startsWith("motech-local-event-retry-"));
+    }
+
+    private static class TestDelivery implements LocalEventExecutor.Delivery {
+        private final CountDownLatch runs = new CountDownLatch(1);
+        private volatile Thread thread;
+        private volatile int discards;
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            runs.countDown();
+        }
+
+        @Override
+        public void discard(RejectedExecutionException cause) {
+            discards++;
+        }
+    }
+
+    private static class BlockingDelivery implements LocalEventExecutor.Delivery {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingDelivery(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void discard(RejectedExecutionException cause) {
+        }
+    }
+}
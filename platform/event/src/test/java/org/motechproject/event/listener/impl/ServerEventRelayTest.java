@@ -16,19 +16,26 @@ import org.motechproject.event.listener.impl.EventListenerRegistry;
 import org.motechproject.event.listener.impl.ServerEventRelay;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.messaging.impl.MotechEventBatchSender;
+import org.motechproject.event.metrics.impl.EventMetricsServiceImpl;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
@@ -62,11 +69,24 @@ public class ServerEventRelayTest {
     @Mock
     private EventListenerRegistry registry;
 
+    @Mock
+    private MotechEventBatchSender eventBatchSender;
+
+    @Mock
+    private LocalEventExecutor localEventExecutor;
+
+    @Mock
+    private InMemoryDeadLetterStore deadLetterStore;
+
+    @Mock
+    private EventMetricsServiceImpl eventMetrics;
+
     private ServerEventRelay eventRelay;
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin);
+        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin, eventBatchSender,
+                localEventExecutor, deadLetterStore, eventMetrics);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -105,6 +125,168 @@ public class ServerEventRelayTest {
         assertEquals(capturedEvent.getMessageDestination(), SECONDARY_LISTENER_IDENTIFIER);
     }
 
+    @Test
+    public void shouldSendSplitEventsInBatch() throws Exception {
+        when(motechEventConfig.isBatchFanOut()).thenReturn(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<Collection> argumentCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(eventBatchSender).sendEventMessages(argumentCaptor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> sentEvents = new ArrayList<MotechEvent>(argumentCaptor.getValue());
+        assertEquals(2, sentEvents.size());
+        assertEquals(LISTENER_IDENTIFIER, sentEvents.get(0).getMessageDestination());
+        assertEquals(SECONDARY_LISTENER_IDENTIFIER, sentEvents.get(1).getMessageDestination());
+        assertEquals("value", sentEvents.get(1).getParameters().get("test"));
+    }
+
+    @Test
+    public void shouldNotUseBatchForSingleListener() throws Exception {
+        when(motechEventConfig.isBatchFanOut()).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        verify(outboundEventGateway).sendEventMessage(any(MotechEvent.class));
+        verify(eventBatchSender, never()).sendEventMessages(any(Collection.class));
+    }
+
+    @Test
+    public void shouldSendSingleCompactEventForMultipleListeners() throws Exception {
+        when(motechEventConfig.isCompactFanOut()).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+
+        MotechEvent capturedEvent = argumentCaptor.getValue();
+        assertEquals(null, capturedEvent.getMessageDestination());
+        assertEquals(Arrays.asList(LISTENER_IDENTIFIER, SECONDARY_LISTENER_IDENTIFIER), capturedEvent.getMessageDestinations());
+    }
+
+    @Test
+    public void shouldExpandCompactEventOnRelay() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+
+        MotechEvent motechEvent = createEvent();
+        motechEvent.setMessageDestinations(Arrays.asList(LISTENER_IDENTIFIER, SECONDARY_LISTENER_IDENTIFIER));
+
+        eventRelay.relayQueueEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(secondaryEventListener).handle(argumentCaptor.capture());
+        assertEquals(SECONDARY_LISTENER_IDENTIFIER, argumentCaptor.getValue().getMessageDestination());
+        assertEquals(null, argumentCaptor.getValue().getMessageDestinations());
+
+        // the failed delivery is retried for the failing listener only
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+        assertEquals(LISTENER_IDENTIFIER, argumentCaptor.getValue().getMessageDestination());
+        assertTrue(argumentCaptor.getValue().isInvalid());
+    }
+
+    @Test
+    public void shouldDiscardOnlyFailedDestinationOfCompactEvent() throws Exception {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(0);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+
+        MotechEvent motechEvent = createEvent();
+        motechEvent.setMessageDestinations(Arrays.asList(LISTENER_IDENTIFIER, SECONDARY_LISTENER_IDENTIFIER));
+
+        // the compact message must not be redelivered by the broker
+        eventRelay.relayQueueEvent(motechEvent);
+
+        verify(secondaryEventListener).handle(any(MotechEvent.class));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+        verify(deadLetterStore).add(any(MotechEvent.class), eq(LISTENER_IDENTIFIER), any(RuntimeException.class));
+        verify(deadLetterStore, never()).add(any(MotechEvent.class), eq(SECONDARY_LISTENER_IDENTIFIER),
+                any(Throwable.class));
+    }
+
+    @Test
+    public void shouldDeliverEventsLocally() throws Exception {
+        when(motechEventConfig.isLocalDelivery()).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+        verify(eventBatchSender, never()).sendEventMessages(any(Collection.class));
+
+        ArgumentCaptor<LocalEventExecutor.Delivery> deliveryCaptor = ArgumentCaptor.forClass(LocalEventExecutor.Delivery.class);
+        verify(localEventExecutor, times(2)).execute(deliveryCaptor.capture());
+        for (LocalEventExecutor.Delivery delivery : deliveryCaptor.getAllValues()) {
+            delivery.run();
+        }
+
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(eventCaptor.capture());
+        assertEquals(LISTENER_IDENTIFIER, eventCaptor.getValue().getMessageDestination());
+        assertEquals("value", eventCaptor.getValue().getParameters().get("test"));
+        verify(secondaryEventListener).handle(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldRetryFailedLocalDeliveryWithDelay() throws Exception {
+        when(motechEventConfig.isLocalDelivery()).thenReturn(true);
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(1);
+        when(motechEventConfig.getRedeliveryDelayMillis(1)).thenReturn(1000L);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<LocalEventExecutor.Delivery> deliveryCaptor = ArgumentCaptor.forClass(LocalEventExecutor.Delivery.class);
+        verify(localEventExecutor).execute(deliveryCaptor.capture());
+        deliveryCaptor.getValue().run();
+
+        verify(localEventExecutor).executeWithDelay(deliveryCaptor.capture(), eq(1000L));
+        deliveryCaptor.getValue().run();
+
+        // max redelivery count reached, the event is discarded
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener, times(2)).handle(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().isDiscarded());
+        verify(localEventExecutor).executeWithDelay(any(LocalEventExecutor.Delivery.class), anyLong());
+        verify(deadLetterStore).add(eq(eventCaptor.getValue()), eq(LISTENER_IDENTIFIER), any(RuntimeException.class));
+    }
+
+    @Test
+    public void shouldDiscardLocalDeliveryDroppedByExecutor() throws Exception {
+        when(motechEventConfig.isLocalDelivery()).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<LocalEventExecutor.Delivery> deliveryCaptor = ArgumentCaptor.forClass(LocalEventExecutor.Delivery.class);
+        verify(localEventExecutor).execute(deliveryCaptor.capture());
+        RejectedExecutionException cause = new RejectedExecutionException("shut down");
+        deliveryCaptor.getValue().discard(cause);
+
+        verify(eventListener, never()).handle(any(MotechEvent.class));
+        verify(deadLetterStore).add(any(MotechEvent.class), eq(LISTENER_IDENTIFIER), eq(cause));
+    }
+
+    @Test
+    public void shouldSendDurableSubjectsThroughBrokerInLocalMode() throws Exception {
+        when(motechEventConfig.isLocalDelivery()).thenReturn(true);
+        when(motechEventConfig.getDurableSubjects()).thenReturn(Arrays.asList("org.motechproject.server.*"));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        verify(outboundEventGateway).sendEventMessage(any(MotechEvent.class));
+        verify(localEventExecutor, never()).execute(any(LocalEventExecutor.Delivery.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRelayNullQueueEvent() throws Exception {
         eventRelay.relayQueueEvent(null);
@@ -153,11 +335,23 @@ public class ServerEventRelayTest {
                     }
                 })
                 .when(eventListener).handle(any(MotechEvent.class));
+        when(motechEventConfig.getRedeliveryDelayMillis(1)).thenReturn(1000L);
+        when(motechEventConfig.getRedeliveryDelayMillis(2)).thenReturn(2000L);
         setUpListeners(SUBJECT, eventListener);
 
         eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+        verify(eventListener).handle(any(MotechEvent.class));
+
+        // retries are scheduled with a growing delay instead of blocking the topic
+        ArgumentCaptor<LocalEventExecutor.Delivery> retryCaptor = ArgumentCaptor.forClass(LocalEventExecutor.Delivery.class);
+        verify(localEventExecutor).executeWithDelay(retryCaptor.capture(), eq(1000L));
+        retryCaptor.getValue().run();
+        verify(localEventExecutor).executeWithDelay(retryCaptor.capture(), eq(2000L));
+        retryCaptor.getValue().run();
+
         verify(eventListener, times(3)).handle(any(MotechEvent.class));
         assertTrue(handled.getValue());
+        verify(deadLetterStore, never()).add(any(MotechEvent.class), any(String.class), any(Throwable.class));
 
         verify(eventAdmin, never()).postEvent(any(Event.class));
         verify(eventAdmin, never()).sendEvent(any(Event.class));
@@ -181,9 +375,19 @@ public class ServerEventRelayTest {
                 .when(eventListener).handle(any(MotechEvent.class));
         setUpListeners(SUBJECT, eventListener);
 
-        eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
+        MotechEvent event = new MotechEvent(SUBJECT);
+        eventRelay.relayTopicEvent(event);
+
+        ArgumentCaptor<LocalEventExecutor.Delivery> retryCaptor = ArgumentCaptor.forClass(LocalEventExecutor.Delivery.class);
+        verify(localEventExecutor).executeWithDelay(retryCaptor.capture(), anyLong());
+        retryCaptor.getValue().run();
+        verify(localEventExecutor, times(2)).executeWithDelay(retryCaptor.capture(), anyLong());
+        retryCaptor.getValue().run();
+
         verify(eventListener, times(3)).handle(any(MotechEvent.class));
+        verify(localEventExecutor, times(2)).executeWithDelay(any(LocalEventExecutor.Delivery.class), anyLong());
         assertFalse(handled.getValue());
+        verify(deadLetterStore).add(eq(event), eq("retrying"), any(RuntimeException.class));
     }
 
     @Test
@@ -0,0 +1,142 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TopicEventDispatcherTest {
+
+    private static final int EVENTS_PER_SUBJECT = 200;
+    private static final String[] SUBJECTS = {"org.motechproject.mds.create", "org.motechproject.mds.update",
+            "org.motechproject.config.change", "org.motechproject.bundle.start", "org.motechproject.bundle.stop"};
+
+    @Mock
+    private ServerEventRelay eventRelay;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private TopicEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        when(motechEventConfig.getTopicQueueCapacity()).thenReturn(10);
+        dispatcher = new TopicEventDispatcher(eventRelay, motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldRelayOnCallingThreadIfNoWorkersConfigured() {
+        when(motechEventConfig.getTopicWorkerCount()).thenReturn(0);
+        dispatcher.init();
+
+        MotechEvent event = new MotechEvent(SUBJECTS[0]);
+        dispatcher.dispatch(event);
+
+        verify(eventRelay).relayTopicEvent(event);
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getLag());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDispatchNullEvent() {
+        when(motechEventConfig.getTopicWorkerCount()).thenReturn(2);
+        dispatcher.init();
+
+        dispatcher.dispatch(null);
+    }
+
+    @Test
+    public void shouldKeepOrderOfEventsWithTheSameSubject() throws InterruptedException {
+        when(motechEventConfig.getTopicWorkerCount()).thenReturn(3);
+        dispatcher.init();
+
+        final Map<String, List<Integer>> received = new HashMap<>();
+        for (String subject : SUBJECTS) {
+            received.put(subject, Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch latch = new CountDownLatch(SUBJECTS.length * EVENTS_PER_SUBJECT);
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                MotechEvent event = (MotechEvent) invocation.getArguments()[0];
+                received.get(event.getSubject()).add((Integer) event.getParameters().get("seq"));
+                latch.countDown();
+                return null;
+            }
+        }).when(eventRelay).relayTopicEvent(any(MotechEvent.class));
+
+        for (int i = 0; i < EVENTS_PER_SUBJECT; i++) {
+            for (String subject : SUBJECTS) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("seq", i);
+                dispatcher.dispatch(new MotechEvent(subject, params));
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (String subject : SUBJECTS) {
+            List<Integer> sequence = received.get(subject);
+            assertEquals(EVENTS_PER_SUBJECT, sequence.size());
+            for (int i = 0; i < EVENTS_PER_SUBJECT; i++) {
+                assertEquals(Integer.valueOf(i), sequence.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportWaitingEvents() throws InterruptedException {
+        when(motechEventConfig.getTopicWorkerCount()).thenReturn(1);
+        dispatcher.init();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        }).when(eventRelay).relayTopicEvent(any(MotechEvent.class));
+
+        dispatcher.dispatch(new MotechEvent(SUBJECTS[0]));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(new MotechEvent(SUBJECTS[1]));
+        dispatcher.dispatch(new MotechEvent(SUBJECTS[2]));
+        Thread.sleep(20);
+
+        assertEquals(2, dispatcher.getQueueDepth());
+        assertTrue(dispatcher.getLag() > 0);
+
+        release.countDown();
+    }
+}
@@ -0,0 +1,134 @@
+package org.motechproject.event.messaging.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.chrono.BuddhistChronology;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldEncodeAndDecodeEvent() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("key", 15L);
+        nested.put("date", new Date(1000L));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("string", "zażółć");
+        params.put("int", 7);
+        params.put("double", 3.5);
+        params.put("boolean", true);
+        params.put("char", 'c');
+        params.put("decimal", new BigDecimal("12.340"));
+        params.put("uuid", UUID.randomUUID());
+        params.put("dateTime", new DateTime(2015, 3, 4, 12, 30, DateTimeZone.forID("Europe/Warsaw")));
+        params.put("localDate", new LocalDate(2015, 3, 4));
+        params.put("list", Arrays.asList("a", null, 1));
+        params.put("set", new HashSet<>(Arrays.asList(1, 2)));
+        params.put("map", nested);
+        params.put("null", null);
+
+        MotechEvent event = new MotechEvent("org.motechproject.test", params);
+        event.setId(UUID.randomUUID());
+        event.setInvalid(true);
+        event.setMessageRedeliveryCount(2);
+        event.setMessageDestination("listener");
+
+        assertTrue(codec.supports(event));
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+        assertEquals(params, decoded.getParameters());
+    }
+
+    @Test
+    public void shouldEncodeMessageDestinations() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.setBroadcast(true);
+        event.setMessageDestinations(Arrays.asList("first", "second"));
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(null, decoded.getId());
+    }
+
+    @Test
+    public void shouldEncodePublishTime() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.setPublishTime(1234567890123L);
+
+        assertEquals(Long.valueOf(1234567890123L), codec.decode(codec.encode(event)).getPublishTime());
+        assertEquals(null, codec.decode(codec.encode(new MotechEvent("org.motechproject.test"))).getPublishTime());
+    }
+
+    @Test
+    public void shouldNotSupportUnknownTypes() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put("object", new Object());
+        assertFalse(codec.supports(event));
+
+        event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put("list", Arrays.asList(new StringBuilder()));
+        assertFalse(codec.supports(event));
+
+        event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put("date", new DateTime(BuddhistChronology.getInstance()));
+        assertFalse(codec.supports(event));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotEncodeUnsupportedEvent() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.getParameters().put("object", new Object());
+
+        codec.encode(event);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidData() {
+        codec.decode(new byte[]{42, 0});
+    }
+
+    @Test
+    public void shouldBeSmallerThanJavaSerialization() throws IOException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("JobID", "org.motechproject.messagecampaign.fired-campaign-message-MessageJob.1234.5678");
+        params.put("ExternalID", "9876543");
+        params.put("CampaignName", "Pregnancy campaign");
+        params.put("MessageKey", "week-12");
+        params.put("repeatCount", 10);
+        params.put("startDate", new DateTime(2015, 3, 4, 9, 0));
+
+        MotechEvent event = new MotechEvent("org.motechproject.messagecampaign.fired-campaign-message", params);
+        event.setId(UUID.randomUUID());
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(event);
+        }
+
+        assertTrue(codec.encode(event).length < serialized.size());
+    }
+}
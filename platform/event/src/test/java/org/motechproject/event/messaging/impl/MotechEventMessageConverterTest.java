@@ -0,0 +1,103 @@
+package org.motechproject.event.messaging.impl;
+
+import junitx.util.PrivateAccessor;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechEventMessageConverterTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private Session session;
+
+    private MotechEventMessageConverter converter;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        converter = new MotechEventMessageConverter(Arrays.<MotechEventCodec>asList(new BinaryMotechEventCodec()));
+        PrivateAccessor.setField(converter, "motechEventConfig", motechEventConfig);
+
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+        when(session.createObjectMessage(any(MotechEvent.class))).thenAnswer(
+                new Answer<Message>() {
+                    @Override
+                    public Message answer(InvocationOnMock invocation) throws Throwable {
+                        ActiveMQObjectMessage message = new ActiveMQObjectMessage();
+                        message.setObject((MotechEvent) invocation.getArguments()[0]);
+                        return message;
+                    }
+                });
+    }
+
+    @Test
+    public void shouldUseCodecWhenConfigured() throws Exception {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof ActiveMQBytesMessage);
+        assertEquals(BinaryMotechEventCodec.NAME, message.getStringProperty(MotechEventMessageConverter.CODEC_PROPERTY));
+        assertTrue(message.getBooleanProperty(MotechEventMessageConverter.INVALID_PROPERTY));
+        assertEquals(1, message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY));
+
+        ((ActiveMQBytesMessage) message).reset();
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldUseSerializationByDefault() throws Exception {
+        when(motechEventConfig.getMessageCodec()).thenReturn(MotechEventConfig.SERIALIZATION_CODEC);
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof ActiveMQObjectMessage);
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldFallBackToSerializationForUnsupportedEvents() throws Exception {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        MotechEvent event = createEvent();
+        event.getParameters().put("builder", new StringBuilder("value"));
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof ActiveMQObjectMessage);
+        assertFalse(message.propertyExists(MotechEventMessageConverter.CODEC_PROPERTY));
+    }
+
+    private MotechEvent createEvent() {
+        MotechEvent event = new MotechEvent("org.motechproject.test");
+        event.setId(UUID.randomUUID());
+        event.getParameters().put("key", "value");
+        event.setInvalid(true);
+        event.setMessageRedeliveryCount(1);
+        return event;
+    }
+}
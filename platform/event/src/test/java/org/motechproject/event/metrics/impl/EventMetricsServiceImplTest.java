@@ -0,0 +1,99 @@
+package org.motechproject.event.metrics.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.HistogramSnapshot;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventMetricsServiceImplTest {
+
+    private static final String SUBJECT = "org.motechproject.test";
+    private static final String LISTENER = "test-listener";
+
+    private EventMetricsServiceImpl eventMetrics;
+
+    @Before
+    public void setUp() {
+        eventMetrics = new EventMetricsServiceImpl();
+    }
+
+    @Test
+    public void shouldCountEventsPerSubject() {
+        eventMetrics.recordPublished(SUBJECT);
+        eventMetrics.recordPublished(SUBJECT);
+        eventMetrics.recordReceived(SUBJECT, System.currentTimeMillis());
+        eventMetrics.recordReceived(SUBJECT, null);
+        eventMetrics.recordRetry(SUBJECT);
+        eventMetrics.recordDiscard(SUBJECT);
+
+        List<SubjectMetrics> metrics = eventMetrics.getSubjectMetrics();
+        assertEquals(1, metrics.size());
+
+        SubjectMetrics subjectMetrics = metrics.get(0);
+        assertEquals(SUBJECT, subjectMetrics.getSubject());
+        assertEquals(2, subjectMetrics.getPublishedCount());
+        assertEquals(2, subjectMetrics.getReceivedCount());
+        assertEquals(1, subjectMetrics.getRetryCount());
+        assertEquals(1, subjectMetrics.getDiscardCount());
+        // only events with a publish time are taken into account for latency
+        assertEquals(1, subjectMetrics.getLatency().getCount());
+    }
+
+    @Test
+    public void shouldRecordListenerExecutionTimes() {
+        eventMetrics.recordExecution(LISTENER, 0, false);
+        eventMetrics.recordExecution(LISTENER, 7, true);
+        eventMetrics.recordExecution(LISTENER, 120000, false);
+
+        List<ListenerMetrics> metrics = eventMetrics.getListenerMetrics();
+        assertEquals(1, metrics.size());
+        assertEquals(LISTENER, metrics.get(0).getListenerIdentifier());
+        assertEquals(1, metrics.get(0).getFailureCount());
+
+        HistogramSnapshot executionTime = metrics.get(0).getExecutionTime();
+        assertEquals(3, executionTime.getCount());
+        assertEquals(120007, executionTime.getTotal());
+        assertEquals(120000, executionTime.getMax());
+        assertArrayEquals(new long[] {1, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1}, executionTime.getBucketCounts());
+    }
+
+    @Test
+    public void shouldReset() {
+        eventMetrics.recordPublished(SUBJECT);
+        eventMetrics.recordExecution(LISTENER, 1, false);
+
+        eventMetrics.reset();
+
+        assertTrue(eventMetrics.getSubjectMetrics().isEmpty());
+        assertTrue(eventMetrics.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldRegisterInMBeanServer() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(EventMetricsService.OBJECT_NAME);
+
+        eventMetrics.registerMBean();
+        try {
+            eventMetrics.recordPublished(SUBJECT);
+            assertTrue(server.isRegistered(name));
+            assertEquals(1, ((Object[]) server.getAttribute(name, "SubjectMetrics")).length);
+        } finally {
+            eventMetrics.unregisterMBean();
+        }
+
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -14,6 +14,7 @@ import org.motechproject.mds.service.JarGeneratorService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
 import org.motechproject.testing.osgi.helper.ServiceRetriever;
 import org.ops4j.pax.exam.ExamFactory;
@@ -84,6 +85,10 @@ public class MdsStressIT extends LoggingPerformanceIT {
         stressTestRetrieval(service);
         stressTestUpdating(service);
         stressTestDeleting(service);
+
+        stressTestBulkCreating(service);
+        stressTestBulkUpdating(service);
+        stressTestBulkDeleting(service);
     }
 
     private void stressTestCreating(MotechDataService service, Class clazz)
@@ -139,4 +144,44 @@ public class MdsStressIT extends LoggingPerformanceIT {
         logToFile((double) endTime);
     }
 
-}
\ No newline at end of file
+    private void stressTestBulkCreating(MotechDataService service)
+            throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        List<Object> instances = new ArrayList<>();
+        EntityDto entityDto = entityService.getEntityByClassName(FOO_CLASS);
+        for (int i = 0 ; i < TEST_INSTANCES; i++) {
+            instances.add(generator.makeDummyInstance(entityDto.getId()));
+        }
+
+        Long startTime = System.nanoTime();
+        service.createAll(instances);
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Creating " + TEST_INSTANCES + " instances in bulk took " + endTime + "ms.");
+        logToFile((double) endTime);
+    }
+
+    private void stressTestBulkUpdating(MotechDataService service) {
+        List<Object> allObjects = service.retrieveAll();
+
+        Long startTime = System.nanoTime();
+        service.updateAll(allObjects);
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Updating " + TEST_INSTANCES + " instances in bulk took " + endTime + "ms.");
+        logToFile((double) endTime);
+    }
+
+    private void stressTestBulkDeleting(MotechDataService service) {
+        List<Long> ids = new ArrayList<>();
+        for (Object object : service.retrieveAll()) {
+            ids.add((Long) PropertyUtil.safeGetProperty(object, Constants.Util.ID_FIELD_NAME));
+        }
+
+        Long startTime = System.nanoTime();
+        service.deleteAll(ids);
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Deleting " + TEST_INSTANCES + " instances in bulk took " + endTime + "ms.");
+        logToFile((double) endTime);
+    }
+}
@@ -0,0 +1,31 @@
+package org.motechproject.mds.test.domain.bulkoperations;
+
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.domain.MdsEntity;
+
+/**
+ * Used for testing the bulk operations of the data services.
+ */
+@Entity
+public class Parcel extends MdsEntity {
+
+    @Field
+    private String label;
+
+    public Parcel() {
+        this(null);
+    }
+
+    public Parcel(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,36 @@
+package org.motechproject.mds.test.domain.bulkoperations;
+
+import org.motechproject.mds.annotations.Access;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.domain.MdsEntity;
+import org.motechproject.mds.util.SecurityMode;
+
+/**
+ * Used for testing the bulk operations of the data services on an entity, whose instances can only be accessed
+ * by their owners.
+ */
+@Entity
+@Access(SecurityMode.OWNER)
+public class PrivateNote extends MdsEntity {
+
+    @Field
+    private String text;
+
+    public PrivateNote() {
+        this(null, null);
+    }
+
+    public PrivateNote(String text, String owner) {
+        this.text = text;
+        setOwner(owner);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
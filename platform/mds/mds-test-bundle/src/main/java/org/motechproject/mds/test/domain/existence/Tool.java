@@ -0,0 +1,43 @@
+package org.motechproject.mds.test.domain.existence;
+
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.domain.MdsEntity;
+
+/**
+ * Used for testing the existence checks of the data services.
+ */
+@Entity
+public class Tool extends MdsEntity {
+
+    @Field
+    private String name;
+
+    @Field
+    private Boolean broken;
+
+    public Tool() {
+        this(null, null);
+    }
+
+    public Tool(String name, Boolean broken) {
+        this.name = name;
+        this.broken = broken;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Boolean getBroken() {
+        return broken;
+    }
+
+    public void setBroken(Boolean broken) {
+        this.broken = broken;
+    }
+}
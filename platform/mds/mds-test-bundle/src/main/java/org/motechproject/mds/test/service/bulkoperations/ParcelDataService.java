@@ -0,0 +1,7 @@
+package org.motechproject.mds.test.service.bulkoperations;
+
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.test.domain.bulkoperations.Parcel;
+
+public interface ParcelDataService extends MotechDataService<Parcel> {
+}
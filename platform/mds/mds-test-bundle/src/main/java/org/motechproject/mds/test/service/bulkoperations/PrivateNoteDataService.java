@@ -0,0 +1,16 @@
+package org.motechproject.mds.test.service.bulkoperations;
+
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.test.domain.bulkoperations.PrivateNote;
+
+import java.util.List;
+
+public interface PrivateNoteDataService extends MotechDataService<PrivateNote> {
+
+    @Lookup
+    List<PrivateNote> findByText(@LookupField(name = "text") String text);
+
+    boolean existsFindByText(@LookupField(name = "text") String text);
+}
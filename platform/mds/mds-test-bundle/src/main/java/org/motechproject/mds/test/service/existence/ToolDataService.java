@@ -0,0 +1,16 @@
+package org.motechproject.mds.test.service.existence;
+
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.test.domain.existence.Tool;
+
+import java.util.List;
+
+public interface ToolDataService extends MotechDataService<Tool> {
+
+    @Lookup
+    List<Tool> findByName(@LookupField(name = "name") String name);
+
+    boolean existsFindByName(@LookupField(name = "name") String name);
+}
@@ -2,10 +2,14 @@ package org.motechproject.mds.test.it;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
+import org.motechproject.mds.test.osgi.MdsBulkOperationsBundleIT;
 import org.motechproject.mds.test.osgi.MdsDdeBundleIT;
 import org.motechproject.mds.test.osgi.MdsDdeValidationContextIT;
+import org.motechproject.mds.test.osgi.MdsExistsBundleIT;
+import org.motechproject.mds.test.osgi.MdsStreamBundleIT;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({MdsDdeBundleIT.class, MdsDdeValidationContextIT.class})
+@Suite.SuiteClasses({MdsDdeBundleIT.class, MdsDdeValidationContextIT.class, MdsBulkOperationsBundleIT.class,
+        MdsExistsBundleIT.class, MdsStreamBundleIT.class})
 public class IntegrationTests {
 }
@@ -0,0 +1,283 @@
+package org.motechproject.mds.test.osgi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.test.domain.bulkoperations.Parcel;
+import org.motechproject.mds.test.domain.bulkoperations.PrivateNote;
+import org.motechproject.mds.test.service.bulkoperations.ParcelDataService;
+import org.motechproject.mds.test.service.bulkoperations.PrivateNoteDataService;
+import org.motechproject.testing.osgi.BasePaxIT;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsBulkOperationsBundleIT extends BasePaxIT {
+
+    private static final String MODULE_NAME = "MOTECH Platform Data Services Test Bundle";
+    private static final String OTHER_USER = "someoneElse";
+    private static final long EVENT_TIMEOUT = 5000; // ms
+
+    @Inject
+    private ParcelDataService parcelDataService;
+
+    @Inject
+    private PrivateNoteDataService privateNoteDataService;
+
+    @Inject
+    private EventListenerRegistryService registry;
+
+    private final Object waitLock = new Object();
+
+    private final List<String> listenerIdentifiers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        setUpSecurityContextForDefaultUser("mdsSchemaAccess");
+        clearDB();
+    }
+
+    @After
+    public void tearDown() {
+        for (String identifier : listenerIdentifiers) {
+            registry.clearListenersForBean(identifier);
+        }
+        listenerIdentifiers.clear();
+
+        clearDB();
+    }
+
+    private void clearDB() {
+        parcelDataService.deleteAll();
+
+        // notes can only be deleted by their owners
+        setUpSecurityContext(OTHER_USER, OTHER_USER, "mdsSchemaAccess");
+        privateNoteDataService.deleteAll();
+        setUpSecurityContextForDefaultUser("mdsSchemaAccess");
+        privateNoteDataService.deleteAll();
+    }
+
+    @Test
+    public void shouldCreateAndDeleteInstancesInBulk() {
+        List<Parcel> created = parcelDataService.createAll(asList(new Parcel("first"), new Parcel("second"),
+                new Parcel("third")));
+
+        assertEquals(asList("first", "second", "third"), getLabels(created));
+        for (Parcel parcel : created) {
+            assertNotNull(parcel.getId());
+        }
+        assertEquals(3, parcelDataService.count());
+
+        List<Parcel> found = parcelDataService.findByIds(getIds(created));
+        assertEquals(3, found.size());
+
+        parcelDataService.deleteAll(getIds(created));
+
+        assertEquals(0, parcelDataService.count());
+    }
+
+    @Test
+    public void shouldUpdateMixOfTransientAndPersistentInstances() {
+        List<Parcel> created = parcelDataService.createAll(asList(new Parcel("first"), new Parcel("second"),
+                new Parcel("third")));
+
+        Parcel first = created.get(0);
+        first.setLabel("first updated");
+
+        Parcel second = new Parcel("second updated");
+        second.setId(created.get(1).getId());
+
+        Parcel third = created.get(2);
+        third.setLabel("third updated");
+
+        List<Parcel> updated = parcelDataService.updateAll(asList(first, second, third));
+
+        assertEquals(asList("first updated", "second updated", "third updated"), getLabels(updated));
+        assertEquals(getIds(created), getIds(updated));
+
+        assertEquals("first updated", parcelDataService.findById(first.getId()).getLabel());
+        assertEquals("second updated", parcelDataService.findById(second.getId()).getLabel());
+        assertEquals("third updated", parcelDataService.findById(third.getId()).getLabel());
+        assertEquals(3, parcelDataService.count());
+    }
+
+    @Test
+    public void shouldSkipMissingIdsWhenDeletingInBulk() {
+        List<Parcel> created = parcelDataService.createAll(asList(new Parcel("first"), new Parcel("second"),
+                new Parcel("third")));
+        Long missingId = created.get(2).getId() + 1000;
+
+        parcelDataService.deleteAll(asList(created.get(0).getId(), missingId, created.get(2).getId()));
+
+        List<Parcel> remaining = parcelDataService.retrieveAll();
+        assertEquals(1, remaining.size());
+        assertEquals(created.get(1).getId(), remaining.get(0).getId());
+    }
+
+    @Test
+    public void shouldSendOneCrudEventPerInstanceAfterCommit() throws InterruptedException {
+        List<Long> createdIds = listenForEvents(CrudEventType.CREATE);
+        List<Long> updatedIds = listenForEvents(CrudEventType.UPDATE);
+        List<Long> deletedIds = listenForEvents(CrudEventType.DELETE);
+
+        List<Parcel> created = parcelDataService.createAll(asList(new Parcel("first"), new Parcel("second"),
+                new Parcel("third")));
+        List<Long> ids = getIds(created);
+
+        waitForEvents(createdIds, 3);
+        assertSameIds(ids, createdIds);
+
+        for (Parcel parcel : created) {
+            parcel.setLabel(parcel.getLabel() + " updated");
+        }
+        parcelDataService.updateAll(created);
+
+        waitForEvents(updatedIds, 3);
+        assertSameIds(ids, updatedIds);
+
+        parcelDataService.deleteAll(ids);
+
+        waitForEvents(deletedIds, 3);
+        assertSameIds(ids, deletedIds);
+    }
+
+    @Test
+    public void shouldNotSendCrudEventsAfterRollback() throws InterruptedException {
+        List<Long> createdIds = listenForEvents(CrudEventType.CREATE);
+
+        parcelDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                parcelDataService.createAll(asList(new Parcel("first"), new Parcel("second")));
+                status.setRollbackOnly();
+            }
+        });
+
+        // gives an event which should not have been sent the time to arrive
+        waitForEvents(createdIds, 1);
+
+        assertEquals(0, parcelDataService.count());
+        synchronized (waitLock) {
+            assertTrue(createdIds.isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldRejectBatchWithInstanceOfAnotherOwner() {
+        String defaultUser = MOTECH_ADMIN_USERNAME;
+        List<PrivateNote> notes = privateNoteDataService.createAll(asList(new PrivateNote("mine", defaultUser),
+                new PrivateNote("foreign", OTHER_USER)));
+
+        PrivateNote mine = notes.get(0);
+        PrivateNote foreign = notes.get(1);
+        mine.setText("mine updated");
+        foreign.setText("foreign updated");
+
+        try {
+            privateNoteDataService.updateAll(asList(mine, foreign));
+            fail("Updating an instance of another owner should have been rejected");
+        } catch (SecurityException e) {
+            // expected
+        }
+
+        try {
+            privateNoteDataService.deleteAll(asList(mine.getId(), foreign.getId()));
+            fail("Deleting an instance of another owner should have been rejected");
+        } catch (SecurityException e) {
+            // expected
+        }
+
+        assertEquals("mine", privateNoteDataService.findById(mine.getId()).getText());
+
+        setUpSecurityContext(OTHER_USER, OTHER_USER, "mdsSchemaAccess");
+        assertEquals("foreign", privateNoteDataService.findById(foreign.getId()).getText());
+    }
+
+    private List<Long> listenForEvents(CrudEventType action) {
+        final List<Long> ids = new ArrayList<>();
+        final String subject = createSubject(MODULE_NAME, null, Parcel.class.getSimpleName(), action);
+
+        registry.registerListener(new EventListener() {
+            @Override
+            public void handle(MotechEvent event) {
+                synchronized (waitLock) {
+                    ids.add((Long) event.getParameters().get(OBJECT_ID));
+                    waitLock.notifyAll();
+                }
+            }
+
+            @Override
+            public String getIdentifier() {
+                return subject;
+            }
+        }, subject);
+        listenerIdentifiers.add(subject);
+
+        return ids;
+    }
+
+    private void waitForEvents(List<Long> receivedIds, int expectedCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+
+        synchronized (waitLock) {
+            long remaining = EVENT_TIMEOUT;
+            while (receivedIds.size() < expectedCount && remaining > 0) {
+                waitLock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void assertSameIds(List<Long> expected, List<Long> actual) {
+        synchronized (waitLock) {
+            List<Long> sortedActual = new ArrayList<>(actual);
+            Collections.sort(sortedActual);
+
+            List<Long> sortedExpected = new ArrayList<>(expected);
+            Collections.sort(sortedExpected);
+
+            assertEquals(sortedExpected, sortedActual);
+        }
+    }
+
+    private List<String> getLabels(List<Parcel> parcels) {
+        List<String> labels = new ArrayList<>();
+        for (Parcel parcel : parcels) {
+            labels.add(parcel.getLabel());
+        }
+        return labels;
+    }
+
+    private List<Long> getIds(List<Parcel> parcels) {
+        List<Long> ids = new ArrayList<>();
+        for (Parcel parcel : parcels) {
+            ids.add(parcel.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,110 @@
+package org.motechproject.mds.test.osgi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.filter.Filter;
+import org.motechproject.mds.filter.FilterValue;
+import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.test.domain.bulkoperations.PrivateNote;
+import org.motechproject.mds.test.domain.existence.Tool;
+import org.motechproject.mds.test.service.bulkoperations.PrivateNoteDataService;
+import org.motechproject.mds.test.service.existence.ToolDataService;
+import org.motechproject.testing.osgi.BasePaxIT;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsExistsBundleIT extends BasePaxIT {
+
+    private static final String OTHER_USER = "someoneElse";
+
+    @Inject
+    private ToolDataService toolDataService;
+
+    @Inject
+    private PrivateNoteDataService privateNoteDataService;
+
+    @Before
+    public void setUp() {
+        setUpSecurityContextForDefaultUser("mdsSchemaAccess");
+        clearDB();
+    }
+
+    @After
+    public void tearDown() {
+        clearDB();
+    }
+
+    private void clearDB() {
+        toolDataService.deleteAll();
+
+        // notes can only be deleted by their owners
+        setUpSecurityContext(OTHER_USER, OTHER_USER, "mdsSchemaAccess");
+        privateNoteDataService.deleteAll();
+        setUpSecurityContextForDefaultUser("mdsSchemaAccess");
+        privateNoteDataService.deleteAll();
+    }
+
+    @Test
+    public void shouldCheckIfAnyInstanceExists() {
+        assertFalse(toolDataService.exists());
+
+        toolDataService.create(new Tool("hammer", false));
+
+        assertTrue(toolDataService.exists());
+    }
+
+    @Test
+    public void shouldCheckIfInstancesMatchingFiltersExist() {
+        toolDataService.create(new Tool("hammer", false));
+        toolDataService.create(new Tool("saw", false));
+
+        assertTrue(toolDataService.existsForFilters(new Filters(new Filter("broken", FilterValue.NO))));
+        assertFalse(toolDataService.existsForFilters(new Filters(new Filter("broken", FilterValue.YES))));
+
+        toolDataService.create(new Tool("drill", true));
+
+        assertTrue(toolDataService.existsForFilters(new Filters(new Filter("broken", FilterValue.YES))));
+    }
+
+    @Test
+    public void shouldCheckIfInstancesMatchingLookupExist() {
+        toolDataService.create(new Tool("hammer", false));
+        toolDataService.create(new Tool("saw", true));
+
+        assertTrue(toolDataService.existsFindByName("hammer"));
+        assertTrue(toolDataService.existsFindByName("saw"));
+        assertFalse(toolDataService.existsFindByName("drill"));
+    }
+
+    @Test
+    public void shouldOnlyFindInstancesOfCurrentOwner() {
+        privateNoteDataService.create(new PrivateNote("foreign", OTHER_USER));
+
+        assertFalse(privateNoteDataService.exists());
+        assertFalse(privateNoteDataService.existsFindByText("foreign"));
+
+        privateNoteDataService.create(new PrivateNote("mine", MOTECH_ADMIN_USERNAME));
+
+        assertTrue(privateNoteDataService.exists());
+        assertTrue(privateNoteDataService.existsFindByText("mine"));
+        assertFalse(privateNoteDataService.existsFindByText("foreign"));
+
+        setUpSecurityContext(OTHER_USER, OTHER_USER, "mdsSchemaAccess");
+
+        assertTrue(privateNoteDataService.existsFindByText("foreign"));
+        assertFalse(privateNoteDataService.existsFindByText("mine"));
+    }
+}
@@ -0,0 +1,128 @@
+package org.motechproject.mds.test.osgi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.query.InstanceStream;
+import org.motechproject.mds.test.domain.bulkoperations.Parcel;
+import org.motechproject.mds.test.service.bulkoperations.ParcelDataService;
+import org.motechproject.testing.osgi.BasePaxIT;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.springframework.orm.jdo.PersistenceManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.inject.Inject;
+import javax.jdo.JDOHelper;
+import javax.jdo.ObjectState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsStreamBundleIT extends BasePaxIT {
+
+    private static final int INSTANCE_COUNT = 55;
+    private static final int FETCH_SIZE = 10;
+    // enough streams to run out of connections, if closing a stream did not release its cursor
+    private static final int EARLY_CLOSED_STREAMS = 50;
+
+    @Inject
+    private ParcelDataService parcelDataService;
+
+    private List<String> labels;
+
+    @Before
+    public void setUp() {
+        setUpSecurityContextForDefaultUser("mdsSchemaAccess");
+        parcelDataService.deleteAll();
+
+        labels = new ArrayList<>();
+        List<Parcel> parcels = new ArrayList<>();
+        for (int i = 0; i < INSTANCE_COUNT; ++i) {
+            String label = String.format("parcel-%03d", i);
+            labels.add(label);
+            parcels.add(new Parcel(label));
+        }
+        parcelDataService.createAll(parcels);
+    }
+
+    @After
+    public void tearDown() {
+        parcelDataService.deleteAll();
+    }
+
+    @Test
+    public void shouldStreamDetachedInstancesWithBoundedPersistenceManager() {
+        List<String> streamedLabels = new ArrayList<>();
+
+        InstanceStream<Parcel> stream = parcelDataService.stream(null, FETCH_SIZE);
+        try {
+            while (stream.hasNext()) {
+                Parcel parcel = stream.next();
+
+                assertTrue(JDOHelper.isDetached(parcel));
+                assertEquals(ObjectState.DETACHED_CLEAN, JDOHelper.getObjectState(parcel));
+                assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+                // the returned instances don't pile up in the persistence manager
+                assertTrue(getManagedObjectCount() <= FETCH_SIZE);
+
+                streamedLabels.add(parcel.getLabel());
+            }
+        } finally {
+            stream.close();
+        }
+
+        assertEquals(labels, streamedLabels);
+        assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+    }
+
+    @Test
+    public void shouldEndTransactionAndReleaseCursorWhenClosedEarly() {
+        InstanceStream<Parcel> stream = parcelDataService.stream(null, FETCH_SIZE);
+        assertEquals(labels.get(0), stream.next().getLabel());
+        assertEquals(labels.get(1), stream.next().getLabel());
+
+        stream.close();
+
+        assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+        assertFalse(stream.hasNext());
+        try {
+            stream.next();
+            fail("A closed stream should not return instances");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+
+        for (int i = 0; i < EARLY_CLOSED_STREAMS; ++i) {
+            InstanceStream<Parcel> earlyClosed = parcelDataService.stream(null, FETCH_SIZE);
+            earlyClosed.next();
+            earlyClosed.close();
+        }
+
+        // the connections of the closed cursors are available again
+        assertEquals(INSTANCE_COUNT, parcelDataService.count());
+        parcelDataService.deleteAll();
+        assertEquals(0, parcelDataService.count());
+    }
+
+    private int getManagedObjectCount() {
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof PersistenceManagerHolder) {
+                return ((PersistenceManagerHolder) resource).getPersistenceManager().getManagedObjects().size();
+            }
+        }
+        throw new IllegalStateException("No persistence manager is bound to the stream transaction");
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Objects;
 import java.util.Set;
 
 import static org.motechproject.mds.builder.impl.LookupType.COUNT;
+import static org.motechproject.mds.builder.impl.LookupType.EXISTS;
 import static org.motechproject.mds.builder.impl.LookupType.SIMPLE;
 import static org.motechproject.mds.builder.impl.LookupType.WITH_QUERY_PARAMS;
 
@@ -57,13 +58,21 @@ class LookupBuilder {
 
         this.lookup = lookup;
         this.lookupType = lookupType;
-        this.lookupName = (lookupType == COUNT)
-                ? LookupName.lookupCountMethod(lookup.getMethodName())
-                : lookup.getMethodName();
+        this.lookupName = methodName(lookup, lookupType);
 
         this.schemaHolder = schemaHolder;
     }
 
+    private static String methodName(LookupDto lookup, LookupType lookupType) {
+        if (lookupType == COUNT) {
+            return LookupName.lookupCountMethod(lookup.getMethodName());
+        } else if (lookupType == EXISTS) {
+            return LookupName.lookupExistsMethod(lookup.getMethodName());
+        } else {
+            return lookup.getMethodName();
+        }
+    }
+
     CtMethod buildSignature() throws CannotCompileException, NotFoundException {
         return build(false);
     }
@@ -253,6 +262,8 @@ class LookupBuilder {
         StringBuilder sb = new StringBuilder();
         if (COUNT == lookupType) {
             sb.append("return count(properties);");
+        } else if (EXISTS == lookupType) {
+            sb.append("return exists(properties);");
         } else {
             if (lookup.isSingleObjectReturn()) {
                 sb.append("Object result = retrieveUnique(properties");
@@ -286,6 +297,8 @@ class LookupBuilder {
     private String returnType() {
         if (lookupType == LookupType.COUNT) {
             return "long";
+        } else if (lookupType == LookupType.EXISTS) {
+            return "boolean";
         } else if (lookup.isSingleObjectReturn()) {
             return className;
         } else {
@@ -320,7 +333,8 @@ class LookupBuilder {
     private String copyParamTypeFromMethod(int idx, FieldDto field) throws NotFoundException {
         for (CtMethod method : definition.getMethods()) {
             if (method.getName().equalsIgnoreCase(lookupName) ||
-                    LookupName.lookupCountMethod(method.getName()).equalsIgnoreCase(lookupName)) {
+                    LookupName.lookupCountMethod(method.getName()).equalsIgnoreCase(lookupName) ||
+                    LookupName.lookupExistsMethod(method.getName()).equalsIgnoreCase(lookupName)) {
                 CtClass[] types = method.getParameterTypes();
 
                 if (types.length > idx) {
@@ -390,7 +404,9 @@ class LookupBuilder {
         }
         sb.append(')');
 
-        if (lookup.isSingleObjectReturn()) {
+        if (lookupType == EXISTS) {
+            sb.append('Z');
+        } else if (lookup.isSingleObjectReturn()) {
             sb.append(JavassistUtil.toGenericParam(className));
         } else {
             sb.append(JavassistUtil.genericSignature(List.class.getName(), className));
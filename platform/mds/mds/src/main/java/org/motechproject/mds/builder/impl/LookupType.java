@@ -15,5 +15,9 @@ enum LookupType {
     /**
      * result count lookup.
      */
-    COUNT
+    COUNT,
+    /**
+     * result existence lookup.
+     */
+    EXISTS
 }
@@ -9,11 +9,28 @@ public class CsvImportException extends MdsException {
 
     private static final long serialVersionUID = -982424055742014159L;
 
+    private final int importedRows;
+
     public CsvImportException(String message) {
-        super(message);
+        this(message, null, 0);
     }
 
     public CsvImportException(String message, Throwable cause) {
+        this(message, cause, 0);
+    }
+
+    public CsvImportException(String message, Throwable cause, int importedRows) {
         super(message, cause);
+        this.importedRows = importedRows;
+    }
+
+    /**
+     * Returns the number of rows from the beginning of the CSV file which were imported and committed before the
+     * import failed. An import can be resumed by importing the file without these rows.
+     *
+     * @return the number of imported rows
+     */
+    public int getImportedRows() {
+        return importedRows;
     }
 }
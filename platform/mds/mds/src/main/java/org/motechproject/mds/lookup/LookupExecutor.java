@@ -15,8 +15,12 @@ import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.motechproject.mds.util.TypeHelper;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,7 +30,9 @@ import java.util.Set;
  * as a string and the lookup params in name-value map. Used both
  * by the REST api and the Databrowser UI for executing lookups based
  * on only metadata. The dataservice and metadata must be provided during
- * construction.
+ * construction. The conversions of the lookup arguments and the lookup
+ * methods are resolved on first use and reused by later executions,
+ * so an executor should be kept for as long as its metadata is valid.
  */
 public class LookupExecutor {
 
@@ -36,6 +42,13 @@ public class LookupExecutor {
     private final Class entityClass;
     private final ClassLoader classLoader;
 
+    private volatile ArgumentConverter[] converters;
+    private volatile List<Class> argTypes;
+
+    private volatile MethodHandle lookupHandle;
+    private volatile MethodHandle lookupWithParamsHandle;
+    private volatile MethodHandle countHandle;
+
     public LookupExecutor(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
         this.dataService = dataService;
         this.lookup = lookup;
@@ -50,63 +63,107 @@ public class LookupExecutor {
 
     public Object execute(Map<String, ?> lookupMap, QueryParams queryParams) {
         List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
+        MethodHandle handle;
 
         if (queryParams != null) {
             args.add(queryParams);
-            argTypes.add(QueryParams.class);
-        }
 
-        try {
-            return MethodUtils.invokeMethod(dataService, lookup.getMethodName(),
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(), e);
+            if (lookupWithParamsHandle == null) {
+                List<Class> types = new ArrayList<>(getArgTypes());
+                types.add(QueryParams.class);
+                lookupWithParamsHandle = resolve(lookup.getMethodName(), types, "Unable to execute lookup ");
+            }
+            handle = lookupWithParamsHandle;
+        } else {
+            if (lookupHandle == null) {
+                lookupHandle = resolve(lookup.getMethodName(), getArgTypes(), "Unable to execute lookup ");
+            }
+            handle = lookupHandle;
         }
+
+        return invoke(handle, args, "Unable to execute lookup ");
     }
 
     public long executeCount(Map<String, ?> lookupMap) {
         List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
 
-        String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
+        if (countHandle == null) {
+            String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
+            countHandle = resolve(countMethodName, getArgTypes(), "Unable to execute count lookup ");
+        }
+
+        return (long) invoke(countHandle, args, "Unable to execute count lookup ");
+    }
+
+    /**
+     * Finds the lookup method matching the given argument types, the same way {@link MethodUtils#invokeMethod} does,
+     * and adapts it, so that it can be invoked with the data service and an array of arguments.
+     */
+    private MethodHandle resolve(String methodName, List<Class> types, String errorMessage) {
+        Class[] typesArray = types.toArray(new Class[types.size()]);
+        Method method = MethodUtils.getMatchingAccessibleMethod(dataService.getClass(), methodName, typesArray);
+
+        if (method == null) {
+            throw new LookupExecutorException(errorMessage + lookup.getLookupName(), new NoSuchMethodException(
+                    "No such accessible method: " + methodName + "() on object: " + dataService.getClass().getName()));
+        }
 
         try {
-            return (long) MethodUtils.invokeMethod(dataService, countMethodName,
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName(), e);
+            return MethodHandles.publicLookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(typesArray.length + 1))
+                    .asSpreader(Object[].class, typesArray.length);
+        } catch (IllegalAccessException e) {
+            throw new LookupExecutorException(errorMessage + lookup.getLookupName(), e);
         }
     }
 
+    private Object invoke(MethodHandle handle, List<Object> args, String errorMessage) {
+        try {
+            return (Object) handle.invokeExact((Object) dataService, args.toArray(new Object[args.size()]));
+        } catch (Throwable e) {
+            throw new LookupExecutorException(errorMessage + lookup.getLookupName(), e);
+        }
+    }
 
     private List<Object> getLookupArgs(Map<String, ?> paramMap) {
-        List<Object> args = new ArrayList<>();
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-            if (field == null) {
-                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-            }
+        ArgumentConverter[] argumentConverters = getConverters();
+        List<Object> args = new ArrayList<>(argumentConverters.length + 1);
 
-            Object val = paramMap.get(lookupField.getLookupFieldName());
+        for (ArgumentConverter converter : argumentConverters) {
+            args.add(converter.convert(paramMap.get(converter.lookupFieldName), classLoader));
+        }
 
-            String typeClass = getTypeClass(field);
-            String genericType = getGenericTypeClass(field);
+        return args;
+    }
 
-            Object arg;
-            if (lookupField.getType() == LookupFieldType.RANGE) {
-                arg = TypeHelper.toRange(val, typeClass);
-            } else if (lookupField.getType() == LookupFieldType.SET) {
-                arg = TypeHelper.toSet(val, typeClass, classLoader);
-            } else {
-                arg = TypeHelper.parse(val, lookupField.isUseGenericParam() ? genericType : typeClass, classLoader);
+    private ArgumentConverter[] getConverters() {
+        if (converters == null) {
+            List<ArgumentConverter> list = new ArrayList<>();
+
+            for (LookupFieldDto lookupField : lookup.getLookupFields()) {
+                FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
+                if (field == null) {
+                    throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
+                }
+
+                String typeClass = getTypeClass(field);
+                String genericType = getGenericTypeClass(field);
+
+                list.add(new ArgumentConverter(lookupField.getLookupFieldName(), lookupField.getType(),
+                        lookupField.isUseGenericParam() ? genericType : typeClass, typeClass));
             }
 
-            args.add(arg);
+            converters = list.toArray(new ArgumentConverter[list.size()]);
         }
-        return args;
+
+        return converters;
+    }
+
+    private List<Class> getArgTypes() {
+        if (argTypes == null) {
+            argTypes = Collections.unmodifiableList(buildArgTypes());
+        }
+        return argTypes;
     }
 
     private String getTypeClass(FieldDto field) {
@@ -186,4 +243,38 @@ public class LookupExecutor {
 
         return typeClassName;
     }
+
+    /**
+     * Converts the value given for a lookup field to the type of the corresponding lookup argument. The type of the
+     * argument is resolved from the field metadata once, when the converter is created.
+     */
+    private static final class ArgumentConverter {
+
+        private final String lookupFieldName;
+        private final LookupFieldType type;
+        private final String valueTypeClass;
+        private final String typeClass;
+
+        private ArgumentConverter(String lookupFieldName, LookupFieldType type, String valueTypeClass,
+                                  String typeClass) {
+            this.lookupFieldName = lookupFieldName;
+            this.type = type;
+            this.valueTypeClass = valueTypeClass;
+            this.typeClass = typeClass;
+        }
+
+        private Object convert(Object val, ClassLoader classLoader) {
+            Object arg;
+
+            if (type == LookupFieldType.RANGE) {
+                arg = TypeHelper.toRange(val, typeClass);
+            } else if (type == LookupFieldType.SET) {
+                arg = TypeHelper.toSet(val, typeClass, classLoader);
+            } else {
+                arg = TypeHelper.parse(val, valueTypeClass, classLoader);
+            }
+
+            return arg;
+        }
+    }
 }
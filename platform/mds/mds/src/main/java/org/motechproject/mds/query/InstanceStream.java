@@ -0,0 +1,29 @@
+package org.motechproject.mds.query;
+
+import java.util.Iterator;
+
+/**
+ * An iterator over instances read from the database as they are needed, instead of all at once. The instances
+ * returned by the stream are detached and the stream does not keep references to them, so iterating over it
+ * requires constant memory, regardless of the number of instances. The stream must be iterated and closed by the
+ * thread that opened it, since it keeps the database cursor and the transaction open until it is closed.
+ * <p/>
+ * Usage:
+ * <pre>
+ * try (InstanceStream&lt;Patient&gt; stream = patientDataService.stream(null, 500)) {
+ *     while (stream.hasNext()) {
+ *         process(stream.next());
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the instances
+ */
+public interface InstanceStream<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * Closes the database cursor behind this stream. Closing a stream which is already closed has no effect.
+     */
+    @Override
+    void close();
+}
@@ -148,6 +148,38 @@ public final class QueryUtil {
         query.setResult("count(this)");
     }
 
+    /**
+     * Limits the query to a single result, which is enough to check whether any instance matches it.
+     *
+     * @param query the query to limit, not null
+     */
+    public static void setExistsResult(Query query) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+        query.setRange(0, 1);
+    }
+
+    /**
+     * Makes the query read its results from a forward-only cursor as they are iterated over, instead of loading all
+     * of them when it is executed. The results are not cached by the query, so that they can be garbage collected
+     * once they were processed. Note that MySQL only streams the results if cursor fetching is enabled in the
+     * connection URL (useCursorFetch=true).
+     *
+     * @param query the query to modify, not null
+     * @param fetchSize the number of rows fetched from the database at once
+     */
+    public static void useStreaming(Query query, int fetchSize) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+        query.getFetchPlan().setFetchSize(fetchSize);
+        query.addExtension("datanucleus.rdbms.query.resultSetType", "forward-only");
+        query.addExtension("datanucleus.rdbms.query.fetchDirection", "forward");
+        query.addExtension("datanucleus.query.resultCacheType", "none");
+        query.addExtension("datanucleus.query.loadResultsAtCommit", "false");
+    }
+
     private static String getFieldType(String property, Map<String, String> fieldTypeMap, Object value) {
         String type = null;
 
@@ -1,6 +1,7 @@
 package org.motechproject.mds.repository;
 
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.InstanceStream;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
@@ -28,6 +29,11 @@ import java.util.Map;
 @Repository
 public abstract class MotechDataRepository<T> extends AbstractRepository {
 
+    /**
+     * The maximum number of ids bound to a single query, well below the bind parameter limits of the databases.
+     */
+    public static final int MAX_KEYS_PER_QUERY = 1000;
+
     private Class<T> classType;
     private Integer fetchDepth;
     private Map<String, String> fieldTypeMap;
@@ -82,17 +88,36 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().getObjectById(classType, key);
     }
 
+    /**
+     * Retrieves the instances with the given ids. The ids are sent to the database in chunks of at most
+     * {@link #MAX_KEYS_PER_QUERY}, since each of them is bound as a separate query parameter.
+     *
+     * @param keys the ids of the instances
+     * @return the instances which exist, in no particular order
+     */
     public List<T> retrieveAll(Collection<Long> keys) {
-        Query query = getPersistenceManager().newQuery(classType);
-        query.setFilter(":keys.contains(this.id)");
-        Collection result = (Collection) query.execute(keys);
-        return new ArrayList<>(result);
+        List<T> instances = new ArrayList<>(keys.size());
+        List<Long> keyList = new ArrayList<>(keys);
+
+        for (int from = 0; from < keyList.size(); from += MAX_KEYS_PER_QUERY) {
+            List<Long> chunk = keyList.subList(from, Math.min(from + MAX_KEYS_PER_QUERY, keyList.size()));
+
+            Query query = getPersistenceManager().newQuery(classType);
+            query.setFilter(":keys.contains(this.id)");
+            instances.addAll((Collection<T>) query.execute(new ArrayList<>(chunk)));
+        }
+
+        return instances;
     }
 
     public T create(T object) {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> createAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -151,6 +176,26 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return new ArrayList<>(collection);
     }
 
+    public InstanceStream<T> stream(QueryParams queryParams, InstanceSecurityRestriction restriction, int fetchSize) {
+        Query query = createQuery(new String[0], new Object[0], restriction);
+        QueryUtil.setQueryParams(query, queryParams);
+        QueryUtil.useStreaming(query, fetchSize);
+
+        Collection<T> result = (Collection<T>) QueryExecutor.execute(query, restriction);
+
+        return new QueryResultStream<>(getPersistenceManager(), query, result);
+    }
+
+    public InstanceStream<T> streamForFilters(Filters filters, QueryParams queryParams,
+                                              InstanceSecurityRestriction restriction, int fetchSize) {
+        Query query = queryForFilters(filters, queryParams, restriction);
+        QueryUtil.useStreaming(query, fetchSize);
+
+        Collection<T> result = (Collection<T>) QueryExecutor.executeWithFilters(query, filters, restriction);
+
+        return new QueryResultStream<>(getPersistenceManager(), query, result);
+    }
+
     public T retrieve(String property, Object value) {
         return retrieve(new String[]{property}, new Object[]{value}, null);
     }
@@ -182,17 +227,32 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public boolean exists(String[] properties, Object[] values) {
-        return !retrieveAll(properties, values, null).isEmpty();
+        return exists(properties, values, null);
+    }
+
+    public boolean exists(String[] properties, Object[] values, InstanceSecurityRestriction restriction) {
+        Query query = createQuery(properties, values, restriction);
+        QueryUtil.setExistsResult(query);
+
+        return isNotEmpty(QueryExecutor.executeWithArray(query, values, restriction));
     }
 
     public T update(T object) {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> updateAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -236,6 +296,13 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return (long) QueryExecutor.executeWithFilters(query, filters, restriction);
     }
 
+    public boolean existsForFilters(Filters filters, InstanceSecurityRestriction restriction) {
+        Query query = queryForFilters(filters, null, restriction);
+        QueryUtil.setExistsResult(query);
+
+        return isNotEmpty(QueryExecutor.executeWithFilters(query, filters, restriction));
+    }
+
     public long count(List<Property> properties, InstanceSecurityRestriction restriction) {
         Query query = createQuery(properties, restriction);
         QueryUtil.setCountResult(query);
@@ -243,6 +310,17 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return (long) QueryExecutor.executeWithArray(query, properties);
     }
 
+    public boolean exists(List<Property> properties, InstanceSecurityRestriction restriction) {
+        Query query = createQuery(properties, restriction);
+        QueryUtil.setExistsResult(query);
+
+        return isNotEmpty(QueryExecutor.executeWithArray(query, properties));
+    }
+
+    private boolean isNotEmpty(Object result) {
+        return !((Collection) result).isEmpty();
+    }
+
     private Query createQuery(String[] properties, Object[] values, InstanceSecurityRestriction restriction) {
         Query query = getPersistenceManager().newQuery(classType);
         QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction);
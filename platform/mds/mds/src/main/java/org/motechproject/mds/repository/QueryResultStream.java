@@ -0,0 +1,63 @@
+package org.motechproject.mds.repository;
+
+import org.motechproject.mds.query.InstanceStream;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link InstanceStream} over the lazily loaded result of a JDO query. Each instance is detached as it is returned
+ * and then made transient, which removes it from the cache of the persistence manager. An evicted instance would stay
+ * in that cache, and would be detached once more when the transaction commits.
+ *
+ * @param <T> the type of the instances
+ */
+public class QueryResultStream<T> implements InstanceStream<T> {
+
+    private final PersistenceManager persistenceManager;
+    private final Query query;
+    private final Collection<T> result;
+    private final Iterator<T> iterator;
+    private boolean closed;
+
+    QueryResultStream(PersistenceManager persistenceManager, Query query, Collection<T> result) {
+        this.persistenceManager = persistenceManager;
+        this.query = query;
+        this.result = result;
+        this.iterator = result.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (closed) {
+            throw new NoSuchElementException("The stream is closed");
+        }
+
+        T instance = iterator.next();
+        T detached = persistenceManager.detachCopy(instance);
+        persistenceManager.makeTransient(instance);
+
+        return detached;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Instances can't be removed through a stream");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            query.close(result);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.motechproject.mds.exception.object.ObjectNotFoundException;
 import org.motechproject.mds.exception.object.ObjectUpdateException;
 import org.motechproject.mds.exception.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.InstanceStream;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
@@ -34,6 +35,7 @@ import org.springframework.orm.jdo.JdoTransactionManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -146,6 +148,20 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        List<T> createdInstances = repository.createAll(objects);
+
+        if (allowCreateEvent) {
+            sendEventsAfterCommit(createdInstances, CREATE);
+        }
+
+        return createdInstances;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
@@ -169,6 +185,38 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.retrieveAll(queryParams, securityRestriction);
     }
 
+    @Override
+    public InstanceStream<T> stream(QueryParams queryParams, int fetchSize) {
+        QueryParams params = queryParams == null ? QueryParams.ORDER_ID_ASC : queryParams;
+        TransactionStatus status = beginStreamTransaction();
+
+        try {
+            InstanceSecurityRestriction securityRestriction = validateCredentials();
+            InstanceStream<T> stream = repository.stream(params, securityRestriction, fetchSize);
+
+            return new TransactionalInstanceStream<>(stream, transactionManager, status);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+    }
+
+    @Override
+    public InstanceStream<T> streamForFilters(Filters filters, QueryParams queryParams, int fetchSize) {
+        TransactionStatus status = beginStreamTransaction();
+
+        try {
+            InstanceSecurityRestriction securityRestriction = validateCredentials();
+            InstanceStream<T> stream = repository.streamForFilters(filters, queryParams, securityRestriction,
+                    fetchSize);
+
+            return new TransactionalInstanceStream<>(stream, transactionManager, status);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
     public T update(final T object) {
@@ -193,6 +241,44 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects) {
+        List<T> result = new ArrayList<>(objects.size());
+        List<T> persistent = new ArrayList<>();
+        List<Integer> persistentIndexes = new ArrayList<>();
+
+        for (T object : objects) {
+            if (JDOHelper.getObjectState(object) == ObjectState.TRANSIENT) {
+                // sends its own CRUD event
+                result.add(updateFromTransient(object));
+            } else {
+                persistentIndexes.add(result.size());
+                persistent.add(object);
+                result.add(null);
+            }
+        }
+
+        if (!persistent.isEmpty()) {
+            validateCredentialsForAll(persistent);
+
+            for (T object : persistent) {
+                updateModificationData(object);
+            }
+
+            List<T> updatedInstances = repository.updateAll(persistent);
+            for (int i = 0; i < updatedInstances.size(); ++i) {
+                result.set(persistentIndexes.get(i), updatedInstances.get(i));
+            }
+
+            if (allowUpdateEvent) {
+                sendEventsAfterCommit(updatedInstances, UPDATE);
+            }
+        }
+
+        return result;
+    }
+
     @Override
     @Transactional
     public T createOrUpdate (final T object) {
@@ -279,6 +365,32 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
+    @Override
+    @Transactional
+    public void deleteAll(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+
+        InstanceSecurityRestriction restriction = validateCredentials();
+        List<T> existing = repository.retrieveAll(ids);
+
+        checkInstancesAccess(existing, restriction);
+
+        // the ids can't be read after the instances are deleted
+        final List<Long> deletedIds = getIds(existing);
+        repository.deleteAll(existing);
+
+        if (allowDeleteEvent) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    sendEvents(deletedIds, DELETE);
+                }
+            });
+        }
+    }
+
     @Override
     @Transactional
     public void deleteById(long id) {
@@ -355,6 +467,13 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.count(securityRestriction);
     }
 
+    @Override
+    @Transactional
+    public boolean exists() {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.exists(new String[0], new Object[0], securityRestriction);
+    }
+
     @Override
     @Transactional
     public Object getDetachedField(T instance, String fieldName) {
@@ -375,6 +494,13 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.countForFilters(filters, securityRestriction);
     }
 
+    @Override
+    @Transactional
+    public boolean existsForFilters(Filters filters) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.existsForFilters(filters, securityRestriction);
+    }
+
     @Override
     @Transactional
     public void deleteAll() {
@@ -480,6 +606,11 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.count(properties, securityRestriction);
     }
 
+    protected boolean exists(List<Property> properties) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return repository.exists(properties, securityRestriction);
+    }
+
     protected InstanceSecurityRestriction validateCredentials() {
         return validateCredentials(null);
     }
@@ -496,6 +627,23 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return restriction;
     }
 
+    /**
+     * Checks the access to all the given instances at once. If the entity is restricted by owner or creator, the
+     * instances are retrieved with a single query and the current user is resolved only once.
+     *
+     * @param instances the instances to check
+     * @return the security restriction of the entity
+     */
+    protected InstanceSecurityRestriction validateCredentialsForAll(Collection<T> instances) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        if (!restriction.isEmpty() && !instances.isEmpty()) {
+            checkInstancesAccess(repository.retrieveAll(getIds(instances)), restriction);
+        }
+
+        return restriction;
+    }
+
     protected void verifySchemaVersion(Object record, Long recordId, boolean forTrash) {
         String schemaField;
         if (forTrash) {
@@ -512,11 +660,31 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private InstanceSecurityRestriction checkInstanceAccess(T instance, InstanceSecurityRestriction restriction) {
         T fromDb = repository.retrieve(getId(instance));
 
-        String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
-        String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
+        if (!isAuthorized(fromDb, restriction, getUsername())) {
+            throw new SecurityException();
+        }
+
+        return restriction;
+    }
+
+    private void checkInstancesAccess(Collection<T> fromDb, InstanceSecurityRestriction restriction) {
+        if (restriction.isEmpty()) {
+            return;
+        }
 
         String username = getUsername();
 
+        for (T instance : fromDb) {
+            if (!isAuthorized(instance, restriction, username)) {
+                throw new SecurityException();
+            }
+        }
+    }
+
+    private boolean isAuthorized(T fromDb, InstanceSecurityRestriction restriction, String username) {
+        String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
+        String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
+
         boolean authorized = false;
 
         if (restriction.isByOwner()) {
@@ -525,11 +693,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             authorized = StringUtils.equals(username, creator);
         }
 
-        if (!authorized) {
-            throw new SecurityException();
-        }
-
-        return restriction;
+        return authorized;
     }
 
     private void sendEvent(Long id, CrudEventType action) {
@@ -538,6 +702,43 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         osgiEventProxy.sendEvent(subject, params);
     }
 
+    private void sendEvents(List<Long> ids, CrudEventType action) {
+        String subject = createSubject(module, namespace, entityName, action);
+        String className = getClassType().getName();
+
+        for (Long id : ids) {
+            osgiEventProxy.sendEvent(subject, buildEventParams(module, namespace, entityName, className, id));
+        }
+    }
+
+    private void sendEventsAfterCommit(final List<T> instances, final CrudEventType action) {
+        // a single synchronization for the whole batch, the ids are assigned by the time of the commit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                sendEvents(getIds(instances), action);
+            }
+        });
+    }
+
+    private TransactionStatus beginStreamTransaction() {
+        // the transaction can't be bound to a method call, since the cursor stays open until the stream is closed
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+
+        return transactionManager.getTransaction(definition);
+    }
+
+    private List<Long> getIds(Collection<T> instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+
+        for (T instance : instances) {
+            ids.add((Long) getId(instance));
+        }
+
+        return ids;
+    }
+
     protected Object getId(T instance) {
         return PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
     }
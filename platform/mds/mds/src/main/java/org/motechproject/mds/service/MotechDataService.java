@@ -3,6 +3,7 @@ package org.motechproject.mds.service;
 import org.motechproject.mds.exception.audit.HistoryInstanceNotFoundException;
 import org.motechproject.mds.exception.audit.TrashInstanceNotFoundException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.InstanceStream;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
@@ -30,6 +31,15 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS. The instances are persisted together and the access to the entity is
+     * checked only once. The CRUD events for the created instances are sent after the transaction commits.
+     *
+     * @param objects instances to create
+     * @return created instances, in the same order as the given ones
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -55,6 +65,28 @@ public interface MotechDataService<T> {
      */
     List<T> retrieveAll(QueryParams queryParams);
 
+    /**
+     * Retrieves instances of type {@param <T>} one by one, using a database cursor, so that any number of instances
+     * can be processed in constant memory. The returned stream keeps a transaction open until it is closed, and it
+     * must be used only by the thread which opened it.
+     *
+     * @param queryParams query parameters to be used retrieving instances, null for all instances ordered by id
+     * @param fetchSize the number of instances fetched from the database at once
+     * @return the stream of instances, to be closed once processed
+     */
+    InstanceStream<T> stream(QueryParams queryParams, int fetchSize);
+
+    /**
+     * Retrieves instances of type {@param <T>} matching the given filters one by one, using a database cursor. See
+     * {@link #stream(QueryParams, int)} for details.
+     *
+     * @param filters filters to use filtering instances
+     * @param queryParams query parameters to be used retrieving instances
+     * @param fetchSize the number of instances fetched from the database at once
+     * @return the stream of instances, to be closed once processed
+     */
+    InstanceStream<T> streamForFilters(Filters filters, QueryParams queryParams, int fetchSize);
+
     /**
      * Updates the given instance in MDS.
      *
@@ -63,6 +95,16 @@ public interface MotechDataService<T> {
      */
     T update(T object);
 
+    /**
+     * Updates the given instances in MDS. Instances which are not persistent are updated one by one, as with
+     * {@link #updateFromTransient(Object)}, the remaining ones are persisted together. The access to the instances is
+     * checked with a single query and the CRUD events for the updated instances are sent after the transaction commits.
+     *
+     * @param objects instances to update
+     * @return updated instances, in the same order as the given ones
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Updates the given instance in MDS if it exists (checks the presence of the instances id to verify that)
      * or creates a new one if it doesn't.
@@ -146,6 +188,14 @@ public interface MotechDataService<T> {
      */
     long count();
 
+    /**
+     * Checks whether there is at least one instance. Only a single instance is looked up, regardless of the number
+     * of instances.
+     *
+     * @return true if there are any instances, false otherwise
+     */
+    boolean exists();
+
     /**
      * Makes instance persistent and retrieves field values from that persisted instance.
      *
@@ -173,11 +223,29 @@ public interface MotechDataService<T> {
      */
     long countForFilters(Filters filters);
 
+    /**
+     * Checks whether at least one instance matches the given filter. Only a single instance is looked up, regardless
+     * of the number of matching instances.
+     *
+     * @param filters filters to use
+     * @return true if any instance matches the filters, false otherwise
+     */
+    boolean existsForFilters(Filters filters);
+
     /**
      * Removes all instances of type {@param <T>} from MDS.
      */
     void deleteAll();
 
+    /**
+     * Removes the instances with the given ids from MDS. The instances are retrieved with a single query and deleted
+     * together. Ids of instances which do not exist are ignored. The CRUD events for the deleted instances are sent
+     * after the transaction commits.
+     *
+     * @param ids ids of the instances to remove
+     */
+    void deleteAll(Collection<Long> ids);
+
     /**
      * Allows to execute custom query in MDS. Users are supposed to implement the {@link QueryExecution}
      * interface and override its {@link QueryExecution#execute(javax.jdo.Query, org.motechproject.mds.util.InstanceSecurityRestriction)}
@@ -0,0 +1,53 @@
+package org.motechproject.mds.service;
+
+import org.motechproject.mds.query.InstanceStream;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * An {@link InstanceStream} which finishes the transaction it was opened in when it is closed.
+ *
+ * @param <T> the type of the instances
+ */
+class TransactionalInstanceStream<T> implements InstanceStream<T> {
+
+    private final InstanceStream<T> stream;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionStatus status;
+
+    TransactionalInstanceStream(InstanceStream<T> stream, PlatformTransactionManager transactionManager,
+                                TransactionStatus status) {
+        this.stream = stream;
+        this.transactionManager = transactionManager;
+        this.status = status;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return stream.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return stream.next();
+    }
+
+    @Override
+    public void remove() {
+        stream.remove();
+    }
+
+    @Override
+    public void close() {
+        if (status.isCompleted()) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } finally {
+            // nothing was changed, the transaction is only finished
+            transactionManager.commit(status);
+        }
+    }
+}
@@ -27,6 +27,17 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
         });
     }
 
+    @Override
+    protected boolean exists(final List<Property> properties) {
+        return doInTransaction(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(TransactionStatus status) {
+                InstanceSecurityRestriction securityRestriction = validateCredentials();
+                return getRepository().exists(properties, securityRestriction);
+            }
+        });
+    }
+
     @Override
     protected List<T> retrieveAll(final List<Property> properties) {
         return doInTransaction(new TransactionCallback<List<T>>() {
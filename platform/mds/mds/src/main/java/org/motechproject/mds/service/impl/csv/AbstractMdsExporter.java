@@ -8,16 +8,22 @@ import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.exception.csv.DataExportException;
 import org.motechproject.mds.exception.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.query.InstanceStream;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TableWriter;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +40,11 @@ import java.util.TreeSet;
  */
 public abstract class AbstractMdsExporter {
 
+    /**
+     * The number of instances read from the database at once. Exports never hold more instances in memory.
+     */
+    private static final int CHUNK_SIZE = 500;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -67,24 +78,63 @@ public abstract class AbstractMdsExporter {
         try {
             writer.writeHeader(orderedHeaders);
 
-            long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
-
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
+            RowWriter rowWriter = new RowWriter(writer, fieldMap, orderedHeaders, exportCustomizer);
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
+            if (StringUtils.isBlank(lookupName)) {
+                exportAll(dataService, params, rowWriter);
+            } else {
+                exportLookupResults(entityInfo.getClassName(), lookupName, lookupFields, params, rowWriter);
             }
 
-            return rowsExported;
+            return rowWriter.getRowsExported();
         } catch (IOException e) {
             throw new DataExportException("IO Error when writing data", e);
         }
     }
 
+    private void exportAll(MotechDataService dataService, QueryParams params, RowWriter rowWriter) throws IOException {
+        // instances are read from a cursor and evicted once read, so they are never all held in memory
+        try (InstanceStream<?> stream = dataService.stream(params, CHUNK_SIZE)) {
+            while (stream.hasNext()) {
+                rowWriter.write(stream.next());
+            }
+        }
+    }
+
+    private void exportLookupResults(String className, String lookupName, Map<String, Object> lookupFields,
+                                     QueryParams params, RowWriter rowWriter) throws IOException {
+        if (params != null && params.isPagingSet()) {
+            // the caller already limited the number of exported instances
+            rowWriter.writeAll(mdsLookupService.findMany(className, lookupName, lookupFields, params));
+            return;
+        }
+
+        List<Order> orderList = params == null ? new ArrayList<Order>() : new ArrayList<>(params.getOrderList());
+        if (!new QueryParams(orderList).containsOrderOnField(Constants.Util.ID_FIELD_NAME)) {
+            // pages must not overlap, so the instances need a unique order
+            orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+
+        int page = 1;
+        List<Object> chunk;
+        do {
+            chunk = mdsLookupService.findMany(className, lookupName, lookupFields,
+                    new QueryParams(page, CHUNK_SIZE, orderList));
+            rowWriter.writeAll(chunk);
+            evict(chunk);
+            page++;
+        } while (chunk.size() == CHUNK_SIZE);
+    }
+
+    private void evict(List<Object> instances) {
+        if (!instances.isEmpty()) {
+            PersistenceManager pm = JDOHelper.getPersistenceManager(instances.get(0));
+            if (pm != null) {
+                pm.evictAll(instances);
+            }
+        }
+    }
+
     protected EntityInfo getEntity(long entityId) {
         EntityInfo entityInfo = entityInfoReader.getEntityInfo(entityId);
         if (entityInfo == null) {
@@ -129,19 +179,6 @@ public abstract class AbstractMdsExporter {
         return fieldNames.toArray(new String[fieldNames.size()]);
     }
 
-    private void buildCsvRow(Map<String, String> row, Map<String, FieldDto> fieldMap, Object instance, String[] headers,
-                             CsvExportCustomizer exportCustomizer) {
-        row.clear();
-        for (String fieldName : headers) {
-            FieldDto field = fieldMap.get(fieldName);
-
-            Object value = PropertyUtil.safeGetProperty(instance, field.getBasic().getName());
-            String csvValue = exportCustomizer.formatField(field, value);
-
-            row.put(fieldName, csvValue);
-        }
-    }
-
     protected BundleContext getBundleContext() {
         return bundleContext;
     }
@@ -153,4 +190,51 @@ public abstract class AbstractMdsExporter {
     protected EntityInfoReader getEntityInfoReader() {
         return entityInfoReader;
     }
+
+    /**
+     * Writes instances as rows of the exported table, one at a time, so that only the row being written is held
+     * by the exporter.
+     */
+    private static final class RowWriter {
+
+        private final TableWriter writer;
+        private final Map<String, FieldDto> fieldMap;
+        private final String[] headers;
+        private final CsvExportCustomizer exportCustomizer;
+        private final Map<String, String> row = new HashMap<>();
+        private long rowsExported;
+
+        private RowWriter(TableWriter writer, Map<String, FieldDto> fieldMap, String[] headers,
+                          CsvExportCustomizer exportCustomizer) {
+            this.writer = writer;
+            this.fieldMap = fieldMap;
+            this.headers = headers;
+            this.exportCustomizer = exportCustomizer;
+        }
+
+        private void writeAll(List<Object> instances) throws IOException {
+            for (Object instance : instances) {
+                write(instance);
+            }
+        }
+
+        private void write(Object instance) throws IOException {
+            row.clear();
+            for (String fieldName : headers) {
+                FieldDto field = fieldMap.get(fieldName);
+
+                Object value = PropertyUtil.safeGetProperty(instance, field.getBasic().getName());
+                String csvValue = exportCustomizer.formatField(field, value);
+
+                row.put(fieldName, csvValue);
+            }
+
+            writer.writeRow(row, headers);
+            rowsExported++;
+        }
+
+        private long getRowsExported() {
+            return rowsExported;
+        }
+    }
 }
@@ -0,0 +1,214 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.exception.csv.CsvImportException;
+import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.service.CsvImportCustomizer;
+import org.motechproject.mds.service.DefaultCsvImportCustomizer;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up the instances referenced by a chunk of imported rows: the existing instances updated by the rows and
+ * the related instances of their relationship fields. All instances of one entity are retrieved with a single
+ * query for the whole chunk, instead of a query for each row and relationship. Existing instances are looked up
+ * in a single query only for the {@link DefaultCsvImportCustomizer}, custom import customizers are still asked
+ * for each row. Related instances which were not found by the single query, for example ones created earlier in the
+ * same chunk, are looked up by ID when referenced.
+ */
+class CsvChunkLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvChunkLookup.class);
+
+    private final MotechDataService dataService;
+    private final CsvImportCustomizer importCustomizer;
+    private final Map<Long, Object> existingInstances;
+    private final Map<String, Map<Long, Object>> relatedInstances = new HashMap<>();
+    private final Map<String, MotechDataService> relatedServices;
+
+    /**
+     * Looks up the instances referenced by the given rows. Must be called in the transaction in which the rows
+     * will be imported.
+     *
+     * @param rows  the parsed rows of the chunk
+     * @param dataService  the data service of the imported entity
+     * @param importCustomizer  the customizer used by the import
+     * @param bundleContext  the context used for retrieving the data services of related entities
+     * @param relatedServices  the data services of related entities, shared by the chunks of an import
+     */
+    CsvChunkLookup(List<CsvRowParser.ParsedRow> rows, MotechDataService dataService,
+                   CsvImportCustomizer importCustomizer, BundleContext bundleContext,
+                   Map<String, MotechDataService> relatedServices) {
+        this.dataService = dataService;
+        this.importCustomizer = importCustomizer;
+        this.relatedServices = relatedServices;
+        this.existingInstances = DefaultCsvImportCustomizer.class.equals(importCustomizer.getClass())
+                ? findByIds(dataService, getExistingIds(rows))
+                : null;
+
+        for (Map.Entry<String, Set<Long>> entry : getRelatedIds(rows).entrySet()) {
+            String relatedClass = entry.getKey();
+
+            MotechDataService relatedService = relatedServices.get(relatedClass);
+            if (relatedService == null) {
+                relatedService = DataServiceHelper.getDataService(bundleContext, relatedClass);
+                relatedServices.put(relatedClass, relatedService);
+            }
+
+            relatedInstances.put(relatedClass, findByIds(relatedService, entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the instance updated by the given row, the same one the import customizer would return.
+     *
+     * @param row  the imported row
+     * @return the existing instance, or null if the row creates a new instance
+     * @throws CsvImportException if the row references an instance which does not exist
+     */
+    Object findExistingInstance(Map<String, String> row) {
+        if (existingInstances == null) {
+            return importCustomizer.findExistingInstance(row, dataService);
+        }
+
+        String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+        if (StringUtils.isBlank(id)) {
+            return null;
+        }
+
+        Object instance = existingInstances.get(Long.valueOf(id));
+        if (instance == null) {
+            throw new CsvImportException("Unable to update, no instance with id = " + id);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the value of a relationship field, with the parsed IDs replaced by the related instances.
+     * Instances which do not exist are left out.
+     *
+     * @param field  the relationship field
+     * @param ids  the parsed IDs, a single ID or a list of IDs
+     * @return the related instance or a collection of related instances
+     */
+    Object getRelatedValue(FieldDto field, Object ids) {
+        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
+        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
+            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
+            if (ids != null) {
+                for (Long id : (List<Long>) ids) {
+                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
+                    if (relatedObj != null) {
+                        relatedObjects.add(relatedObj);
+                    }
+                }
+            }
+            return relatedObjects;
+        } else {
+            return getRelatedObject((Long) ids, relationshipHolder.getRelatedClass());
+        }
+    }
+
+    private Object getRelatedObject(Long id, String entityClass) {
+        if (id == null) {
+            return null;
+        }
+
+        Map<Long, Object> instances = relatedInstances.get(entityClass);
+        if (!instances.containsKey(id)) {
+            // the instance could have been created by a previous row of this chunk
+            instances.put(id, relatedServices.get(entityClass).findById(id));
+        }
+
+        Object obj = instances.get(id);
+
+        if (obj == null) {
+            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                    entityClass, id);
+        }
+
+        return obj;
+    }
+
+    private Collection<Object> buildRelationshipCollection(RelationshipHolder relationshipHolder) {
+        String collectionClassName = relationshipHolder.getCollectionClassName();
+        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
+        if (collectionClass == null) {
+            return new ArrayList<>();
+        } else {
+            try {
+                return (Collection<Object>) collectionClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to parse collection type " + relationshipHolder.getCollectionClassName(), e);
+            }
+        }
+    }
+
+    private static Set<Long> getExistingIds(List<CsvRowParser.ParsedRow> rows) {
+        Set<Long> ids = new HashSet<>();
+        for (CsvRowParser.ParsedRow row : rows) {
+            String id = row.getRow().get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+            try {
+                if (StringUtils.isNotBlank(id)) {
+                    ids.add(Long.valueOf(id));
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Invalid id {}, the row will fail when imported", id);
+            }
+        }
+        return ids;
+    }
+
+    private static Map<String, Set<Long>> getRelatedIds(List<CsvRowParser.ParsedRow> rows) {
+        Map<String, Set<Long>> ids = new HashMap<>();
+        for (CsvRowParser.ParsedRow row : rows) {
+            for (CsvRowParser.ParsedValue value : row.getValues()) {
+                if (value.getField().getType().isRelationship()) {
+                    String relatedClass = new RelationshipHolder(value.getField()).getRelatedClass();
+                    if (!ids.containsKey(relatedClass)) {
+                        ids.put(relatedClass, new HashSet<Long>());
+                    }
+                    addIds(ids.get(relatedClass), value.getValue());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void addIds(Set<Long> ids, Object value) {
+        if (value instanceof Long) {
+            ids.add((Long) value);
+        } else if (value instanceof Collection) {
+            for (Object id : (Collection) value) {
+                if (id != null) {
+                    ids.add((Long) id);
+                }
+            }
+        }
+    }
+
+    private static Map<Long, Object> findByIds(MotechDataService dataService, Set<Long> ids) {
+        Map<Long, Object> instances = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Object instance : (List<Object>) dataService.findByIds(ids)) {
+                instances.put((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME), instance);
+            }
+        }
+        return instances;
+    }
+}
@@ -1,13 +1,9 @@
 package org.motechproject.mds.service.impl.csv;
 
 import org.apache.commons.lang.StringUtils;
-import org.motechproject.mds.domain.ComboboxHolder;
-import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.dto.CsvImportResults;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
-import org.motechproject.mds.dto.MetadataDto;
-import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.exception.csv.CsvImportException;
 import org.motechproject.mds.helper.DataServiceHelper;
@@ -20,26 +16,20 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
-import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
-import org.supercsv.io.CsvMapReader;
-import org.supercsv.prefs.CsvPreference;
+import org.springframework.transaction.support.TransactionCallback;
 
-import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
-
 /**
  * Component used for importing CSV records to the database.
  * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
@@ -49,6 +39,22 @@ public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    public static final int DEFAULT_IMPORT_CHUNK_SIZE = 500;
+
+    private int importChunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+
+    /**
+     * Sets the number of rows imported in a single transaction. Rows of a chunk which was committed stay imported
+     * even if a later row fails.
+     * @param importChunkSize the number of rows in a chunk, must be positive
+     */
+    public void setImportChunkSize(int importChunkSize) {
+        if (importChunkSize < 1) {
+            throw new IllegalArgumentException("Import chunk size must be positive");
+        }
+        this.importChunkSize = importChunkSize;
+    }
+
     /**
      * Imports instances of the given entity to the database.
      * @param entityId the ID of the entity for which instances will be imported
@@ -57,7 +63,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityId);
         return importCsv(entityInfo, reader, continueOnError);
@@ -72,7 +77,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityId);
         return importCsv(entityInfo, reader, importCustomizer, continueOnError);
@@ -86,7 +90,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final String entityClassName, final Reader reader, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityClassName);
         return importCsv(entityInfo, reader, continueOnError);
@@ -233,57 +236,80 @@ public class CsvImporterExporter extends AbstractMdsExporter {
     private CsvImportResults importCsv(final EntityInfo entityInfo, final Reader reader, CsvImportCustomizer importCustomizer,
                                        boolean continueOnError) {
         final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
+        final EntityDto entity = entityInfo.getEntity();
 
-        Map<String, FieldDto> fieldCacheMap = new HashMap<>();
-
-        try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+        // rows are parsed on a separate thread, while the previous chunk is being persisted
+        CsvRowParser parser = new CsvRowParser(reader, entity, entityInfo.getFieldDtos(), dataService.getClassType(),
+                importCustomizer, importChunkSize);
+        Thread parserThread = new Thread(parser, "mds-csv-import-" + entity.getName());
+        parserThread.setDaemon(true);
+        parserThread.start();
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
+        ImportProgress progress = new ImportProgress();
+        Map<String, MotechDataService> relatedServices = new HashMap<>();
 
-            Map <Integer, String> exceptions = new HashMap<>();
-
-            Map<String, String> row;
-            int rowNum = 0;
-
-            final String headers[] = csvMapReader.getHeader(true);
+        try {
+            CsvRowParser.Chunk chunk;
+            do {
+                chunk = parser.nextChunk();
+                progress.add(importChunk(chunk.getRows(), dataService, importCustomizer, relatedServices,
+                        continueOnError));
+
+                LOGGER.info("Imported {} rows of CSV file for entity {}", progress.getRows(), entity.getName());
+            } while (!chunk.isLast());
+        } catch (RuntimeException e) {
+            // chunks imported before the error are committed, the import can be resumed after them
+            String msg = String.format("%s (%d rows from the beginning of the CSV file were imported)",
+                    e.getMessage(), progress.getRows());
+            throw new CsvImportException(msg, e, progress.getRows());
+        } finally {
+            parserThread.interrupt();
+        }
 
-            while ((row = csvMapReader.read(headers)) != null) {
-                rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(entityInfo.getEntity(), row, headers, fieldCacheMap, entityInfo.getFieldDtos(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
+        return new CsvImportResults(entity, progress.getNewInstanceIDs(), progress.getUpdatedInstanceIDs(),
+                progress.getExceptions());
+    }
 
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
+    private ImportProgress importChunk(final List<CsvRowParser.ParsedRow> rows, final MotechDataService dataService,
+                                       final CsvImportCustomizer importCustomizer,
+                                       final Map<String, MotechDataService> relatedServices,
+                                       final boolean continueOnError) {
+        // each chunk is committed in its own transaction
+        return (ImportProgress) dataService.doInTransaction(new TransactionCallback<ImportProgress>() {
+            @Override
+            public ImportProgress doInTransaction(TransactionStatus status) {
+                CsvChunkLookup lookup = new CsvChunkLookup(rows, dataService, importCustomizer, getBundleContext(),
+                        relatedServices);
+                ImportProgress chunkProgress = new ImportProgress();
+
+                for (CsvRowParser.ParsedRow row : rows) {
+                    try {
+                        // import a row
+                        chunkProgress.add(importInstanceFromRow(row, lookup, dataService, importCustomizer));
+                    } catch (RuntimeException e) {
+                        if (continueOnError) {
+                            chunkProgress.addError(row.getRowNum(), e.getMessage());
+                        } else {
+                            throw e;
+                        }
                     }
                 }
-            }
 
-            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, exceptions);
-        } catch (IOException e) {
-            throw new CsvImportException("IO Error when importing CSV", e);
-        }
+                chunkProgress.setRows(rows.size());
+                return chunkProgress;
+            }
+        });
     }
 
-    private RowImportResult importInstanceFromRow(EntityDto entityDto, Map<String, String> row, String[] headers, Map<String, FieldDto> fieldMap, List<FieldDto> fields,
+    private RowImportResult importInstanceFromRow(CsvRowParser.ParsedRow parsedRow, CsvChunkLookup lookup,
                                                   MotechDataService dataService, CsvImportCustomizer importCustomizer) {
         Class entityClass = dataService.getClassType();
+        Map<String, String> row = parsedRow.getRow();
 
         boolean isNewInstance = true;
         Object instance;
         try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
+            instance = lookup.findExistingInstance(row);
             if (instance == null) {
                 LOGGER.debug("Creating new {}", entityClass.getName());
                 instance = entityClass.newInstance();
@@ -295,27 +321,22 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
         }
 
-        for (String fieldName : headers) {
-            FieldDto field = findField(fieldName, fields, fieldMap, importCustomizer);
-
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
-            }
-
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
+        if (parsedRow.getError() != null) {
+            throw parsedRow.getError();
+        }
 
-                Object parsedValue = parseValue(entityDto, csvValue, field, entityClass.getClassLoader());
+        for (CsvRowParser.ParsedValue parsedValue : parsedRow.getValues()) {
+            FieldDto field = parsedValue.getField();
+            Object value = field.getType().isRelationship()
+                    ? lookup.getRelatedValue(field, parsedValue.getValue())
+                    : parsedValue.getValue();
 
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
-                }
+            try {
+                PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), value);
+            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+                String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                        parsedValue.getColumn(), row.get(parsedValue.getColumn()));
+                throw new CsvImportException(msg, e);
             }
         }
 
@@ -331,96 +352,54 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return new RowImportResult(importedId, isNewInstance);
     }
 
-    private FieldDto findField(String fieldName, List<FieldDto> fields, Map<String, FieldDto> fieldMap, CsvImportCustomizer importCustomizer) {
-        if (!fieldMap.containsKey(fieldName)) {
-            FieldDto field = importCustomizer.findField(fieldName, fields);
-            fieldMap.put(fieldName, field);
+    /**
+     * The results of importing a part of the CSV file.
+     */
+    private static class ImportProgress {
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+        private int rows;
+
+        public void add(RowImportResult rowImportResult) {
+            // put its ID in the correct list
+            if (rowImportResult.isNewInstance()) {
+                newInstanceIDs.add(rowImportResult.getId());
+            } else {
+                updatedInstanceIDs.add(rowImportResult.getId());
+            }
         }
-        return fieldMap.get(fieldName);
-    }
 
-    private Object parseValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader entityCl) {
-        final TypeDto type = field.getType();
-
-        Object value;
-        if (type.isCombobox()) {
-            value = parseComboboxValue(entityDto, csvValue, field, entityCl);
-        } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
-        } else if (type.isMap()) {
-            MetadataDto keyMetadata = field.getMetadata(MAP_KEY_TYPE);
-            MetadataDto valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
-            String mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
-            String mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
-
-            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
-        } else {
-            value = TypeHelper.parse(csvValue, type.getTypeClass());
+        public void add(ImportProgress chunkProgress) {
+            newInstanceIDs.addAll(chunkProgress.getNewInstanceIDs());
+            updatedInstanceIDs.addAll(chunkProgress.getUpdatedInstanceIDs());
+            exceptions.putAll(chunkProgress.getExceptions());
+            rows += chunkProgress.getRows();
         }
 
-        // for strings, return a blank if the columns is in the file
-        if (value == null && String.class.equals(type.getTypeClass())) {
-            value = "";
+        public void addError(int rowNum, String message) {
+            exceptions.put(rowNum, message);
         }
 
-        return value;
-    }
-
-    private Object parseComboboxValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader classLoader) {
-        ComboboxHolder comboboxHolder = new ComboboxHolder(entityDto, field);
-        if (comboboxHolder.isCollection()) {
-            return TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(),
-                    comboboxHolder.getUnderlyingType(), classLoader);
-        } else {
-            return TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), classLoader);
+        public List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
         }
-    }
 
-    private Object parseRelationshipValue(String csvValue, FieldDto field) {
-        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
-        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
-
-            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
-                    }
-                }
-            }
-            return relatedObjects;
-        } else {
-            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
+        public List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
         }
-    }
 
-    private Collection<Object> buildRelationshipCollection(RelationshipHolder relationshipHolder) {
-        String collectionClassName = relationshipHolder.getCollectionClassName();
-        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
-        if (collectionClass == null) {
-            return new ArrayList<>();
-        } else {
-            try {
-                return (Collection<Object>) collectionClass.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new CsvImportException("Unable to parse collection type " + relationshipHolder.getCollectionClassName(), e);
-            }
+        public Map<Integer, String> getExceptions() {
+            return exceptions;
         }
-    }
-
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
 
-        if (obj == null) {
-            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
-                    entityClass, id);
+        public int getRows() {
+            return rows;
         }
 
-        return obj;
+        public void setRows(int rows) {
+            this.rows = rows;
+        }
     }
 
     /**
@@ -428,7 +407,7 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * It contains the ID of the created instance, it also contains information about whether it is a
      * new instance.
      */
-    private class RowImportResult {
+    private static class RowImportResult {
         private final Long id;
         private final boolean newInstance;
 
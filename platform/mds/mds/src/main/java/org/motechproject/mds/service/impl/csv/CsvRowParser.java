@@ -0,0 +1,302 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.MetadataDto;
+import org.motechproject.mds.dto.TypeDto;
+import org.motechproject.mds.exception.csv.CsvImportException;
+import org.motechproject.mds.service.CsvImportCustomizer;
+import org.motechproject.mds.util.TypeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvMapReader;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+
+/**
+ * Reads and parses the rows of an imported CSV file, so that the importer only has to look up the related instances
+ * and persist the parsed values. The parser is meant to be run on a separate thread. Parsed rows are handed over
+ * to the importer in chunks, and the parser stays at most a few chunks ahead of it. Relationship fields are parsed
+ * to the IDs of the related instances, which are looked up by the importer.
+ */
+class CsvRowParser implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvRowParser.class);
+
+    private static final int CHUNKS_AHEAD = 2;
+
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    private final Map<String, FieldDto> fieldMap = new HashMap<>();
+
+    private final Reader reader;
+    private final EntityDto entityDto;
+    private final List<FieldDto> fields;
+    private final Class<?> entityClass;
+    private final CsvImportCustomizer importCustomizer;
+    private final int chunkSize;
+
+    CsvRowParser(Reader reader, EntityDto entityDto, List<FieldDto> fields, Class<?> entityClass,
+                 CsvImportCustomizer importCustomizer, int chunkSize) {
+        this.reader = reader;
+        this.entityDto = entityDto;
+        this.fields = fields;
+        this.entityClass = entityClass;
+        this.importCustomizer = importCustomizer;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run() {
+        Chunk last;
+        try {
+            last = parseRows();
+        } catch (IOException e) {
+            last = new Chunk(new CsvImportException("IO Error when importing CSV", e));
+        } catch (RuntimeException e) {
+            last = new Chunk(e);
+        } catch (Error e) {
+            // the importer must not wait forever for a chunk which will never come
+            last = new Chunk(new CsvImportException("Unable to parse the CSV file", e));
+        } catch (InterruptedException e) {
+            LOGGER.debug("CSV import was stopped, the rest of the file will not be parsed");
+            return;
+        }
+
+        try {
+            chunks.put(last);
+        } catch (InterruptedException e) {
+            LOGGER.debug("CSV import was stopped before reading the last chunk");
+        }
+    }
+
+    /**
+     * Returns the next chunk of parsed rows, waiting for it if it was not parsed yet.
+     *
+     * @return the next chunk, the last chunk of the file is marked as such
+     * @throws CsvImportException if the file could not be read
+     */
+    Chunk nextChunk() {
+        Chunk chunk;
+        try {
+            chunk = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Interrupted while waiting for the CSV file to be parsed", e);
+        }
+
+        if (chunk.getError() != null) {
+            throw chunk.getError();
+        }
+
+        return chunk;
+    }
+
+    private Chunk parseRows() throws IOException, InterruptedException {
+        try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            final String[] headers = csvMapReader.getHeader(true);
+
+            List<ParsedRow> rows = new ArrayList<>(chunkSize);
+            Map<String, String> row;
+            int rowNum = 0;
+
+            while ((row = csvMapReader.read(headers)) != null) {
+                rowNum++;
+                rows.add(parseRow(rowNum, row, headers));
+
+                if (rows.size() == chunkSize) {
+                    chunks.put(new Chunk(rows, false));
+                    rows = new ArrayList<>(chunkSize);
+                }
+            }
+
+            return new Chunk(rows, true);
+        }
+    }
+
+    private ParsedRow parseRow(int rowNum, Map<String, String> row, String[] headers) {
+        List<ParsedValue> values = new ArrayList<>();
+        try {
+            for (String fieldName : headers) {
+                FieldDto field = findField(fieldName);
+
+                if (field == null) {
+                    LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                            fieldName, entityClass.getName());
+                    continue;
+                }
+
+                if (row.containsKey(fieldName)) {
+                    values.add(new ParsedValue(fieldName, field, parseValue(row.get(fieldName), field)));
+                }
+            }
+        } catch (RuntimeException e) {
+            return new ParsedRow(rowNum, row, values, e);
+        }
+
+        return new ParsedRow(rowNum, row, values, null);
+    }
+
+    private FieldDto findField(String fieldName) {
+        if (!fieldMap.containsKey(fieldName)) {
+            FieldDto field = importCustomizer.findField(fieldName, fields);
+            fieldMap.put(fieldName, field);
+        }
+        return fieldMap.get(fieldName);
+    }
+
+    private Object parseValue(String csvValue, FieldDto field) {
+        final TypeDto type = field.getType();
+
+        Object value;
+        if (type.isCombobox()) {
+            value = parseComboboxValue(csvValue, field);
+        } else if (type.isRelationship()) {
+            value = parseRelationshipIds(csvValue, field);
+        } else if (type.isMap()) {
+            MetadataDto keyMetadata = field.getMetadata(MAP_KEY_TYPE);
+            MetadataDto valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
+            String mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
+            String mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
+
+            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
+        } else {
+            value = TypeHelper.parse(csvValue, type.getTypeClass());
+        }
+
+        // for strings, return a blank if the columns is in the file
+        if (value == null && String.class.equals(type.getTypeClass())) {
+            value = "";
+        }
+
+        return value;
+    }
+
+    private Object parseComboboxValue(String csvValue, FieldDto field) {
+        ComboboxHolder comboboxHolder = new ComboboxHolder(entityDto, field);
+        if (comboboxHolder.isCollection()) {
+            return TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(),
+                    comboboxHolder.getUnderlyingType(), entityClass.getClassLoader());
+        } else {
+            return TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), entityClass.getClassLoader());
+        }
+    }
+
+    private Object parseRelationshipIds(String csvValue, FieldDto field) {
+        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
+        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
+            return TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+        } else {
+            return TypeHelper.parse(csvValue, Long.class);
+        }
+    }
+
+    /**
+     * A chunk of parsed rows, or the error which stopped the parsing of the file.
+     */
+    static final class Chunk {
+
+        private final List<ParsedRow> rows;
+        private final boolean last;
+        private final RuntimeException error;
+
+        private Chunk(List<ParsedRow> rows, boolean last) {
+            this.rows = rows;
+            this.last = last;
+            this.error = null;
+        }
+
+        private Chunk(RuntimeException error) {
+            this.rows = new ArrayList<>();
+            this.last = true;
+            this.error = error;
+        }
+
+        List<ParsedRow> getRows() {
+            return rows;
+        }
+
+        boolean isLast() {
+            return last;
+        }
+
+        private RuntimeException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * A single parsed row. The values of relationship fields are the IDs of the related instances, a single ID
+     * or a list of IDs. If a value of the row could not be parsed, the row holds the parsing error instead.
+     */
+    static final class ParsedRow {
+
+        private final int rowNum;
+        private final Map<String, String> row;
+        private final List<ParsedValue> values;
+        private final RuntimeException error;
+
+        private ParsedRow(int rowNum, Map<String, String> row, List<ParsedValue> values, RuntimeException error) {
+            this.rowNum = rowNum;
+            this.row = row;
+            this.values = values;
+            this.error = error;
+        }
+
+        int getRowNum() {
+            return rowNum;
+        }
+
+        Map<String, String> getRow() {
+            return row;
+        }
+
+        List<ParsedValue> getValues() {
+            return values;
+        }
+
+        RuntimeException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * A parsed value of a single column of a row.
+     */
+    static final class ParsedValue {
+
+        private final String column;
+        private final FieldDto field;
+        private final Object value;
+
+        private ParsedValue(String column, FieldDto field, Object value) {
+            this.column = column;
+            this.field = field;
+            this.value = value;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        FieldDto getField() {
+            return field;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+}
@@ -34,12 +34,18 @@ public class PdfTableWriter implements TableWriter {
     private static final float MARGIN = 36f;
     private static final float PAGE_HEIGHT = PageSize.A4.getWidth() - 2 * MARGIN;
     private static final float PAGE_WIDTH = PageSize.A4.getHeight() - 2 * MARGIN;
+    /**
+     * The number of rows kept in memory. Column widths are calculated from the first rows, after that full pages
+     * are written as rows are added, so that only the rows of the last, incomplete page are kept.
+     */
+    private static final int ROWS_IN_MEMORY = 500;
 
     private final PdfWriter pdfWriter;
     private final Document pdfDocument;
     private final PdfContentByte pdfCanvas;
     private PdfPTable dataTable;
     private Map<String, Float> columnsWidths;
+    private List<Integer> lastColumnsForPages;
     private int rows = 0;
     private float tableContentOffset;
 
@@ -66,6 +72,10 @@ public class PdfTableWriter implements TableWriter {
         for (String header : headers) {
             writeCell(header, row.get(header));
         }
+
+        if (rows % ROWS_IN_MEMORY == 0) {
+            writeFullPages();
+        }
     }
 
     @Override
@@ -84,15 +94,9 @@ public class PdfTableWriter implements TableWriter {
     @Override
     public void close() {
         try {
-            float[] relativeWidths = getRelativeWidths();
-
-            List<Integer> lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
-            resizeColumns(relativeWidths, lastColumnsForPages);
-            setTableContentOffset(relativeWidths[0]);
-
-            dataTable.setWidths(relativeWidths);
-            dataTable.setLockedWidth(true);
-            dataTable.setTotalWidth(calculateTotalTableWidth(relativeWidths));
+            if (lastColumnsForPages == null) {
+                layoutTable();
+            }
 
             writeTable(lastColumnsForPages);
 
@@ -104,6 +108,54 @@ public class PdfTableWriter implements TableWriter {
         }
     }
 
+    private void layoutTable() throws DocumentException {
+        float[] relativeWidths = getRelativeWidths();
+
+        lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
+        resizeColumns(relativeWidths, lastColumnsForPages);
+        setTableContentOffset(relativeWidths[0]);
+
+        dataTable.setWidths(relativeWidths);
+        dataTable.setLockedWidth(true);
+        dataTable.setTotalWidth(calculateTotalTableWidth(relativeWidths));
+    }
+
+    private void writeFullPages() {
+        try {
+            if (lastColumnsForPages == null) {
+                layoutTable();
+            }
+        } catch (DocumentException e) {
+            throw new DataExportException("Unable to add a table to the PDF file", e);
+        }
+
+        //1 is the index of first non-header row
+        int currentRow = 1;
+
+        while (pageIsFull(currentRow)) {
+            currentRow = writePages(lastColumnsForPages, currentRow);
+        }
+
+        // the written rows are no longer needed
+        for (int row = currentRow - 1; row > 0; row--) {
+            dataTable.deleteRow(row);
+        }
+    }
+
+    private boolean pageIsFull(int firstRow) {
+        // follows writePageCellByCell, using row heights instead of writing the rows
+        float y = PAGE_HEIGHT + MARGIN - dataTable.getRowHeight(0);
+        int currentRow = firstRow;
+        do {
+            if (!tableHasMoreRows(currentRow)) {
+                return false;
+            }
+            y -= dataTable.getRowHeight(currentRow);
+            currentRow++;
+        } while (nextRowFitsOnCurrentPage(y, currentRow));
+        return true;
+    }
+
     private void writeTable(List<Integer> lastColumnsForPages) {
 
         //1 is the index of first non-header row
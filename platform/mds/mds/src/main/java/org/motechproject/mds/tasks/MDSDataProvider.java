@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class responsible for all actions connected with registering MDS data provider in Task module.
@@ -44,6 +45,8 @@ public class MDSDataProvider extends AbstractDataProvider {
     private ServiceRegistration serviceRegistration;
     private EntityService entityService;
 
+    private final Map<String, CachedLookupExecutor> lookupExecutors = new ConcurrentHashMap<>();
+
     @Autowired
     public MDSDataProvider(ResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
@@ -91,6 +94,7 @@ public class MDSDataProvider extends AbstractDataProvider {
     }
 
     public void updateDataProvider(SchemaHolder schemaHolder) {
+        lookupExecutors.clear();
         setBody(mdsDataProviderBuilder.generateDataProvider(schemaHolder));
         // we unregister the service, then register again
         if (serviceRegistration != null) {
@@ -113,25 +117,17 @@ public class MDSDataProvider extends AbstractDataProvider {
     private Object findUsingLookup(String type, String lookupName, Map<String, String> lookupMap) {
         Object obj = null;
 
-        LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
-        if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
-        }
-
-        if (entity != null && lookup != null) {
-            String serviceName = MotechClassPool.getInterfaceName(type);
-            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
-
-            if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+        String serviceName = MotechClassPool.getInterfaceName(type);
+        MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
 
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
+        if (service != null) {
+            LookupExecutor executor = getLookupExecutor(type, lookupName, service);
 
+            if (executor != null) {
                 obj = executor.execute(lookupMap);
-            } else {
-                getLogger().error("Service %s not found", serviceName);
             }
+        } else if (entityService.getEntityByClassName(type) != null) {
+            getLogger().error("Service %s not found", serviceName);
         }
 
         // we allow executing lookups that return multiple objects
@@ -153,6 +149,31 @@ public class MDSDataProvider extends AbstractDataProvider {
         return result;
     }
 
+    /**
+     * Returns the executor of the given lookup, built from the entity schema on first use. Executors are kept until
+     * the schema changes, or until the data service of the entity is replaced.
+     */
+    private LookupExecutor getLookupExecutor(String type, String lookupName, MotechDataService service) {
+        String key = type + '#' + lookupName;
+        CachedLookupExecutor cached = lookupExecutors.get(key);
+
+        if (cached == null || cached.service != service) {
+            cached = null;
+
+            EntityDto entity = entityService.getEntityByClassName(type);
+            LookupDto lookup = null == entity ? null : entityService.getLookupByName(entity.getId(), lookupName);
+
+            if (lookup != null) {
+                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+
+                cached = new CachedLookupExecutor(service, new LookupExecutor(service, lookup, fieldsByName));
+                lookupExecutors.put(key, cached);
+            }
+        }
+
+        return null == cached ? null : cached.executor;
+    }
+
     private Object findById(String type, String idParam) {
         Long id = parseId(idParam);
         String serviceName = MotechClassPool.getInterfaceName(type);
@@ -194,4 +215,18 @@ public class MDSDataProvider extends AbstractDataProvider {
     public void setEntityService(EntityService entityService) {
         this.entityService = entityService;
     }
+
+    /**
+     * Lookup executor, together with the data service it was built for.
+     */
+    private static final class CachedLookupExecutor {
+
+        private final MotechDataService service;
+        private final LookupExecutor executor;
+
+        private CachedLookupExecutor(MotechDataService service, LookupExecutor executor) {
+            this.service = service;
+            this.executor = executor;
+        }
+    }
 }
@@ -41,6 +41,16 @@ public final class LookupName {
         return "count" + StringUtils.capitalize(lookupMethod(lookupNameOrMethodName));
     }
 
+    /**
+     * Builds exists lookup name. The resulting method name will be in form: <code>existsXxxYyyZzz</code>.
+     *
+     * @param lookupNameOrMethodName name of the lookup or lookup method name
+     * @return exists lookup method name
+     */
+    public static String lookupExistsMethod(String lookupNameOrMethodName) {
+        return "exists" + StringUtils.capitalize(lookupMethod(lookupNameOrMethodName));
+    }
+
     /**
      * Builds lookup field name which may contain information about the searching by relationship.
      *
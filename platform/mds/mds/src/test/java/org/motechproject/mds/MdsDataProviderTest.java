@@ -27,6 +27,8 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -148,6 +150,19 @@ public class MdsDataProviderTest {
         assertEquals("found by related field", record.getValue());
     }
 
+    @Test
+    public void shouldReadLookupMetadataOnlyOnce() {
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+        Object result = dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+
+        assertEquals("single", ((Record) result).getValue());
+        verify(entityService, times(1)).getLookupByName(ENTITY_ID, "singleLookup");
+        verify(entityService, times(1)).getLookupFieldsMapping(ENTITY_ID, "singleLookup");
+    }
+
     public static class LookupService extends DefaultMotechDataService<Record> {
 
         public Record singleLookup(String field) {
@@ -11,6 +11,7 @@ import org.motechproject.mds.util.SecurityUtil;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import javax.jdo.FetchPlan;
 import javax.jdo.Query;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,6 +22,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -109,6 +111,24 @@ public class QueryUtilTest {
         verify(query).setResult("count(this)");
     }
 
+    @Test
+    public void shouldLimitExistsQueryToOneResult() {
+        QueryUtil.setExistsResult(query);
+        verify(query).setRange(0, 1);
+    }
+
+    @Test
+    public void shouldStreamQueryResults() {
+        FetchPlan fetchPlan = mock(FetchPlan.class);
+        when(query.getFetchPlan()).thenReturn(fetchPlan);
+
+        QueryUtil.useStreaming(query, 500);
+
+        verify(fetchPlan).setFetchSize(500);
+        verify(query).addExtension("datanucleus.rdbms.query.resultSetType", "forward-only");
+        verify(query).addExtension("datanucleus.query.resultCacheType", "none");
+    }
+
     @Test
     public void shouldSetMultipleOrders() {
         QueryParams queryParams = new QueryParams(null, null, asList(new Order("field1", Order.Direction.DESC),
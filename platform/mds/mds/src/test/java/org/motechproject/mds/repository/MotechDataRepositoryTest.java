@@ -0,0 +1,65 @@
+package org.motechproject.mds.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.mds.testutil.records.Record;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechDataRepositoryTest {
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private Query query;
+
+    private MotechDataRepository<Record> repository;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(persistenceManagerFactory.getPersistenceManager()).thenReturn(persistenceManager);
+        when(persistenceManager.newQuery(Record.class)).thenReturn(query);
+        when(query.execute(any())).thenReturn(asList(new Record()));
+
+        repository = new MotechDataRepository<Record>(Record.class) { };
+        repository.setPersistenceManagerFactory(persistenceManagerFactory);
+    }
+
+    @Test
+    public void shouldRetrieveInstancesByIdsInBoundedChunks() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 2 * MotechDataRepository.MAX_KEYS_PER_QUERY + 1; ++id) {
+            ids.add(id);
+        }
+
+        List<Record> instances = repository.retrieveAll(ids);
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(query, times(3)).execute(captor.capture());
+        assertEquals(MotechDataRepository.MAX_KEYS_PER_QUERY, captor.getAllValues().get(0).size());
+        assertEquals(MotechDataRepository.MAX_KEYS_PER_QUERY, captor.getAllValues().get(1).size());
+        assertEquals(1, captor.getAllValues().get(2).size());
+        assertEquals(3, instances.size());
+    }
+}
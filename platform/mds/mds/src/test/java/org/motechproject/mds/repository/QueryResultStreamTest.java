@@ -0,0 +1,62 @@
+package org.motechproject.mds.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class QueryResultStreamTest {
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private Query query;
+
+    private List<String> result = asList("first", "second");
+
+    private QueryResultStream<String> stream;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(persistenceManager.detachCopy("first")).thenReturn("first detached");
+        when(persistenceManager.detachCopy("second")).thenReturn("second detached");
+
+        stream = new QueryResultStream<>(persistenceManager, query, result);
+    }
+
+    @Test
+    public void shouldReturnDetachedInstancesAndReleaseThem() {
+        assertTrue(stream.hasNext());
+        assertEquals("first detached", stream.next());
+        verify(persistenceManager).makeTransient("first");
+
+        assertEquals("second detached", stream.next());
+        verify(persistenceManager).makeTransient("second");
+
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void shouldCloseQueryResultOnce() {
+        stream.close();
+        stream.close();
+
+        assertFalse(stream.hasNext());
+        verify(query, times(1)).close(result);
+    }
+}
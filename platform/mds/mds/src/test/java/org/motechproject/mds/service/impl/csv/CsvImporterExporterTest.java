@@ -15,33 +15,48 @@ import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.dto.CsvImportResults;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.MetadataDto;
+import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.dto.UIDisplayFieldComparator;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.exception.csv.CsvImportException;
 import org.motechproject.mds.javassist.MotechClassPool;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.testutil.ListInstanceStream;
 import org.motechproject.mds.testutil.records.Record2;
 import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
+import org.motechproject.mds.testutil.records.SelfRelatedRecord;
+import org.motechproject.mds.util.Constants;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -66,6 +81,9 @@ public class CsvImporterExporterTest {
     private static final int FIELD_COUNT = 13;
     private static final DateTime NOW = DateTime.now();
     private static final boolean CONTINUE_ON_ERROR = false;
+    private static final long SELF_RELATED_ENTITY_ID = 4L;
+    private static final String SELF_RELATED_CLASSNAME = SelfRelatedRecord.class.getName();
+    private static final String SELF_RELATED_SERVICE_CLASSNAME = "org.motechproject.mds.test.service.SelfRelatedService";
 
     @InjectMocks
     private CsvImporterExporter csvImporterExporter = new CsvImporterExporter();
@@ -109,6 +127,15 @@ public class CsvImporterExporterTest {
     @Mock
     private MDSLookupService mdsLookupService;
 
+    @Mock
+    private EntityInfo selfRelatedEntityInfo;
+
+    @Mock
+    private ServiceReference selfRelatedServiceRef;
+
+    @Mock
+    private MotechDataService<SelfRelatedRecord> selfRelatedDataService;
+
     @Before
     public void setUp() {
         MotechClassPool.registerServiceInterface(ENTITY_CLASSNAME, DATA_SERVICE_CLASSNAME);
@@ -121,8 +148,22 @@ public class CsvImporterExporterTest {
         when(bundleContext.getService(relatedServiceRef)).thenReturn(relatedDataService);
         when(relatedDataService.getClassType()).thenReturn(RelatedClass.class);
 
-        when(relatedDataService.findById(0L)).thenReturn(new RelatedClass(0L));
-        when(relatedDataService.findById(1L)).thenReturn(new RelatedClass(1L));
+        when(relatedDataService.findByIds(anyCollection())).thenAnswer(new Answer<List<RelatedClass>>() {
+            @Override
+            public List<RelatedClass> answer(InvocationOnMock invocation) {
+                List<RelatedClass> related = new ArrayList<>();
+                for (Object id : (Collection) invocation.getArguments()[0]) {
+                    related.add(new RelatedClass((Long) id));
+                }
+                return related;
+            }
+        });
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
 
         when(entityInfoReader.getEntityInfo(ENTITY_CLASSNAME)).thenReturn(entityInfo);
         when(entityInfoReader.getEntityInfo(ENTITY_ID)).thenReturn(entityInfo);
@@ -141,18 +182,22 @@ public class CsvImporterExporterTest {
 
     @Test
     public void shouldExportAllInstancesAsCsv() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        ListInstanceStream<Record2> stream = new ListInstanceStream<>(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.stream(any(QueryParams.class), anyInt())).thenReturn(stream);
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer);
 
         assertEquals(INSTANCE_COUNT, result);
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
+        assertTrue(stream.isClosed());
+        verify(motechDataService, never()).retrieveAll(any(QueryParams.class));
     }
 
     @Test
     public void shouldUseExportCustomizer() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.stream(any(QueryParams.class), anyInt()))
+                .thenReturn(new ListInstanceStream<>(testInstances(IdMode.INCLUDE_ID)));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer, csvExportCustomizer);
@@ -176,6 +221,32 @@ public class CsvImporterExporterTest {
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
     }
 
+    @Test
+    public void shouldExportLookupResultsInChunks() {
+        List<Record2> firstChunk = new ArrayList<>();
+        while (firstChunk.size() < 500) {
+            firstChunk.addAll(testInstances(IdMode.INCLUDE_ID));
+        }
+        List<Record2> lastChunk = testInstances(IdMode.INCLUDE_ID);
+
+        when(mdsLookupService.<Record2>findMany(any(String.class), eq("lookup"), any(Map.class), any(QueryParams.class)))
+                .thenReturn(firstChunk, lastChunk);
+
+        long result = csvImporterExporter.exportCsv(ENTITY_ID, new StringWriter(), "lookup", null, null, null);
+
+        assertEquals(firstChunk.size() + lastChunk.size(), result);
+
+        ArgumentCaptor<QueryParams> paramsCaptor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(mdsLookupService, times(2)).findMany(any(String.class), eq("lookup"), any(Map.class), paramsCaptor.capture());
+
+        List<QueryParams> params = paramsCaptor.getAllValues();
+        assertEquals(2, params.size());
+        assertEquals(Integer.valueOf(1), params.get(0).getPage());
+        assertEquals(Integer.valueOf(2), params.get(1).getPage());
+        assertEquals(Integer.valueOf(500), params.get(1).getPageSize());
+        assertTrue(params.get(1).containsOrderOnField("id"));
+    }
+
     @Test
     public void shouldImportEntitiesWithIdFromCsv() {
         testImport(IdMode.INCLUDE_ID);
@@ -239,6 +310,59 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldCommitImportInChunks() {
+        csvImporterExporter.setImportChunkSize(7);
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
+
+        assertEquals(INSTANCE_COUNT, results.newInstanceCount());
+        assertEquals(listFromRangeInclusive(0, 19), results.getNewInstanceIDs());
+        verify(motechDataService, times(3)).doInTransaction(any(TransactionCallback.class));
+        // related instances are retrieved once for each chunk, not for each row
+        verify(relatedDataService, times(3)).findByIds(anyCollection());
+        verify(relatedDataService, never()).findById(anyLong());
+    }
+
+    @Test
+    public void shouldImportRelationshipsToInstancesCreatedInSameChunk() {
+        mockSelfRelatedEntity();
+        StringReader reader = new StringReader("Name,Parent\r\nroot,\r\nchild,0\r\ngrandchild,1\r\n");
+
+        CsvImportResults results = csvImporterExporter.importCsv(SELF_RELATED_ENTITY_ID, reader, CONTINUE_ON_ERROR);
+
+        assertEquals(3, results.newInstanceCount());
+
+        ArgumentCaptor<SelfRelatedRecord> captor = ArgumentCaptor.forClass(SelfRelatedRecord.class);
+        verify(selfRelatedDataService, times(3)).create(captor.capture());
+        List<SelfRelatedRecord> created = captor.getAllValues();
+
+        // the parents were created by earlier rows of the chunk, so they were not found by the chunk lookup
+        assertNull(created.get(0).getParent());
+        assertSame(created.get(0), created.get(1).getParent());
+        assertSame(created.get(1), created.get(2).getParent());
+        verify(selfRelatedDataService).findByIds(anyCollection());
+        verify(selfRelatedDataService).findById(0L);
+        verify(selfRelatedDataService).findById(1L);
+    }
+
+    @Test
+    public void shouldReportRowsImportedBeforeError() {
+        csvImporterExporter.setImportChunkSize(3);
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
+
+        try {
+            csvImporterExporter.importCsv(ENTITY_ID, reader, false);
+            fail("Expected the import to fail on the first invalid row");
+        } catch (CsvImportException e) {
+            // the first invalid row is the 4th one, so only the first chunk was committed
+            assertEquals(3, e.getImportedRows());
+        }
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
@@ -249,9 +373,13 @@ public class CsvImporterExporterTest {
                     return (Record2) invocation.getArguments()[0];
                 }
             });
+            List<Record2> existing = new ArrayList<>();
             for (long i = 0; i < INSTANCE_COUNT; i++) {
-                when(motechDataService.findById(i)).thenReturn(new Record2());
+                Record2 record = new Record2();
+                record.setId(i);
+                existing.add(record);
             }
+            when(motechDataService.findByIds(anyCollection())).thenReturn(existing);
         } else {
             when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
         }
@@ -288,6 +416,57 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private void mockSelfRelatedEntity() {
+        MotechClassPool.registerServiceInterface(SELF_RELATED_CLASSNAME, SELF_RELATED_SERVICE_CLASSNAME);
+        when(bundleContext.getServiceReference(SELF_RELATED_SERVICE_CLASSNAME)).thenReturn(selfRelatedServiceRef);
+        when(bundleContext.getService(selfRelatedServiceRef)).thenReturn(selfRelatedDataService);
+        when(selfRelatedDataService.getClassType()).thenReturn(SelfRelatedRecord.class);
+        when(selfRelatedDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+
+        final Map<Long, SelfRelatedRecord> database = new HashMap<>();
+        when(selfRelatedDataService.create(any(SelfRelatedRecord.class))).thenAnswer(new Answer<SelfRelatedRecord>() {
+            @Override
+            public SelfRelatedRecord answer(InvocationOnMock invocation) {
+                SelfRelatedRecord record = (SelfRelatedRecord) invocation.getArguments()[0];
+                record.setId((long) database.size());
+                database.put(record.getId(), record);
+                return record;
+            }
+        });
+        when(selfRelatedDataService.findByIds(anyCollection())).thenAnswer(new Answer<List<SelfRelatedRecord>>() {
+            @Override
+            public List<SelfRelatedRecord> answer(InvocationOnMock invocation) {
+                List<SelfRelatedRecord> found = new ArrayList<>();
+                for (Object id : (Collection) invocation.getArguments()[0]) {
+                    if (database.containsKey(id)) {
+                        found.add(database.get(id));
+                    }
+                }
+                return found;
+            }
+        });
+        when(selfRelatedDataService.findById(anyLong())).thenAnswer(new Answer<SelfRelatedRecord>() {
+            @Override
+            public SelfRelatedRecord answer(InvocationOnMock invocation) {
+                return database.get(invocation.getArguments()[0]);
+            }
+        });
+
+        FieldDto nameField = new FieldDto("name", "Name", TypeDto.STRING);
+        FieldDto parentField = new FieldDto("parent", "Parent", TypeDto.ONE_TO_ONE_RELATIONSHIP);
+        parentField.addMetadata(new MetadataDto(Constants.MetadataKeys.RELATED_CLASS, SELF_RELATED_CLASSNAME));
+
+        when(entityInfoReader.getEntityInfo(SELF_RELATED_ENTITY_ID)).thenReturn(selfRelatedEntityInfo);
+        when(selfRelatedEntityInfo.getClassName()).thenReturn(SELF_RELATED_CLASSNAME);
+        when(selfRelatedEntityInfo.getEntity()).thenReturn(entityDto);
+        when(selfRelatedEntityInfo.getFieldDtos()).thenReturn(Arrays.asList(nameField, parentField));
+    }
+
     private List<Record2> testInstances(IdMode idMode) {
         List<Record2> instances = new ArrayList<>();
 
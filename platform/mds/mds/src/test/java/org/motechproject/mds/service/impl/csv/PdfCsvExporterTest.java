@@ -14,7 +14,9 @@ import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.testutil.ListInstanceStream;
 import org.motechproject.mds.testutil.records.Record2;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -28,6 +30,8 @@ import java.util.List;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -74,6 +78,8 @@ public class PdfCsvExporterTest {
 
         when(bundleContext.getServiceReference(DATA_SERVICE_CLASSNAME)).thenReturn(serviceReference);
         when(bundleContext.getService(serviceReference)).thenReturn(dataService);
+        when(dataService.stream(any(QueryParams.class), anyInt()))
+                .thenReturn(new ListInstanceStream<>(new ArrayList<Record2>()));
 
         CsvTestHelper.mockRecord2Fields(entityInfo, advancedSettingsDto, browsingSettingsDto);
     }
@@ -137,6 +143,25 @@ public class PdfCsvExporterTest {
         // writePdfToFile();
     }
 
+    @Test
+    public void shouldExportPdfWithMoreRowsThanKeptInMemory() {
+        List<Record2> instances = new ArrayList<>();
+        for (int i = 0; i < 1201; i++) {
+            Record2 instance = new Record2();
+            instance.setCreator("motech");
+            instance.setValue("SomeVal" + i);
+            instances.add(instance);
+        }
+        when(dataService.stream(null, 500)).thenReturn(new ListInstanceStream<>(instances));
+
+        long result = pdfCsvExporter.exportPdf(ENTITY_ID, output);
+
+        assertEquals(1201, result);
+        assertNotSame(0, output.size());
+
+        // writePdfToFile();
+    }
+
     private void setUpTestData() {
         setUpTestData(true);
     }
@@ -166,7 +191,7 @@ public class PdfCsvExporterTest {
             instances.add(instance2);
         }
 
-        when(dataService.retrieveAll(null)).thenReturn(instances);
+        when(dataService.stream(null, 500)).thenReturn(new ListInstanceStream<>(instances));
     }
 
     private void writePdfToFile() {
@@ -0,0 +1,43 @@
+package org.motechproject.mds.testutil;
+
+import org.motechproject.mds.query.InstanceStream;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Instance stream over a list, used for mocking streams returned by data services.
+ */
+public class ListInstanceStream<T> implements InstanceStream<T> {
+
+    private final Iterator<T> iterator;
+    private boolean closed;
+
+    public ListInstanceStream(List<T> instances) {
+        this.iterator = instances.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Instance streams are read only");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
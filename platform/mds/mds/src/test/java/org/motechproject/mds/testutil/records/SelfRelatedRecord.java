@@ -0,0 +1,35 @@
+package org.motechproject.mds.testutil.records;
+
+/**
+ * A record with a relationship to an instance of its own class.
+ */
+public class SelfRelatedRecord {
+
+    private Long id;
+    private String name;
+    private SelfRelatedRecord parent;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public SelfRelatedRecord getParent() {
+        return parent;
+    }
+
+    public void setParent(SelfRelatedRecord parent) {
+        this.parent = parent;
+    }
+}
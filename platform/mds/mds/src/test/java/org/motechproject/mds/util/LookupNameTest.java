@@ -24,6 +24,12 @@ public class LookupNameTest {
         assertEquals("countSample", LookupName.lookupCountMethod("sample"));
     }
 
+    @Test
+    public void shouldCreateExistsLookupMethodNames() {
+        assertEquals("existsSampleLookupMethod", LookupName.lookupExistsMethod("Sample lookup Method"));
+        assertEquals("existsSample", LookupName.lookupExistsMethod("sample"));
+    }
+
     @Test
     public void shouldReturnRelatedName() {
         assertEquals("id", LookupName.getRelatedFieldName("fieldName.id"));